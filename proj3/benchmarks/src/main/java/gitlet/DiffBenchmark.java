@@ -0,0 +1,110 @@
+package gitlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Diff#diffs()} and {@link LineDiff#diffs} of two versions of a source file, the
+ * second with a percentage of its lines deleted, replaced or inserted. The file repeats
+ * braces and blank lines like real code, so the diff has to pick between equal lines.
+ *
+ * @author Delete020
+ * @since 10/19/26 9:05 PM
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiffBenchmark {
+
+    @Param({"200", "2000"})
+    public int lines;
+
+    @Param({"2", "20"})
+    public int percentChanged;
+
+    private List<String> before;
+    private List<String> after;
+    private int[] internedBefore;
+    private int[] internedAfter;
+
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(lines * 100L + percentChanged);
+        before = source(lines, random);
+        after = new ArrayList<>();
+        for (String line : before) {
+            if (random.nextInt(100) >= percentChanged) {
+                after.add(line);
+                continue;
+            }
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                }
+                case 1 -> after.add(line + " // changed");
+                default -> {
+                    after.add(line);
+                    after.add("        log(\"inserted " + random.nextInt(1000) + "\");");
+                }
+            }
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        internedBefore = before.stream().mapToInt(line -> ids.computeIfAbsent(line, k -> ids.size())).toArray();
+        internedAfter = after.stream().mapToInt(line -> ids.computeIfAbsent(line, k -> ids.size())).toArray();
+    }
+
+
+    /**
+     * A class of LINES lines: methods of a few statements, closing braces and blank lines
+     */
+    private static List<String> source(int lines, Random random) {
+        List<String> source = new ArrayList<>(lines);
+        source.add("public class Generated {");
+        int method = 0;
+        while (source.size() < lines - 1) {
+            source.add("    public int method" + method++ + "(int value) {");
+            int statements = 2 + random.nextInt(6);
+            for (int i = 0; i < statements; i++) {
+                source.add("        value = value * " + random.nextInt(50) + " + " + i + ";");
+            }
+            source.add("        return value;");
+            source.add("    }");
+            source.add("");
+        }
+        source.add("}");
+        return source;
+    }
+
+
+    @Benchmark
+    public int[] lcs() {
+        Diff diff = new Diff();
+        diff.setSequences(before, after);
+        return diff.diffs();
+    }
+
+
+    @Benchmark
+    public int[] myers() {
+        return LineDiff.diffs(internedBefore, internedAfter);
+    }
+}
@@ -0,0 +1,50 @@
+package gitlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Utils#sha1} of a blob id, the file name followed by its contents, from a few
+ * bytes up to a large file
+ *
+ * @author Delete020
+ * @since 10/19/26 9:05 PM
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HashBenchmark {
+
+    @Param({"64", "4096", "1048576"})
+    public int size;
+
+    private byte[] contents;
+
+
+    @Setup
+    public void setUp() {
+        contents = new byte[size];
+        new Random(size).nextBytes(contents);
+    }
+
+
+    @Benchmark
+    public String blobId() {
+        return Utils.sha1("wug.txt", contents);
+    }
+}
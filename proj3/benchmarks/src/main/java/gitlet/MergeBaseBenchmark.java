@@ -0,0 +1,111 @@
+package gitlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link GitletRepository#commonAncestor} of two branches of a synthetic history: a shared
+ * trunk of {@code trunk} commits, then {@code branch} commits on each side. In the
+ * {@code crisscross} shape the branches merge each other every ten commits, each one the head
+ * the other had before, so the walk goes through merge commits on both sides and ends at two
+ * merge bases, like the criss-cross merges of {@link RepositoryGenerator}.
+ * <p>
+ * {@code warm} reuses one repository, whose commit cache holds the history after the first
+ * call. {@code cold} opens the repository again for every call and deserializes each commit
+ * it walks, like a merge command does.
+ *
+ * @author Delete020
+ * @since 10/19/26 9:05 PM
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MergeBaseBenchmark {
+
+    @Param({"1000"})
+    public int trunk;
+
+    @Param({"10", "500"})
+    public int branch;
+
+    @Param({"fork", "crisscross"})
+    public String shape;
+
+    private Path dir;
+    private GitletRepository repository;
+    private String other;
+    private ZonedDateTime time = ZonedDateTime.of(2026, 10, 19, 0, 0, 0, 0, ZoneOffset.UTC);
+
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("gitlet-merge-base");
+        repository = new GitletRepository(dir.toString());
+        repository.init();
+        String master = repository.getRefs().get("master");
+        for (int i = 0; i < trunk; i++) {
+            master = commit(master, null);
+        }
+        other = master;
+        for (int i = 1; i <= branch; i++) {
+            boolean merge = shape.equals("crisscross") && i % 10 == 0;
+            String previousMaster = master;
+            master = commit(master, merge ? other : null);
+            other = commit(other, merge ? previousMaster : null);
+        }
+        repository.getRefs().set("master", master);
+        repository.getRefs().set("other", other);
+    }
+
+
+    private String commit(String parent, String mergeFrom) {
+        Commit commit = new Commit("commit", parent, mergeFrom);
+        time = time.plusSeconds(1);
+        commit.setTimestamp(time);
+        String sha1 = Utils.sha1(Utils.serialize(commit));
+        repository.persistentCommit(sha1, commit);
+        return sha1;
+    }
+
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+
+    @Benchmark
+    public Commit warm() {
+        return repository.commonAncestor(other);
+    }
+
+
+    @Benchmark
+    public Commit cold() {
+        return new GitletRepository(dir.toString()).commonAncestor(other);
+    }
+}
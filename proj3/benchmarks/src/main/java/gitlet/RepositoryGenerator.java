@@ -0,0 +1,329 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Builds a repository of a given shape through the {@link Repository} API, for benchmarks
+ * that have to see more than the handful of files and commits of the tester scripts.
+ * <p>
+ * The first commit adds {@code files} text files whose sizes follow a log-normal distribution
+ * around {@code fileSize} bytes. Every later commit edits {@code changes} of them. Every
+ * {@code branchEvery} commits a topic branch of {@code branchLength} commits is merged back
+ * into master, or with {@code crissCross} two branches that merged each other first, so
+ * master ends up with two merge bases. Branches edit files master doesn't, the merges never
+ * conflict. Finally branch {@code feature} is left {@code branchLength} commits ahead of
+ * where master was one commit ago, ready to be diffed and merged.
+ * <pre>
+ * java -cp proj3/benchmarks/target/benchmarks.jar gitlet.RepositoryGenerator DIR
+ *     [--commits N] [--files N] [--file-size BYTES] [--changes N]
+ *     [--branch-every N] [--branch-length N] [--criss-cross] [--seed N]
+ * </pre>
+ * The same seed generates the same files and history, only commit times differ.
+ *
+ * @author Delete020
+ * @since 10/19/26 9:40 PM
+ */
+public class RepositoryGenerator {
+
+    /** Branch left unmerged at the end */
+    public static final String FEATURE = "feature";
+    private static final int LINE_LENGTH = 60;
+    private static final String[] WORDS = {"gitlet", "commit", "blob", "branch", "merge", "stage",
+            "remote", "value", "index", "return", "public", "static", "final", "int", "String", "wug"};
+
+    private final Random random;
+    private int commits = 100;
+    private int files = 100;
+    private int fileSize = 2048;
+    private int changes = 0;
+    private int branchEvery = 0;
+    private int branchLength = 3;
+    private boolean crissCross = false;
+
+    private Repository repository;
+    private int made;
+
+
+    public RepositoryGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+
+    /**
+     * Commits to make, including the merges and the feature branch
+     */
+    public RepositoryGenerator commits(int commits) {
+        this.commits = commits;
+        return this;
+    }
+
+
+    public RepositoryGenerator files(int files) {
+        this.files = files;
+        return this;
+    }
+
+
+    /**
+     * Median file size in bytes
+     */
+    public RepositoryGenerator fileSize(int fileSize) {
+        this.fileSize = fileSize;
+        return this;
+    }
+
+
+    /**
+     * Files edited by each commit, 0 for 1% of the files
+     */
+    public RepositoryGenerator changes(int changes) {
+        this.changes = changes;
+        return this;
+    }
+
+
+    /**
+     * Master commits between merged branches, 0 for a linear history
+     */
+    public RepositoryGenerator branchEvery(int branchEvery) {
+        this.branchEvery = branchEvery;
+        return this;
+    }
+
+
+    public RepositoryGenerator branchLength(int branchLength) {
+        this.branchLength = branchLength;
+        return this;
+    }
+
+
+    public RepositoryGenerator crissCross(boolean crissCross) {
+        this.crissCross = crissCross;
+        return this;
+    }
+
+
+    /**
+     * Create the repository in the empty or missing directory DIR, with auto maintenance off
+     * so later commands don't start gc. Returns it with master checked out.
+     */
+    public Repository generate(File dir) throws IOException {
+        String[] existing = dir.list();
+        if (existing != null && existing.length > 0) {
+            throw Utils.error("%s is not empty.", dir.getPath());
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw Utils.error("Could not create %s.", dir.getPath());
+        }
+        repository = Repository.init(dir.getPath());
+        Utils.writeContents(Utils.join(dir, ".gitlet", "config"), "gc.auto = 0\n");
+        made = 0;
+
+        for (int i = 0; i < files; i++) {
+            write(i, fileSize(), false);
+        }
+        commit("add " + files + " files");
+
+        int reserved = branchLength + 1;
+        int sinceBranch = 0;
+        while (made < commits - reserved) {
+            if (branchEvery > 0 && sinceBranch >= branchEvery && made + branchLength + 6 <= commits - reserved) {
+                if (crissCross) {
+                    crissCross();
+                } else {
+                    topic();
+                }
+                sinceBranch = 0;
+            } else {
+                edit(0, 2);
+                commit("edit " + made);
+                sinceBranch++;
+            }
+        }
+
+        // the unmerged feature branch
+        repository.branch(FEATURE);
+        repository.checkoutBranch(FEATURE);
+        for (int i = 0; i < branchLength; i++) {
+            edit(1, 2);
+            commit("feature " + i);
+        }
+        repository.checkoutBranch("master");
+        edit(0, 2);
+        commit("edit " + made);
+        return repository;
+    }
+
+
+    /**
+     * A branch merged back into master, which got one commit of its own meanwhile
+     */
+    private void topic() throws IOException {
+        repository.branch("topic");
+        repository.checkoutBranch("topic");
+        for (int i = 0; i < branchLength; i++) {
+            edit(1, 2);
+            commit("topic " + i);
+        }
+        repository.checkoutBranch("master");
+        edit(0, 2);
+        commit("edit " + made);
+        merge("topic");
+        repository.rmBranch("topic");
+    }
+
+
+    /**
+     * Branches a and b commit, merge each other's first commit and are both merged into
+     * master, whose merge of b then has a0 and b0 as merge bases. Master commits first,
+     * a fast-forward would check out a. a0, b0 and the later commits of a edit separate
+     * files, so the merges are clean whichever common ancestor they pick.
+     */
+    private void crissCross() throws IOException {
+        repository.branch("a");
+        repository.branch("b");
+        repository.checkoutBranch("a");
+        edit(1, 8);
+        commit("a0");
+        repository.branch("a0");
+        repository.checkoutBranch("b");
+        edit(5, 8);
+        commit("b0");
+        repository.branch("b0");
+        merge("a0");
+        repository.checkoutBranch("a");
+        merge("b0");
+        for (int i = 1; i < branchLength; i++) {
+            edit(3, 8);
+            commit("a" + i);
+        }
+        repository.checkoutBranch("master");
+        edit(0, 2);
+        commit("edit " + made);
+        merge("a");
+        merge("b");
+        for (String branch : new String[]{"a", "b", "a0", "b0"}) {
+            repository.rmBranch(branch);
+        }
+    }
+
+
+    private void merge(String branch) throws IOException {
+        MergeResult result = repository.merge(branch);
+        if (!result.conflicts().isEmpty()) {
+            throw Utils.error("Generated merge of %s conflicted.", branch);
+        }
+        if (!result.fastForward()) {
+            made++;
+        }
+    }
+
+
+    private void commit(String message) {
+        repository.commit(message);
+        made++;
+    }
+
+
+    /**
+     * Rewrite one line or append a line to each of the edited files, among those whose index
+     * is REMAINDER modulo MODULUS, so concurrent branches edit different files
+     */
+    private void edit(int remainder, int modulus) throws IOException {
+        int candidates = (files - remainder + modulus - 1) / modulus;
+        if (candidates <= 0) {
+            throw Utils.error("Too few files to branch.");
+        }
+        int count = Math.min(candidates, changes > 0 ? changes : Math.max(1, files / 100));
+        for (int k = 0; k < count; k++) {
+            int index = remainder + random.nextInt(candidates) * modulus;
+            write(index, 0, true);
+        }
+    }
+
+
+    /**
+     * Write file INDEX with SIZE bytes of lines, or change a line of it if EDIT, and stage it
+     */
+    private void write(int index, int size, boolean edit) throws IOException {
+        String name = name(index);
+        File file = Utils.join(repository.getWorkingDirectory(), name);
+        StringBuilder contents = new StringBuilder();
+        if (edit) {
+            String[] lines = Utils.readContentsAsString(file).split("\n", -1);
+            int changed = random.nextInt(lines.length);
+            for (int i = 0; i < lines.length - 1; i++) {
+                contents.append(i == changed ? line() : lines[i]).append('\n');
+            }
+            if (changed == lines.length - 1) {
+                contents.append(line()).append('\n');
+            }
+        } else {
+            while (contents.length() < size) {
+                contents.append(line()).append('\n');
+            }
+        }
+        Files.writeString(file.toPath(), contents, StandardCharsets.UTF_8);
+        repository.add(name);
+    }
+
+
+    private static String name(int index) {
+        return String.format("file%06d.txt", index);
+    }
+
+
+    private String line() {
+        StringBuilder line = new StringBuilder();
+        while (line.length() < LINE_LENGTH) {
+            line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return line.toString();
+    }
+
+
+    /**
+     * Log-normal around the median file size, at least one line and at most 64 times the median
+     */
+    private int fileSize() {
+        double size = fileSize * Math.exp(random.nextGaussian());
+        return (int) Math.max(1, Math.min(size, 64.0 * fileSize));
+    }
+
+
+    public static void main(String... args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: RepositoryGenerator DIR [--commits N] [--files N] [--file-size BYTES]"
+                    + " [--changes N] [--branch-every N] [--branch-length N] [--criss-cross] [--seed N]");
+            return;
+        }
+        long seed = 0;
+        for (int i = 1; i < args.length - 1; i++) {
+            if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            }
+        }
+        RepositoryGenerator generator = new RepositoryGenerator(seed);
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--commits" -> generator.commits(Integer.parseInt(args[++i]));
+                case "--files" -> generator.files(Integer.parseInt(args[++i]));
+                case "--file-size" -> generator.fileSize(Integer.parseInt(args[++i]));
+                case "--changes" -> generator.changes(Integer.parseInt(args[++i]));
+                case "--branch-every" -> generator.branchEvery(Integer.parseInt(args[++i]));
+                case "--branch-length" -> generator.branchLength(Integer.parseInt(args[++i]));
+                case "--criss-cross" -> generator.crissCross(true);
+                case "--seed" -> i++;
+                default -> throw Utils.error("Unknown option %s.", args[i]);
+            }
+        }
+        long start = System.nanoTime();
+        generator.generate(new File(args[0]));
+        System.out.printf("Generated %d commits of %d files in %d ms%n", generator.made, generator.files,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
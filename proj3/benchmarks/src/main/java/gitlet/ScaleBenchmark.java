@@ -0,0 +1,188 @@
+package gitlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Whole commands, through {@link Main#run}, against a repository built by
+ * {@link RepositoryGenerator}: status, log, checkout, merge and diff in the generated
+ * repository, fetch and push between it and a new empty one. Each iteration runs the command
+ * once, so setup that has to happen before every run, like moving master back before merge,
+ * stays out of the time. Compare sizes to find what grows faster than the repository:
+ * <pre>
+ * java -jar proj3/benchmarks/target/benchmarks.jar ScaleBenchmark -p commits=100,1000,10000 -p files=1000
+ * </pre>
+ *
+ * @author Delete020
+ * @since 10/19/26 9:40 PM
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScaleBenchmark {
+
+    @Param({"100", "500"})
+    public int commits;
+
+    @Param({"1000"})
+    public int files;
+
+    @Param({"2048"})
+    public int fileSize;
+
+    /** linear, merges (a topic branch every 10 commits) or crisscross */
+    @Param({"merges", "crisscross"})
+    public String shape;
+
+    private Path root;
+    private File origin;
+    private Repository repository;
+    private String master;
+    private boolean onFeature;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("gitlet-scale");
+        origin = root.resolve("origin").toFile();
+        repository = new RepositoryGenerator(commits * 31L + files)
+                .commits(commits)
+                .files(files)
+                .fileSize(fileSize)
+                .branchEvery(shape.equals("linear") ? 0 : 10)
+                .crissCross(shape.equals("crisscross"))
+                .generate(origin);
+        master = repository.headId();
+    }
+
+
+    @TearDown
+    public void tearDown() throws IOException {
+        delete(root);
+    }
+
+
+    /**
+     * An empty repository next to the generated one, which is its remote origin and has it
+     * as remote scratch
+     */
+    @State(Scope.Thread)
+    public static class Scratch {
+        private File dir;
+        private Repository repository;
+
+        @Setup(Level.Iteration)
+        public void setUp(ScaleBenchmark benchmark) throws IOException {
+            dir = Files.createTempDirectory(benchmark.root, "scratch").toFile();
+            Repository.init(dir.getPath()).addRemote("origin", Utils.join(benchmark.origin, ".gitlet").getPath());
+            repository = benchmark.repository;
+            repository.addRemote("scratch", Utils.join(dir, ".gitlet").getPath());
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            repository.rmRemote("scratch");
+            delete(dir.toPath());
+        }
+    }
+
+
+    /**
+     * Master moved back to where it was generated, before every merge
+     */
+    @State(Scope.Thread)
+    public static class Unmerged {
+        @Setup(Level.Iteration)
+        public void setUp(ScaleBenchmark benchmark) throws IOException {
+            benchmark.repository.reset(benchmark.master);
+        }
+    }
+
+
+    /**
+     * Run a gitlet command in DIR, returns the length of its output
+     */
+    private int run(File dir, String... args) throws IOException {
+        output.reset();
+        Main.run(dir.getPath(), new PrintStream(output, false), args);
+        return output.size();
+    }
+
+
+    @Benchmark
+    public int status() throws IOException {
+        return run(origin, "status");
+    }
+
+
+    @Benchmark
+    public int log() throws IOException {
+        return run(origin, "log");
+    }
+
+
+    @Benchmark
+    public int diff() throws IOException {
+        return run(origin, "diff", "master", RepositoryGenerator.FEATURE);
+    }
+
+
+    /**
+     * Alternately checks out feature and master
+     */
+    @Benchmark
+    public int checkout() throws IOException {
+        onFeature = !onFeature;
+        return run(origin, "checkout", onFeature ? RepositoryGenerator.FEATURE : "master");
+    }
+
+
+    @Benchmark
+    public int merge(Unmerged unmerged) throws IOException {
+        return run(origin, "merge", RepositoryGenerator.FEATURE);
+    }
+
+
+    @Benchmark
+    public int fetch(Scratch scratch) throws IOException {
+        return run(scratch.dir, "fetch", "origin", "master");
+    }
+
+
+    @Benchmark
+    public int push(Scratch scratch) throws IOException {
+        return run(origin, "push", "scratch", "master");
+    }
+
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package gitlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Utils#serialize} and {@link Utils#readObject} of a commit tracking a growing
+ * number of files, what every commit and every commit cache miss pays
+ *
+ * @author Delete020
+ * @since 10/19/26 9:05 PM
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int blobs;
+
+    private Commit commit;
+    private File file;
+
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(blobs);
+        Map<String, String> map = new TreeMap<>();
+        for (int i = 0; i < blobs; i++) {
+            map.put(String.format("src/dir%03d/File%05d.java", i % 100, i), Long.toHexString(random.nextLong()).repeat(3));
+        }
+        commit = new Commit("benchmark commit", Utils.sha1("parent"));
+        commit.setTimestamp(ZonedDateTime.of(2026, 10, 19, 21, 5, 0, 0, ZoneOffset.UTC));
+        commit.setBlobs(map);
+
+        file = File.createTempFile("commit", ".ser");
+        Utils.writeObject(file, commit);
+    }
+
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+
+    @Benchmark
+    public byte[] serialize() {
+        return Utils.serialize(commit);
+    }
+
+
+    @Benchmark
+    public Commit readObject() {
+        return Utils.readObject(file, Commit.class);
+    }
+}
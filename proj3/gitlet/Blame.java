@@ -0,0 +1,264 @@
+package gitlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Attributes every line of a file to the commit that last changed it.
+ * <p>
+ * History is walked newest-first. Each pending commit carries the lines that are
+ * still unattributed, as pairs of (line in the final file, line in this commit's version).
+ * Those lines are propagated to a parent through a diff between the two blob versions,
+ * lines the parent does not have are blamed on the commit. Parents holding the same blob
+ * id take every line without any diff, and the walk ends once no line is left. Only the
+ * lines of blobs still held by a queued commit are kept, so memory follows the frontier
+ * of the walk rather than the whole history.
+ *
+ * @author Delete020
+ * @since 10/19/26 9:40 AM
+ */
+public class Blame {
+
+    /** Distinct lines an interner may hold beyond twice the cached ones before it is rebuilt */
+    private static final int INTERNER_SLACK = 1 << 16;
+
+    private final GitletRepository repository;
+    private LineView.Interner interner = new LineView.Interner();
+    /** Interned lines of the blobs of queued commits, dropped once no queued commit holds the blob */
+    private final Map<String, int[]> blobLines = new HashMap<>();
+    /** For every blob in BLOBLINES or held by a queued commit, the number of queued commits holding it */
+    private final Map<String, Integer> queuedBlobs = new HashMap<>();
+    private long cachedLines;
+    private final Map<String, Commit> commits = new HashMap<>();
+    private final Set<String> shallow;
+
+    public Blame(GitletRepository repository) {
+        this.repository = repository;
+        this.shallow = repository.getShallow();
+    }
+
+
+    /**
+     * A line of the blamed file with the commit that introduced it
+     */
+    public record Line(int number, String commitSha1, Commit commit, String text) {
+    }
+
+
+    /**
+     * Lines still waiting for a commit, LINES are indexes into the final file and
+     * POSITIONS the same lines in the version held by the pending commit
+     */
+    private static class Pending {
+        private final String sha1;
+        private final Commit commit;
+        private final String blob;
+        private int[] lines = new int[0];
+        private int[] positions = new int[0];
+
+        private Pending(String sha1, Commit commit, String blob) {
+            this.sha1 = sha1;
+            this.commit = commit;
+            this.blob = blob;
+        }
+
+        private void addAll(int[] moreLines, int[] morePositions, int count) {
+            int size = lines.length;
+            lines = Arrays.copyOf(lines, size + count);
+            positions = Arrays.copyOf(positions, size + count);
+            System.arraycopy(moreLines, 0, lines, size, count);
+            System.arraycopy(morePositions, 0, positions, size, count);
+        }
+    }
+
+
+    /**
+     * Blame FILENAME as it exists in the commit HEADSHA1
+     */
+    public List<Line> blame(String headSha1, String filename) {
+        Commit head = getCommit(headSha1);
+        String headBlob = head.getBlobs().get(filename);
+        if (headBlob == null) {
+            throw Utils.error("File does not exist in that commit.");
+        }
+
+        LineView text = readLines(headBlob);
+        String[] owners = new String[text.size()];
+        int remaining = owners.length;
+
+        // newest commits first
+        PriorityQueue<Pending> queue = new PriorityQueue<>(
+                Comparator.comparing((Pending p) -> p.commit.getTimestamp()).reversed());
+        Map<String, Pending> pending = new HashMap<>();
+        Pending start = new Pending(headSha1, head, headBlob);
+        int[] all = new int[owners.length];
+        Arrays.setAll(all, i -> i);
+        start.addAll(all, all, all.length);
+        pending.put(headSha1, start);
+        queue.add(start);
+        queuedBlobs.put(headBlob, 1);
+
+        while (remaining > 0 && !queue.isEmpty()) {
+            Pending current = queue.poll();
+            pending.remove(current.sha1);
+
+            int[] lines = current.lines;
+            int[] positions = current.positions;
+            int count = lines.length;
+            for (String parentSha1 : parents(current.sha1, current.commit)) {
+                if (count == 0) {
+                    break;
+                }
+                Commit parent = getCommit(parentSha1);
+                String parentBlob = parent.getBlobs().get(filename);
+                if (parentBlob == null) {
+                    continue;
+                }
+
+                Pending target = pending.get(parentSha1);
+                if (target == null) {
+                    target = new Pending(parentSha1, parent, parentBlob);
+                    pending.put(parentSha1, target);
+                    queue.add(target);
+                    queuedBlobs.merge(parentBlob, 1, Integer::sum);
+                }
+
+                // Same blob, nothing changed in this commit, hand over every line
+                if (parentBlob.equals(current.blob)) {
+                    target.addAll(lines, positions, count);
+                    count = 0;
+                    break;
+                }
+
+                // Map the lines through the diff, keep what the parent does not have
+                int[] moved = new int[count];
+                int[] movedPositions = new int[count];
+                int[] kept = new int[count];
+                int[] keptPositions = new int[count];
+                int movedCount = 0;
+                int keptCount = 0;
+                int[] map = positionMap(readBlobLines(parentBlob), readBlobLines(current.blob));
+                for (int i = 0; i < count; i++) {
+                    int parentPosition = map[positions[i]];
+                    if (parentPosition < 0) {
+                        kept[keptCount] = lines[i];
+                        keptPositions[keptCount++] = positions[i];
+                    } else {
+                        moved[movedCount] = lines[i];
+                        movedPositions[movedCount++] = parentPosition;
+                    }
+                }
+                target.addAll(moved, movedPositions, movedCount);
+                lines = kept;
+                positions = keptPositions;
+                count = keptCount;
+            }
+
+            // the rest were introduced by this commit
+            for (int i = 0; i < count; i++) {
+                owners[lines[i]] = current.sha1;
+                remaining--;
+            }
+            release(current.blob);
+        }
+
+        List<Line> result = new ArrayList<>(owners.length);
+        for (int i = 0; i < owners.length; i++) {
+            result.add(new Line(i + 1, owners[i], getCommit(owners[i]), text.line(i)));
+        }
+        return result;
+    }
+
+
+    /**
+     * For every line of the child version, its position in the parent version or -1
+     */
+    private int[] positionMap(int[] parent, int[] child) {
+        int[] map = new int[child.length];
+        int[] diffs = LineDiff.diffs(parent, child);
+        int p = 0, c = 0;
+        for (int k = 0; k <= diffs.length; k += 4) {
+            int nextChild = k < diffs.length ? diffs[k + 2] : child.length;
+            while (c < nextChild) {
+                map[c++] = p++;
+            }
+            if (k < diffs.length) {
+                for (int i = 0; i < diffs[k + 3]; i++) {
+                    map[c++] = -1;
+                }
+                p += diffs[k + 1];
+            }
+        }
+        return map;
+    }
+
+
+    private List<String> parents(String sha1, Commit commit) {
+        List<String> parents = new ArrayList<>(2);
+        if (shallow.contains(sha1)) {
+            // the lines of a shallow root are blamed on it
+            return parents;
+        }
+        if (commit.getParent() != null) {
+            parents.add(commit.getParent());
+        }
+        if (commit.getMergeFrom() != null) {
+            parents.add(commit.getMergeFrom());
+        }
+        return parents;
+    }
+
+
+    private Commit getCommit(String sha1) {
+        return commits.computeIfAbsent(Objects.requireNonNull(sha1), repository::getCommit);
+    }
+
+
+    private LineView readLines(String blob) {
+        try {
+            return repository.getObjects().mapLines(blob);
+        } catch (IOException excp) {
+            throw Utils.error("Unable to read %s: %s", blob, excp.getMessage());
+        }
+    }
+
+
+    private int[] readBlobLines(String blob) {
+        int[] lines = blobLines.get(blob);
+        if (lines == null) {
+            lines = interner.intern(readLines(blob));
+            blobLines.put(blob, lines);
+            cachedLines += lines.length;
+        }
+        return lines;
+    }
+
+
+    /**
+     * A commit holding BLOB left the queue, drop its lines if no queued commit holds it anymore.
+     * The interner keeps a view of every distinct line it saw, once it holds far more lines
+     * than the cache it is rebuilt from the cached blobs only.
+     */
+    private void release(String blob) {
+        if (queuedBlobs.merge(blob, -1, Integer::sum) > 0) {
+            return;
+        }
+        queuedBlobs.remove(blob);
+        int[] lines = blobLines.remove(blob);
+        if (lines != null) {
+            cachedLines -= lines.length;
+        }
+        if (interner.size() > 2 * cachedLines + INTERNER_SLACK) {
+            interner = new LineView.Interner();
+            blobLines.replaceAll((cached, old) -> interner.intern(readLines(cached)));
+        }
+    }
+}
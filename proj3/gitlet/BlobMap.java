@@ -0,0 +1,349 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The files of a commit or the stage, file name to blob id, in two parallel sorted arrays:
+ * the names, interned so every commit loaded shares one copy of each, and the ids packed as
+ * 20 raw bytes each into one byte array. An entry costs a reference and 20 bytes instead of
+ * a tree node and a 40 character hex string, lookups are binary searches.
+ * <p>
+ * As a {@link Map} the ids are hex names, made on every access. Code that walks whole trees,
+ * like merge and status, goes by index instead: {@link #path(int)}, {@link #id(int)} and
+ * {@link #sameId(int, BlobMap, int)} compare ids without making their names.
+ *
+ * @author Delete020
+ * @since 10/19/26 11:20 PM
+ */
+public final class BlobMap extends AbstractMap<String, String> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final String[] NO_PATHS = {};
+    private static final byte[] NO_IDS = {};
+    private static final int RAW = ObjectId.RAW_LENGTH;
+
+    private transient String[] paths = NO_PATHS;
+    private transient byte[] ids = NO_IDS;
+    private transient int size;
+    /** Changes on every insertion or removal, for the iterators */
+    private transient int modCount;
+
+
+    public BlobMap() {
+    }
+
+
+    /**
+     * A map with room for CAPACITY entries before it grows
+     */
+    public BlobMap(int capacity) {
+        if (capacity > 0) {
+            paths = new String[capacity];
+            ids = new byte[capacity * RAW];
+        }
+    }
+
+
+    /**
+     * A BlobMap holding the entries of MAP, which is copied even if it is a BlobMap
+     */
+    public static BlobMap copyOf(Map<String, String> map) {
+        if (map instanceof BlobMap blobs) {
+            BlobMap copy = new BlobMap(blobs.size);
+            System.arraycopy(blobs.paths, 0, copy.paths, 0, blobs.size);
+            System.arraycopy(blobs.ids, 0, copy.ids, 0, blobs.size * RAW);
+            copy.size = blobs.size;
+            return copy;
+        }
+        BlobMap copy = new BlobMap(map.size());
+        map.forEach(copy::put);
+        return copy;
+    }
+
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Index of PATH, or (-(insertion point) - 1) if it isn't in the map
+     */
+    public int indexOf(Object path) {
+        return path instanceof String ? Arrays.binarySearch(paths, 0, size, path) : -1;
+    }
+
+
+    public String path(int i) {
+        return paths[checkIndex(i)];
+    }
+
+
+    public ObjectId id(int i) {
+        return ObjectId.fromRaw(ids, checkIndex(i) * RAW);
+    }
+
+
+    /**
+     * Returns true if entry I of this map and entry J of OTHER have the same id
+     */
+    public boolean sameId(int i, BlobMap other, int j) {
+        int from = checkIndex(i) * RAW;
+        int otherFrom = other.checkIndex(j) * RAW;
+        return Arrays.equals(ids, from, from + RAW, other.ids, otherFrom, otherFrom + RAW);
+    }
+
+
+    /**
+     * Replace the id of entry I
+     */
+    public void setId(int i, ObjectId id) {
+        id.copyRawTo(ids, checkIndex(i) * RAW);
+    }
+
+
+    /**
+     * Add PATH after every other entry, returns its index.
+     * The appending way to build a map from sorted input, without the binary search of put.
+     */
+    public int append(String path, ObjectId id) {
+        if (size > 0 && paths[size - 1].compareTo(path) >= 0) {
+            throw new IllegalArgumentException(path + " is not after " + paths[size - 1]);
+        }
+        ensureCapacity(size + 1);
+        paths[size] = path.intern();
+        id.copyRawTo(ids, size * RAW);
+        modCount++;
+        return size++;
+    }
+
+
+    /**
+     * Append entry I of OTHER, see {@link #append(String, ObjectId)}
+     */
+    public int append(BlobMap other, int i) {
+        String path = other.path(i);
+        if (size > 0 && paths[size - 1].compareTo(path) >= 0) {
+            throw new IllegalArgumentException(path + " is not after " + paths[size - 1]);
+        }
+        ensureCapacity(size + 1);
+        paths[size] = path;
+        System.arraycopy(other.ids, i * RAW, ids, size * RAW, RAW);
+        modCount++;
+        return size++;
+    }
+
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+
+    @Override
+    public String get(Object key) {
+        int i = indexOf(key);
+        return i >= 0 ? id(i).name() : null;
+    }
+
+
+    /**
+     * Map PATH to the blob named by the hex id VALUE
+     */
+    @Override
+    public String put(String path, String value) {
+        ObjectId id = ObjectId.fromHex(value);
+        int i = indexOf(path);
+        if (i >= 0) {
+            String old = id(i).name();
+            setId(i, id);
+            return old;
+        }
+        insert(-i - 1, path, id);
+        return null;
+    }
+
+
+    @Override
+    public String remove(Object key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        String old = id(i).name();
+        removeAt(i);
+        return old;
+    }
+
+
+    @Override
+    public void clear() {
+        Arrays.fill(paths, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+
+    /**
+     * This map with the entries of ADDITIONS put in and the paths of REMOVALS taken out,
+     * as a new map built in one pass over both
+     */
+    public BlobMap update(BlobMap additions, BlobMap removals) {
+        BlobMap result = new BlobMap(size + additions.size);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < additions.size) {
+            int c = i == size ? 1 : j == additions.size ? -1 : paths[i].compareTo(additions.paths[j]);
+            if (c < 0) {
+                if (!removals.containsKey(paths[i])) {
+                    result.append(this, i);
+                }
+                i++;
+            } else {
+                if (!removals.containsKey(additions.paths[j])) {
+                    result.append(additions, j);
+                }
+                if (c == 0) {
+                    i++;
+                }
+                j++;
+            }
+        }
+        return result;
+    }
+
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+
+    private final class EntryIterator implements Iterator<Entry<String, String>> {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new SimpleImmutableEntry<>(paths[last], id(last).name());
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+
+    private void insert(int i, String path, ObjectId id) {
+        ensureCapacity(size + 1);
+        System.arraycopy(paths, i, paths, i + 1, size - i);
+        System.arraycopy(ids, i * RAW, ids, (i + 1) * RAW, (size - i) * RAW);
+        paths[i] = path.intern();
+        id.copyRawTo(ids, i * RAW);
+        size++;
+        modCount++;
+    }
+
+
+    private void removeAt(int i) {
+        System.arraycopy(paths, i + 1, paths, i, size - i - 1);
+        System.arraycopy(ids, (i + 1) * RAW, ids, i * RAW, (size - i - 1) * RAW);
+        paths[--size] = null;
+        modCount++;
+    }
+
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > paths.length) {
+            int grown = Math.max(capacity, paths.length + (paths.length >> 1) + 4);
+            paths = Arrays.copyOf(paths, grown);
+            ids = Arrays.copyOf(ids, grown * RAW);
+        }
+    }
+
+
+    private int checkIndex(int i) {
+        return Objects.checkIndex(i, size);
+    }
+
+
+    /**
+     * The entry count, the names, then the raw ids in one block
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeUTF(paths[i]);
+        }
+        out.write(ids, 0, size * RAW);
+    }
+
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        if (count < 0) {
+            throw new InvalidObjectException("negative size");
+        }
+        // grown as the entries arrive, a corrupt count can't allocate more than the stream holds
+        paths = NO_PATHS;
+        ids = NO_IDS;
+        for (int i = 0; i < count; i++) {
+            ensureCapacity(i + 1);
+            paths[i] = in.readUTF().intern();
+            if (i > 0 && paths[i - 1].compareTo(paths[i]) >= 0) {
+                throw new InvalidObjectException("paths out of order");
+            }
+        }
+        in.readFully(ids, 0, count * RAW);
+        size = count;
+    }
+}
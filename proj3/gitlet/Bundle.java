@@ -0,0 +1,279 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A single file holding branches with their commits and blobs, to move history between
+ * repositories that can't reach each other.
+ * <p>
+ * A bundle is written and read front to back through one buffered stream:
+ * <pre>
+ * magic
+ * basis    commits the bundle was made against, the reader must have them
+ * shallow  the shallow boundary of the bundled history
+ * refs     branch name and commit of every bundled branch
+ * commits  id, length and serialized commit, parents first
+ * blobs    id, size and contents
+ * sha1     of everything before it
+ * </pre>
+ * Commits come before blobs so a blob can be hashed with the filename a commit stores it under
+ * while it streams past, and only the commits, which are small, are held in memory. Unbundling
+ * stores blobs as they are read but commits and refs only once the checksum matched, so a
+ * damaged bundle leaves nothing but unreachable blobs behind. Unbundled branches become
+ * refs named bundle/BRANCH.
+ *
+ * @author Delete020
+ * @since 10/19/26 7:40 PM
+ */
+public class Bundle {
+
+    /** Prefix of the refs unbundled branches are stored as */
+    public static final String REF_PREFIX = "bundle";
+
+    private static final int MAGIC = 0x47424e31;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final GitletRepository repository;
+
+
+    public Bundle(GitletRepository repository) {
+        this.repository = repository;
+    }
+
+
+    /**
+     * Write BRANCHES to FILE with the commits and blobs that aren't in the history of BASIS,
+     * branch names or commit ids. An empty BASIS bundles the whole history.
+     */
+    public BundleResult create(File file, List<String> branches, List<String> basis) throws IOException {
+        SortedMap<String, String> refs = new TreeMap<>();
+        for (String branch : branches) {
+            refs.put(branch, repository.getBranchSha1(branch));
+        }
+        List<String> basisIds = new ArrayList<>();
+        for (String commit : basis) {
+            String sha1 = repository.getRefs().get(commit);
+            basisIds.add(sha1 != null ? sha1 : repository.getCommitSha1(commit));
+        }
+        // negotiate against the basis as if it were a remote that has it, and the branches
+        // bundled before, which bring their history along
+        List<String> commits = new ArrayList<>();
+        List<String> haves = new ArrayList<>(basisIds);
+        Set<String> blobs = new LinkedHashSet<>();
+        Set<String> shallow = new TreeSet<>();
+        for (String want : refs.values()) {
+            ObjectTransfer.Negotiation negotiation = ObjectTransfer.negotiate(repository, want, haves, 0);
+            commits.addAll(negotiation.commits());
+            haves.add(want);
+            for (String blob : negotiation.blobs()) {
+                if (!negotiation.knownBlobs().contains(blob)) {
+                    blobs.add(blob);
+                }
+            }
+            shallow.addAll(negotiation.shallow());
+        }
+
+        ObjectStore objects = repository.getObjects();
+        MessageDigest digest = Hashing.newDigest();
+        Path temp = repository.getLocks().createTempFile(file);
+        try {
+            try (OutputStream fileOut = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE);
+                 DigestOutputStream digestOut = new DigestOutputStream(fileOut, digest);
+                 DataOutputStream out = new DataOutputStream(digestOut)) {
+                out.writeInt(MAGIC);
+                Protocol.writeIds(out, basisIds);
+                Protocol.writeIds(out, shallow);
+                out.writeInt(refs.size());
+                for (Map.Entry<String, String> ref : refs.entrySet()) {
+                    out.writeUTF(ref.getKey());
+                    Protocol.writeId(out, ref.getValue());
+                }
+                out.writeInt(commits.size());
+                for (String sha1 : commits) {
+                    byte[] contents = Utils.readContents(repository.getCommitFile(sha1));
+                    Protocol.writeId(out, sha1);
+                    out.writeInt(contents.length);
+                    out.write(contents);
+                }
+                out.writeInt(blobs.size());
+                for (String sha1 : blobs) {
+                    Protocol.writeId(out, sha1);
+                    out.writeLong(objects.size(sha1));
+                    try (InputStream blob = objects.open(sha1)) {
+                        blob.transferTo(out);
+                    }
+                }
+                out.flush();
+                digestOut.on(false);
+                out.write(digest.digest());
+            }
+            repository.getLocks().moveAtomically(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return new BundleResult(refs, basisIds, List.of(), commits.size(), blobs.size(), file.length());
+    }
+
+
+    /**
+     * Check FILE without storing anything: the checksum, the hash of every commit and blob,
+     * and which basis commits this repository lacks
+     */
+    public BundleResult verify(File file) throws IOException {
+        return read(file, false);
+    }
+
+
+    /**
+     * Store the commits and blobs of FILE and point bundle/BRANCH at every bundled branch.
+     * Fails before storing anything if this repository lacks a basis commit.
+     */
+    public BundleResult unbundle(File file) throws IOException {
+        return read(file, true);
+    }
+
+
+    private BundleResult read(File file, boolean store) throws IOException {
+        if (!file.isFile()) {
+            throw Utils.error("Bundle %s does not exist.", file.getName());
+        }
+        MessageDigest digest = Hashing.newDigest();
+        try (DigestInputStream digestIn = new DigestInputStream(
+                new BufferedInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE), digest);
+             DataInputStream in = new DataInputStream(digestIn)) {
+            if (in.readInt() != MAGIC) {
+                throw Utils.error("%s is not a bundle.", file.getName());
+            }
+            List<String> basis = Protocol.readIds(in);
+            List<String> shallow = Protocol.readIds(in);
+            List<String> missing = basis.stream().filter(sha1 -> !repository.hasCommit(sha1)).toList();
+            if (store && !missing.isEmpty()) {
+                throw Utils.error("The bundle requires commit %s, which this repository lacks.", missing.get(0));
+            }
+            SortedMap<String, String> refs = new TreeMap<>();
+            for (int count = in.readInt(); count > 0; count--) {
+                refs.put(in.readUTF(), Protocol.readId(in));
+            }
+
+            // commits are small, they are kept until the whole bundle checked out
+            Map<String, byte[]> commits = new LinkedHashMap<>();
+            Map<String, String> blobNames = new HashMap<>();
+            for (int count = in.readInt(); count > 0; count--) {
+                String sha1 = Protocol.readId(in);
+                byte[] contents = new byte[in.readInt()];
+                in.readFully(contents);
+                if (!sha1.equals(Utils.sha1((Object) contents))) {
+                    throw Utils.error("%s is corrupt: commit %s doesn't match its id.", file.getName(), sha1);
+                }
+                commits.put(sha1, contents);
+                parse(file, sha1, contents).getBlobs().forEach((filename, blob) -> blobNames.putIfAbsent(blob, filename));
+            }
+
+            int blobs = in.readInt();
+            for (int count = blobs; count > 0; count--) {
+                String sha1 = Protocol.readId(in);
+                long size = in.readLong();
+                String filename = blobNames.get(sha1);
+                if (filename == null) {
+                    throw Utils.error("%s is corrupt: blob %s isn't in any bundled commit.", file.getName(), sha1);
+                }
+                readBlob(in, file, sha1, size, filename, store);
+            }
+
+            digestIn.on(false);
+            byte[] checksum = digest.digest();
+            if (!Arrays.equals(checksum, in.readNBytes(checksum.length)) || in.read() != -1) {
+                throw Utils.error("%s is corrupt: checksum mismatch.", file.getName());
+            }
+
+            if (store) {
+                for (Map.Entry<String, byte[]> commit : commits.entrySet()) {
+                    if (!repository.hasCommit(commit.getKey())) {
+                        repository.getLocks().writeAtomically(repository.getCommitFile(commit.getKey()), (Object) commit.getValue());
+                    }
+                }
+                repository.addShallow(shallow);
+                for (Map.Entry<String, String> ref : refs.entrySet()) {
+                    repository.getRefs().set(REF_PREFIX + "/" + ref.getKey(), ref.getValue());
+                }
+            }
+            return new BundleResult(refs, basis, missing, commits.size(), blobs, file.length());
+        } catch (EOFException excp) {
+            throw Utils.error("%s is corrupt: truncated.", file.getName());
+        }
+    }
+
+
+    /**
+     * Hash the next SIZE bytes of IN, the bundle FILE, as the blob SHA1 stored under FILENAME,
+     * storing them if STORE
+     */
+    private void readBlob(DataInputStream in, File file, String sha1, long size, String filename, boolean store) throws IOException {
+        ObjectStore objects = repository.getObjects();
+        MessageDigest digest = Hashing.digest();
+        Hashing.update(digest, filename);
+        File target = objects.looseFile(sha1);
+        Path temp = store ? repository.getLocks().createTempFile(target) : null;
+        try {
+            try (OutputStream out = temp == null ? OutputStream.nullOutputStream() : Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (long remaining = size; remaining > 0; ) {
+                    int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (n < 0) {
+                        throw new EOFException();
+                    }
+                    digest.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    remaining -= n;
+                }
+            }
+            if (!sha1.equals(Hashing.finish(digest).name())) {
+                throw Utils.error("%s is corrupt: blob %s doesn't match its id.", file.getName(), sha1);
+            }
+            if (temp != null && !objects.contains(sha1)) {
+                repository.getLocks().moveAtomically(temp, target);
+            }
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+
+    /**
+     * The commit SHA1 of the bundle FILE, its CONTENTS only ever read as a commit
+     */
+    private static Commit parse(File file, String sha1, byte[] contents) {
+        try {
+            return Commit.parse(contents);
+        } catch (GitletException excp) {
+            throw Utils.error("%s is corrupt: commit %s is not a commit.", file.getName(), sha1);
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package gitlet;
+
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * What a bundle holds, or what was written to or read from it
+ *
+ * @param refs    the bundled branches and the commits they point at
+ * @param basis   the commits the bundle was made against, a repository needs them to unbundle it
+ * @param missing the basis commits the repository lacks, always empty after unbundle
+ * @param commits commits in the bundle
+ * @param blobs   blobs in the bundle
+ * @param bytes   size of the bundle file
+ * @author Delete020
+ * @since 10/19/26 7:40 PM
+ */
+public record BundleResult(SortedMap<String, String> refs, List<String> basis, List<String> missing,
+                           int commits, int blobs, long bytes) {
+}
@@ -1,19 +1,33 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.time.ZonedDateTime;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * @author Delete020
  * @since 5/28/22 3:45 PM
  */
 public class Commit implements Serializable {
+    /** The id the class had before it was pinned, so existing commits still read */
+    private static final long serialVersionUID = -7281923186843904271L;
+
+    /**
+     * The classes a commit file holds, the TreeMap for commits written before BlobMap and
+     * java.time for the timestamp. Nothing nests deeper than a map in a commit, no field is an array.
+     */
+    private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=4;maxarray=0;gitlet.Commit;gitlet.BlobMap;java.util.TreeMap;java.time.*;!*");
+
     private String message;
     private ZonedDateTime timestamp;
     private final String parent;
     private final String mergeFrom;
+    /** Always a {@link BlobMap}, declared as a Map to keep the serialized form of older commits readable */
     private Map<String, String> blobs;
 
     public Commit(String message, String parent) {
@@ -25,7 +39,7 @@ public class Commit implements Serializable {
         this.timestamp = ZonedDateTime.now();
         this.parent = parent;
         this.mergeFrom = mergeFrom;
-        this.blobs = new TreeMap<>();
+        this.blobs = new BlobMap();
     }
 
     public String getMessage() {
@@ -52,11 +66,41 @@ public class Commit implements Serializable {
         return mergeFrom;
     }
 
-    public Map<String, String> getBlobs() {
-        return blobs;
+    public BlobMap getBlobs() {
+        return (BlobMap) blobs;
     }
 
+    /**
+     * Set the files of this commit, a BlobMap is taken as it is, other maps are copied
+     */
     public void setBlobs(Map<String, String> blobs) {
-        this.blobs = blobs;
+        this.blobs = blobs instanceof BlobMap ? blobs : BlobMap.copyOf(blobs);
+    }
+
+    /**
+     * Read the CONTENTS of a commit file from another repository. Only the classes of a commit
+     * are deserialized, anything else is rejected before it is instantiated.
+     */
+    static Commit parse(byte[] contents) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(contents))) {
+            in.setObjectInputFilter(FILTER);
+            Commit commit = (Commit) in.readObject();
+            if (commit.message == null || commit.timestamp == null) {
+                throw Utils.error("Not a commit.");
+            }
+            return commit;
+        } catch (GitletException excp) {
+            throw excp;
+        } catch (IOException | ClassNotFoundException | RuntimeException excp) {
+            throw Utils.error("Not a commit.");
+        }
+    }
+
+    /**
+     * Commits written before BlobMap hold a TreeMap
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        setBlobs(blobs);
     }
 }
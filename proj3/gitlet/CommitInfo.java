@@ -0,0 +1,20 @@
+package gitlet;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Read-only view of a commit returned by the repository API
+ *
+ * @author Delete020
+ * @since 10/19/26 10:05 AM
+ */
+public record CommitInfo(String id, String message, ZonedDateTime timestamp, String parent, String mergeFrom) {
+
+    static CommitInfo of(String id, Commit commit) {
+        return new CommitInfo(id, commit.getMessage(), commit.getTimestamp(), commit.getParent(), commit.getMergeFrom());
+    }
+
+    public boolean isMerge() {
+        return mergeFrom != null;
+    }
+}
@@ -0,0 +1,44 @@
+package gitlet;
+
+import java.util.Iterator;
+
+/**
+ * Commits read lazily while a shared lock on the repository is held. The lock is released
+ * once the last commit was handed out or the iterator is closed, close it when stopping early.
+ * Like every lock of {@link LockManager}, it must be released by the thread that took it.
+ *
+ * @author Delete020
+ * @since 10/20/26 2:10 AM
+ */
+public final class CommitIterator implements Iterator<CommitInfo>, AutoCloseable {
+
+    private final Iterator<CommitInfo> commits;
+    private final LockManager.Lock lock;
+
+    CommitIterator(Iterator<CommitInfo> commits, LockManager.Lock lock) {
+        this.commits = commits;
+        this.lock = lock;
+    }
+
+
+    @Override
+    public boolean hasNext() {
+        if (commits.hasNext()) {
+            return true;
+        }
+        lock.close();
+        return false;
+    }
+
+
+    @Override
+    public CommitInfo next() {
+        return commits.next();
+    }
+
+
+    @Override
+    public void close() {
+        lock.close();
+    }
+}
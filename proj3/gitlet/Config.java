@@ -0,0 +1,68 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * Settings of a repository, read from the optional .gitlet/config properties file.
+ * <pre>
+ *     gc.auto = 6700
+ *     gc.autoPackLimit = 50
+ * </pre>
+ *
+ * @author Delete020
+ * @since 10/19/26 4:30 PM
+ */
+public class Config {
+
+    private final Properties properties = new Properties();
+
+
+    private Config() {
+    }
+
+
+    /**
+     * Read the config of the repository in GITLETDIR, a missing file means all defaults
+     */
+    public static Config load(File gitletDir) {
+        Config config = new Config();
+        File file = Utils.join(gitletDir, "config");
+        if (file.isFile()) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                config.properties.load(reader);
+            } catch (IOException excp) {
+                throw Utils.error("Unable to read %s: %s", file.getPath(), excp.getMessage());
+            }
+        }
+        return config;
+    }
+
+
+    public String getString(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue).trim();
+    }
+
+
+    public int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Bad config value for %s: %s", key, value);
+        }
+    }
+
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
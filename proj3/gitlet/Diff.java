@@ -1,10 +1,9 @@
 package gitlet;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.io.File;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -27,29 +26,39 @@ public class Diff {
     public void setSequences(Collection<String> seq1, Collection<String> seq2) {
         _lines1 = new ArrayList<>(seq1);
         _lines2 = new ArrayList<>(seq2);
+        _view1 = _view2 = null;
+        _lls = null;
+        _todo = null;
+    }
+
+    /** Set the sequences currently being compared to the lines of VIEW1
+     *  and VIEW2, which are compared as bytes and only decoded when
+     *  read through sequence1(), sequence2(), get1 and get2. */
+    public void setSequences(LineView view1, LineView view2) {
+        _view1 = view1;
+        _view2 = view2;
+        _lines1 = view1.asList();
+        _lines2 = view2.asList();
         _lls = null;
         _todo = null;
     }
 
     /** Set the sequences currently being compared to the contents
-     *  of FILE1 and FILE2.  Null Files set empty lists. */
+     *  of FILE1 and FILE2, mapped rather than read.  Null Files set
+     *  empty lists. */
     public void setSequences(File file1, File file2) {
+        setSequences(mapLines(file1), mapLines(file2));
+    }
+
+    /** Return the lines of FILE, no lines if it can't be read. */
+    private static LineView mapLines(File file) {
         try {
-            Path p1 = file1.toPath();
-            _lines1 = Files.readAllLines(p1);
-        } catch (IOException | InvalidPathException | NullPointerException
-                 excp) {
-            _lines1 = Collections.emptyList();
-        }
-        try {
-            Path p2 = file2.toPath();
-            _lines2 = Files.readAllLines(p2);
+            Path p = file.toPath();
+            return LineView.map(p);
         } catch (IOException | InvalidPathException | NullPointerException
                  excp) {
-            _lines2 = Collections.emptyList();
+            return LineView.of(ByteBuffer.allocate(0));
         }
-        _lls = null;
-        _todo = null;
     }
 
     /** Return the first of the current sequences. */
@@ -97,8 +106,7 @@ public class Diff {
                 } else {
                     switch (_llsState) {
                     case 0:
-                        if (_lines1.get(_llsTop1 - 1)
-                            .equals(_lines2.get(_llsTop2 - 1))) {
+                        if (sameLine(_llsTop1 - 1, _llsTop2 - 1)) {
                             push(_llsTop1, _llsTop2, 4);
                             push(_llsTop1 - 1, _llsTop2 - 1, 0);
                         } else {
@@ -145,7 +153,10 @@ public class Diff {
         if (_lines1.size() != _lines2.size()) {
             return false;
         }
-        return lls(_lines1.size(), _lines2.size()) == _lines1.size();
+        long start = Trace.start();
+        boolean equal = lls(_lines1.size(), _lines2.size()) == _lines1.size();
+        Trace.stop(Trace.Phase.DIFF, start, _lines1.size() + _lines2.size());
+        return equal;
     }
 
     /** Return an array containing the int values of the items in LIST. */
@@ -201,6 +212,9 @@ public class Diff {
      *  dLi or aLi, but not both, may be 0, indicating respectively simple
      *  removal of lines or addition of lines. */
     public int[] diffs() {
+        Events.Diff event = new Events.Diff();
+        event.begin();
+        long start = Trace.start();
         int[] common = commonSubsequence();
         ArrayList<Integer> result = new ArrayList<>();
         int e1, e2;
@@ -221,9 +235,26 @@ public class Diff {
             result.add(e2);
             result.add(_lines2.size() - e2);
         }
+        Trace.stop(Trace.Phase.DIFF, start, _lines1.size() + _lines2.size());
+        if (event.shouldCommit()) {
+            event.algorithm = "lcs";
+            event.linesBefore = _lines1.size();
+            event.linesAfter = _lines2.size();
+            event.edits = result.size() / 4;
+            event.commit();
+        }
         return toIntArr(result);
     }
 
+    /** Return true iff line K1 of the first sequence equals line K2 of
+     *  the second. */
+    private boolean sameLine(int k1, int k2) {
+        if (_view1 != null) {
+            return _view1.lineEquals(k1, _view2, k2);
+        }
+        return _lines1.get(k1).equals(_lines2.get(k2));
+    }
+
     /** Raise an exception if there are no current data sequences for
      *  comparison. */
     private void checkData() {
@@ -263,6 +294,9 @@ public class Diff {
     /** The sequences being compared. */
     private List<String> _lines1, _lines2;
 
+    /** The views the sequences were set from, if they were. */
+    private LineView _view1, _view2;
+
     /** The memo table for longest common subsequence.  _lls[a][b] contains the
      *  length of the longest common sequence of the prefixes of the current
      *  data sequences of lengths a and b, or -1 if not calculated. */
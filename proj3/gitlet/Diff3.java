@@ -0,0 +1,263 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Line-level three-way merge of two versions of a file changed from a common base, diff3
+ * style. Both versions are diffed against the base with {@link LineDiff}; base lines that
+ * both keep are stable and split the files into chunks. A chunk changed on one side only
+ * takes that side, a chunk changed the same way on both sides takes it once, and only a
+ * chunk changed differently on both sides becomes a conflict region, in the format merge
+ * has always used for whole files:
+ * <pre>
+ * &lt;&lt;&lt;&lt;&lt;&lt;&lt; HEAD
+ * lines of the current version
+ * =======
+ * lines of the given version
+ * &gt;&gt;&gt;&gt;&gt;&gt;&gt;
+ * </pre>
+ * Files are read through {@link LineView}s and the result is streamed into the object store,
+ * so only line offsets and ids are held in memory. A file that is too large to map or looks
+ * binary is not merged by lines, it becomes one conflict region over the whole file.
+ *
+ * @author Delete020
+ * @since 10/20/26 12:30 AM
+ */
+public final class Diff3 {
+
+    /** Files with a NUL byte in this many leading bytes are taken as binary, like git does */
+    private static final int BINARY_CHECK = 8000;
+    private static final String START = "<<<<<<< HEAD\n";
+    private static final String SEPARATOR = "=======\n";
+    private static final String END = ">>>>>>>\n";
+
+    private final LineView base;
+    private final LineView ours;
+    private final LineView theirs;
+    private final ObjectStore.BlobWriter out;
+    /** Where every base line is in each version, -1 if that version dropped or changed it */
+    private final int[] oursMap;
+    private final int[] theirsMap;
+    /** Content written so far ended in a line without a terminator */
+    private boolean unterminated;
+    private int conflicts;
+
+
+    private Diff3(LineView base, LineView ours, LineView theirs, ObjectStore.BlobWriter out) {
+        this.base = base;
+        this.ours = ours;
+        this.theirs = theirs;
+        this.out = out;
+        LineView.Interner interner = new LineView.Interner();
+        int[] baseLines = interner.intern(base);
+        oursMap = baseMap(LineDiff.diffs(baseLines, interner.intern(ours)), base.size());
+        theirsMap = baseMap(LineDiff.diffs(baseLines, interner.intern(theirs)), base.size());
+    }
+
+
+    /**
+     * How a file was merged
+     *
+     * @param id         the blob id of the merged file
+     * @param conflicted true if it holds conflict regions
+     */
+    public record Result(String id, boolean conflicted) {
+    }
+
+
+    /**
+     * Merge the versions OURS and THEIRS of FILENAME, blobs of OBJECTS changed from BASE,
+     * and store the result. Any of the three may be null for a file that doesn't exist in it,
+     * a file deleted on one side and changed on the other is one conflict region.
+     */
+    public static Result merge(ObjectStore objects, String filename, String base, String ours, String theirs)
+            throws IOException {
+        try (ObjectStore.BlobWriter out = objects.newBlob(filename)) {
+            boolean conflicted;
+            if (ours == null || theirs == null || !mergeable(objects, base) || !mergeable(objects, ours)
+                    || !mergeable(objects, theirs)) {
+                out.write(START);
+                copy(objects, ours, out);
+                out.write(SEPARATOR);
+                copy(objects, theirs, out);
+                out.write(END);
+                conflicted = true;
+            } else {
+                conflicted = merge(lines(objects, base), lines(objects, ours), lines(objects, theirs), out) > 0;
+            }
+            return new Result(out.commit(), conflicted);
+        }
+    }
+
+
+    /**
+     * Merge OURS and THEIRS, both changed from BASE, into OUT, returns the number of conflict
+     * regions written
+     */
+    public static int merge(LineView base, LineView ours, LineView theirs, ObjectStore.BlobWriter out)
+            throws IOException {
+        Diff3 diff3 = new Diff3(base, ours, theirs, out);
+        diff3.run();
+        return diff3.conflicts;
+    }
+
+
+    /**
+     * For every line of the base, its position in the version that EDITS convert it to,
+     * -1 where the edits remove or replace it
+     */
+    private static int[] baseMap(int[] edits, int baseLines) {
+        int[] map = new int[baseLines];
+        int b = 0;
+        int v = 0;
+        for (int k = 0; k <= edits.length; k += 4) {
+            int nextBase = k < edits.length ? edits[k] : baseLines;
+            while (b < nextBase) {
+                map[b++] = v++;
+            }
+            if (k < edits.length) {
+                for (int i = 0; i < edits[k + 1]; i++) {
+                    map[b++] = -1;
+                }
+                v += edits[k + 3];
+            }
+        }
+        return map;
+    }
+
+
+    /**
+     * Alternate between stable runs, base lines both versions keep in place, and the chunks
+     * between them
+     */
+    private void run() throws IOException {
+        int b = 0;
+        int o = 0;
+        int t = 0;
+        int baseLines = base.size();
+        while (b < baseLines || o < ours.size() || t < theirs.size()) {
+            // stable run
+            int stable = b;
+            while (b < baseLines && oursMap[b] == o && theirsMap[b] == t) {
+                b++;
+                o++;
+                t++;
+            }
+            emit(ours, o - (b - stable), o);
+
+            // the chunk up to the next base line both versions keep, or to the end
+            int next = b;
+            while (next < baseLines && (oursMap[next] < 0 || theirsMap[next] < 0)) {
+                next++;
+            }
+            int oursEnd = next < baseLines ? oursMap[next] : ours.size();
+            int theirsEnd = next < baseLines ? theirsMap[next] : theirs.size();
+            chunk(b, next, o, oursEnd, t, theirsEnd);
+            b = next;
+            o = oursEnd;
+            t = theirsEnd;
+        }
+    }
+
+
+    /**
+     * Resolve base[B0, B1), ours[O0, O1) and theirs[T0, T1)
+     */
+    private void chunk(int b0, int b1, int o0, int o1, int t0, int t1) throws IOException {
+        if (b0 == b1 && o0 == o1 && t0 == t1) {
+            return;
+        }
+        if (same(base, b0, b1, ours, o0, o1)) {
+            emit(theirs, t0, t1);
+        } else if (same(base, b0, b1, theirs, t0, t1) || same(ours, o0, o1, theirs, t0, t1)) {
+            emit(ours, o0, o1);
+        } else {
+            conflicts++;
+            marker(START);
+            write(ours.range(o0, o1));
+            marker(SEPARATOR);
+            write(theirs.range(t0, t1));
+            marker(END);
+        }
+    }
+
+
+    private static boolean same(LineView a, int a0, int a1, LineView b, int b0, int b1) {
+        if (a1 - a0 != b1 - b0) {
+            return false;
+        }
+        for (int i = 0; i < a1 - a0; i++) {
+            if (!a.lineEquals(a0 + i, b, b0 + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Write lines [FROM, TO) of VIEW, on a line of their own
+     */
+    private void emit(LineView view, int from, int to) throws IOException {
+        if (from == to) {
+            return;
+        }
+        if (unterminated) {
+            out.write("\n");
+        }
+        write(view.range(from, to));
+    }
+
+
+    /**
+     * Markers follow what comes before them directly, like the whole-file conflicts always did
+     */
+    private void marker(String marker) throws IOException {
+        out.write(marker);
+        unterminated = false;
+    }
+
+
+    private void write(ByteBuffer bytes) throws IOException {
+        if (bytes.hasRemaining()) {
+            byte last = bytes.get(bytes.limit() - 1);
+            unterminated = last != '\n' && last != '\r';
+            out.write(bytes);
+        }
+    }
+
+
+    private static LineView lines(ObjectStore objects, String sha1) throws IOException {
+        return sha1 == null ? LineView.of(ByteBuffer.allocate(0)) : objects.mapLines(sha1);
+    }
+
+
+    private static void copy(ObjectStore objects, String sha1, ObjectStore.BlobWriter out) throws IOException {
+        if (sha1 != null) {
+            out.copy(sha1);
+        }
+    }
+
+
+    /**
+     * Returns true if the blob SHA1 can be merged by lines: it can be mapped and isn't binary
+     */
+    private static boolean mergeable(ObjectStore objects, String sha1) throws IOException {
+        if (sha1 == null) {
+            return true;
+        }
+        if (objects.size(sha1) > Integer.MAX_VALUE) {
+            return false;
+        }
+        try (InputStream in = objects.open(sha1)) {
+            for (byte b : in.readNBytes(BINARY_CHECK)) {
+                if (b == 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,137 @@
+package gitlet;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the object store, hashing, commit loading, merge-base walks
+ * and diffs, so a recording shows gitlet work instead of anonymous file I/O. Record them with
+ * the settings in proj3/gitlet/gitlet.jfc:
+ * <pre>
+ * java -XX:StartFlightRecording:settings=default,settings=proj3/gitlet/gitlet.jfc,filename=gitlet.jfr gitlet.Main ...
+ * </pre>
+ * An event is created, begun and committed at its call site. While no recording enables it,
+ * {@code commit()} returns at once and the JIT removes the allocation, so the call sites stay
+ * instrumented. Stack traces are off by default, the event fields say what was done.
+ *
+ * @author Delete020
+ * @since 10/19/26 8:40 PM
+ */
+public final class Events {
+
+    private Events() {
+    }
+
+
+    @Name("gitlet.ObjectRead")
+    @Label("Object Read")
+    @Category({"Gitlet", "Objects"})
+    @Description("A blob read from the object store")
+    @StackTrace(false)
+    public static class ObjectRead extends Event {
+        @Label("Object Id")
+        String id;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        @Label("Source")
+        @Description("loose or pack")
+        String source;
+    }
+
+
+    @Name("gitlet.ObjectWrite")
+    @Label("Object Write")
+    @Category({"Gitlet", "Objects"})
+    @Description("Blobs written to the object store, loose or as one pack")
+    @StackTrace(false)
+    public static class ObjectWrite extends Event {
+        @Label("Object Id")
+        @Description("The blob id, or the pack name")
+        String id;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        @Label("Source")
+        @Description("loose, received or pack")
+        String source;
+    }
+
+
+    @Name("gitlet.CommitLoad")
+    @Label("Commit Load")
+    @Category({"Gitlet", "Commits"})
+    @Description("A commit deserialized from its file, commit cache hits are not recorded")
+    @StackTrace(false)
+    public static class CommitLoad extends Event {
+        @Label("Commit Id")
+        String id;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+
+    @Name("gitlet.Hash")
+    @Label("SHA-1")
+    @Category({"Gitlet", "Hashing"})
+    @Description("A SHA-1 computed by Hashing")
+    @StackTrace(false)
+    public static class Hash extends Event {
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+
+    @Name("gitlet.MergeBase")
+    @Label("Merge Base")
+    @Category({"Gitlet", "Commits"})
+    @Description("The history walk finding the common ancestor of a merge")
+    @StackTrace(false)
+    public static class MergeBase extends Event {
+        @Label("Head")
+        String head;
+
+        @Label("Other")
+        String other;
+
+        @Label("Ancestor")
+        @Description("Empty if the head is an ancestor of the other commit")
+        String ancestor;
+
+        @Label("Commits Walked")
+        int commits;
+    }
+
+
+    @Name("gitlet.Diff")
+    @Label("Diff")
+    @Category({"Gitlet", "Diff"})
+    @Description("A line diff of two versions of a file")
+    @StackTrace(false)
+    public static class Diff extends Event {
+        @Label("Algorithm")
+        @Description("lcs (Diff) or myers (LineDiff)")
+        String algorithm;
+
+        @Label("Lines Before")
+        int linesBefore;
+
+        @Label("Lines After")
+        int linesAfter;
+
+        @Label("Edits")
+        int edits;
+    }
+}
@@ -0,0 +1,27 @@
+package gitlet;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Result of fetching every branch of one or more remotes at once
+ *
+ * @param branches the branches fetched, by remote and then branch name
+ * @param time     time spent, the branches were fetched concurrently
+ * @author Delete020
+ * @since 10/19/26 7:05 PM
+ */
+public record FetchResult(List<Branch> branches, Duration time) {
+
+    /**
+     * One remote branch that was fetched
+     *
+     * @param remote the remote name
+     * @param branch the branch name on the remote
+     * @param commit the commit its remote-tracking ref now points at
+     * @param result what was copied for it
+     * @param time   time spent fetching it
+     */
+    public record Branch(String remote, String branch, String commit, TransferResult result, Duration time) {
+    }
+}
@@ -0,0 +1,23 @@
+package gitlet;
+
+import java.util.List;
+
+/**
+ * Differences for one file between two versions
+ *
+ * @param filename  the compared file
+ * @param oldExists false if the file is missing from the first version
+ * @param newExists false if the file is missing from the second version
+ * @param hunks     edits converting the first version into the second
+ * @author Delete020
+ * @since 10/19/26 10:05 AM
+ */
+public record FilePatch(String filename, boolean oldExists, boolean newExists, List<Hunk> hunks) {
+
+    /**
+     * Lines [oldStart, oldStart + removed.size()) of the first version (0-based) are replaced by
+     * the lines [newStart, newStart + added.size()) of the second version
+     */
+    public record Hunk(int oldStart, int newStart, List<String> removed, List<String> added) {
+    }
+}
@@ -0,0 +1,279 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Verifies the integrity and connectivity of a repository.
+ * <p>
+ * Every commit file is hashed and deserialized, every parent and every blob a commit or
+ * the stage refers to must exist, and every stored blob, loose or packed, must hash to its
+ * id. A blob id is the sha1 of its filename and contents, so a blob can only be verified
+ * under the filename of a commit that refers to it. Blobs nothing refers to are reported
+ * as dangling, as are commits no ref or HEAD can reach.
+ * <p>
+ * Objects are read and hashed in batches on a thread pool larger than the number of cores
+ * (fsck.threads in .gitlet/config), so reads keep the disk busy while other threads hash.
+ * Blob contents are streamed, never held in memory whole.
+ *
+ * @author Delete020
+ * @since 10/19/26 5:10 PM
+ */
+public class Fsck {
+
+    private static final int BATCH_SIZE = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final GitletRepository repository;
+    private final ObjectStore objects;
+    private final File commitDir;
+    private final int threads;
+
+    private final Problems problems = new Problems();
+    private final Map<String, Commit> commits = new ConcurrentHashMap<>();
+    private final AtomicInteger blobCount = new AtomicInteger();
+    private final LongAdder bytes = new LongAdder();
+
+
+    public Fsck(GitletRepository repository) {
+        this.repository = repository;
+        this.objects = repository.getObjects();
+        this.commitDir = Utils.join(repository.getGitletDir(), "commit");
+        int defaultThreads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        this.threads = Config.load(repository.getGitletDir()).getInt("fsck.threads", defaultThreads);
+    }
+
+
+    private static class Problems extends ConcurrentLinkedQueue<FsckResult.Problem> {
+        void add(FsckResult.Kind kind, String type, String id, String detail) {
+            add(new FsckResult.Problem(kind, type, id, detail));
+        }
+    }
+
+
+    public FsckResult run() {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "fsck");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<String> commitIds = Objects.requireNonNull(Utils.plainFilenamesIn(commitDir));
+            inParallel(pool, commitIds, this::checkCommit);
+
+            // which filename each blob is stored under, taken from the commits and stage that refer to it
+            Map<String, String> blobNames = new HashMap<>();
+            Map<String, String> blobOwners = new HashMap<>();
+            checkConnectivity(new HashSet<>(commitIds), blobNames, blobOwners);
+
+            List<BlobCopy> copies = new ArrayList<>();
+            for (String sha1 : objects.looseObjects()) {
+                copies.add(new BlobCopy(sha1, null));
+            }
+            for (ObjectStore.Pack pack : objects.packs()) {
+                for (String sha1 : pack.ids()) {
+                    copies.add(new BlobCopy(sha1, pack));
+                }
+            }
+            inParallel(pool, copies, copy -> checkBlob(copy, blobNames.get(copy.id())));
+
+            Set<String> stored = new HashSet<>();
+            copies.forEach(copy -> stored.add(copy.id()));
+            // a partial clone lacks blobs on purpose, its promisor remote has them
+            boolean partial = repository.getPromisor() != null;
+            for (Map.Entry<String, String> blob : blobNames.entrySet()) {
+                if (!partial && !stored.contains(blob.getKey())) {
+                    problems.add(FsckResult.Kind.MISSING, "blob", blob.getKey(),
+                            blob.getValue() + " in " + blobOwners.get(blob.getKey()));
+                }
+            }
+            for (String sha1 : stored) {
+                if (!blobNames.containsKey(sha1)) {
+                    problems.add(FsckResult.Kind.DANGLING, "blob", sha1, "");
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<FsckResult.Problem> sorted = new ArrayList<>(problems);
+        Collections.sort(sorted);
+        return new FsckResult(sorted, commits.size(), blobCount.get(), bytes.sum(),
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+
+    /**
+     * Hash and deserialize one commit file
+     */
+    private void checkCommit(String sha1) {
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(Utils.join(commitDir, sha1).toPath());
+        } catch (IOException excp) {
+            problems.add(FsckResult.Kind.CORRUPT, "commit", sha1, "unreadable: " + excp.getMessage());
+            return;
+        }
+        bytes.add(contents.length);
+        if (!sha1.equals(Utils.sha1((Object) contents))) {
+            problems.add(FsckResult.Kind.CORRUPT, "commit", sha1, "hash mismatch");
+            return;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(contents))) {
+            commits.put(sha1, (Commit) in.readObject());
+        } catch (IOException | ClassNotFoundException | ClassCastException excp) {
+            problems.add(FsckResult.Kind.CORRUPT, "commit", sha1, "not a commit");
+        }
+    }
+
+
+    /**
+     * Check parents, ref targets and blob references, find dangling commits.
+     * Fills BLOBNAMES and BLOBOWNERS with the filename and a referring commit of each blob.
+     */
+    private void checkConnectivity(Set<String> storedCommits, Map<String, String> blobNames,
+                                   Map<String, String> blobOwners) {
+        Set<String> shallow = repository.getShallow();
+        for (Map.Entry<String, Commit> entry : commits.entrySet()) {
+            Commit commit = entry.getValue();
+            for (String parent : new String[]{commit.getParent(), commit.getMergeFrom()}) {
+                // the parents of a shallow root were never fetched
+                if (parent != null && !storedCommits.contains(parent) && !shallow.contains(entry.getKey())) {
+                    problems.add(FsckResult.Kind.MISSING, "commit", parent, "parent of " + entry.getKey());
+                }
+            }
+            commit.getBlobs().forEach((filename, blob) -> {
+                blobNames.putIfAbsent(blob, filename);
+                blobOwners.putIfAbsent(blob, entry.getKey());
+            });
+        }
+        Stage stage = repository.getStage();
+        for (Map<String, String> staged : List.of(stage.getAdditionMap(), stage.getRemovalMap())) {
+            staged.forEach((filename, blob) -> {
+                blobNames.putIfAbsent(blob, filename);
+                blobOwners.putIfAbsent(blob, "the stage");
+            });
+        }
+
+        Map<String, String> roots = new HashMap<>();
+        repository.getRefs().all().forEach((name, sha1) -> roots.putIfAbsent(sha1, "ref " + name));
+        roots.putIfAbsent(repository.getHeadSha1(), "HEAD");
+        Set<String> reachable = new HashSet<>();
+        Deque<String> todo = new ArrayDeque<>();
+        roots.forEach((sha1, from) -> {
+            if (!storedCommits.contains(sha1)) {
+                problems.add(FsckResult.Kind.MISSING, "commit", sha1, from);
+            } else if (reachable.add(sha1)) {
+                todo.push(sha1);
+            }
+        });
+        while (!todo.isEmpty()) {
+            String sha1 = todo.pop();
+            Commit commit = commits.get(sha1);
+            if (commit == null || shallow.contains(sha1)) {
+                // corrupt and already reported, or a shallow root
+                continue;
+            }
+            for (String parent : new String[]{commit.getParent(), commit.getMergeFrom()}) {
+                if (parent != null && storedCommits.contains(parent) && reachable.add(parent)) {
+                    todo.push(parent);
+                }
+            }
+        }
+        for (String sha1 : commits.keySet()) {
+            if (!reachable.contains(sha1)) {
+                problems.add(FsckResult.Kind.DANGLING, "commit", sha1, "");
+            }
+        }
+    }
+
+
+    /**
+     * A stored copy of a blob, loose when PACK is null
+     */
+    private record BlobCopy(String id, ObjectStore.Pack pack) {
+    }
+
+
+    /**
+     * Hash one stored blob as FILENAME, unverifiable when nothing refers to it
+     */
+    private void checkBlob(BlobCopy copy, String filename) {
+        blobCount.incrementAndGet();
+        if (filename == null) {
+            return;
+        }
+        try (InputStream in = copy.pack() == null
+                ? Files.newInputStream(objects.looseFile(copy.id()).toPath())
+                : copy.pack().open(copy.id())) {
+            MessageDigest digest = Hashing.digest();
+            Hashing.update(digest, filename);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                digest.update(buffer, 0, n);
+                bytes.add(n);
+            }
+            if (!copy.id().equals(Hashing.finish(digest).name())) {
+                problems.add(FsckResult.Kind.CORRUPT, "blob", copy.id(), where(copy, filename) + ", hash mismatch");
+            }
+        } catch (IOException excp) {
+            problems.add(FsckResult.Kind.CORRUPT, "blob", copy.id(), where(copy, filename) + ", unreadable");
+        }
+    }
+
+
+    private static String where(BlobCopy copy, String filename) {
+        return copy.pack() == null ? filename : filename + " in " + copy.pack().name();
+    }
+
+
+    /**
+     * Run CHECK on every item, in batches spread over POOL
+     */
+    private static <T> void inParallel(ExecutorService pool, List<T> items, Consumer<T> check) {
+        List<Future<?>> batches = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+            List<T> batch = items.subList(from, Math.min(items.size(), from + BATCH_SIZE));
+            batches.add(pool.submit(() -> batch.forEach(check)));
+        }
+        try {
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted.");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(excp.getCause());
+        }
+    }
+}
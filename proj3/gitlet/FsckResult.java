@@ -0,0 +1,58 @@
+package gitlet;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Result of checking a repository
+ *
+ * @param problems corrupt, missing and dangling objects, sorted
+ * @param commits  commits checked
+ * @param blobs    blobs checked, loose and packed
+ * @param bytes    bytes read and hashed
+ * @param time     time spent
+ * @author Delete020
+ * @since 10/19/26 5:10 PM
+ */
+public record FsckResult(List<Problem> problems, int commits, int blobs, long bytes, Duration time) {
+
+    public enum Kind {
+        /** Stored under an id its contents don't hash to, or unreadable */
+        CORRUPT,
+        /** Referenced but not stored */
+        MISSING,
+        /** Stored but not reachable from any ref, HEAD or the stage */
+        DANGLING
+    }
+
+
+    /**
+     * One problem found by fsck
+     *
+     * @param kind   what is wrong
+     * @param type   "commit" or "blob"
+     * @param id     the object id
+     * @param detail where the object is referenced from, or why it is corrupt, may be empty
+     */
+    public record Problem(Kind kind, String type, String id, String detail) implements Comparable<Problem> {
+        @Override
+        public int compareTo(Problem o) {
+            int result = kind.compareTo(o.kind);
+            if (result == 0) {
+                result = type.compareTo(o.type);
+            }
+            return result != 0 ? result : id.compareTo(o.id);
+        }
+
+        @Override
+        public String toString() {
+            String line = kind.name().toLowerCase() + " " + type + " " + id;
+            return detail.isEmpty() ? line : line + " (" + detail + ")";
+        }
+    }
+
+
+    public boolean hasErrors() {
+        return problems.stream().anyMatch(problem -> problem.kind() != Kind.DANGLING);
+    }
+}
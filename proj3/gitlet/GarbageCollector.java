@@ -0,0 +1,261 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Deletes the commits and blobs no ref can reach any more and packs the rest.
+ * <p>
+ * Mark: every commit reachable from the branches, remote-tracking refs and HEAD, and every
+ * blob of those commits or of the stage, is reachable. The commit graph is walked on a
+ * fork/join pool, a task follows first parents itself and forks a new task for each merged-in
+ * parent, so histories with many branches are marked in parallel.
+ * <p>
+ * Sweep: unreachable loose commits and blobs are deleted once they are older than the grace
+ * period, so objects a concurrent command just wrote but hasn't referenced yet survive.
+ * Unreachable blobs of a pack younger than the grace period are written loose again,
+ * keeping the pack's age, instead of being dropped with the pack.
+ * <p>
+ * Repack: all reachable blobs are written into one new pack, then the old packs and the loose
+ * copies are deleted. Commits stay loose, global-log and commit id lookup list commit/.
+ * <p>
+ * An incremental run, what auto maintenance does when only loose objects piled up, leaves the
+ * packs alone: it sweeps loose objects only and packs just the reachable loose blobs into one
+ * new pack, so its cost follows the objects written since the last run, not the repository.
+ *
+ * @author Delete020
+ * @since 10/19/26 3:40 PM
+ */
+public class GarbageCollector {
+
+    /** Unreachable objects younger than this are kept by default */
+    public static final Duration DEFAULT_GRACE_PERIOD = Duration.ofDays(14);
+
+    private final GitletRepository repository;
+    private final ObjectStore objects;
+    private final File commitDir;
+    private final Set<String> shallow;
+    private final Set<String> reachableCommits = ConcurrentHashMap.newKeySet();
+    private final Set<String> reachableBlobs = ConcurrentHashMap.newKeySet();
+
+
+    public GarbageCollector(GitletRepository repository) {
+        this.repository = repository;
+        this.objects = repository.getObjects();
+        this.commitDir = Utils.join(repository.getGitletDir(), "commit");
+        this.shallow = repository.getShallow();
+    }
+
+
+    /**
+     * Collect garbage, deleting unreachable objects last modified before now minus GRACEPERIOD
+     */
+    public GcResult run(Duration gracePeriod) throws IOException {
+        return run(gracePeriod, true);
+    }
+
+
+    /**
+     * Collect garbage like {@link #run(Duration)}, incrementally unless REPACKALL is true
+     */
+    public GcResult run(Duration gracePeriod, boolean repackAll) throws IOException {
+        Instant expire = Instant.now().minus(gracePeriod);
+
+        long start = System.nanoTime();
+        mark();
+        Duration markTime = Duration.ofNanos(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        Sweep sweep = sweep(expire, repackAll);
+        Duration sweepTime = Duration.ofNanos(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        ObjectStore.Pack pack = repackAll ? repack() : packLoose();
+        Duration repackTime = Duration.ofNanos(System.nanoTime() - start);
+
+        int packedBlobs = pack == null ? 0 : pack.ids().size();
+        long packBytes = pack == null ? 0 : pack.packFile().length() + pack.indexFile().length();
+        return new GcResult(reachableCommits.size(), reachableBlobs.size(), markTime,
+                sweep.commits, sweep.blobs, sweep.bytes, sweepTime,
+                packedBlobs, packBytes, repackTime);
+    }
+
+
+    /**
+     * Mark all commits and blobs reachable from refs, HEAD and the stage
+     */
+    private void mark() {
+        Set<String> roots = new HashSet<>(repository.getRefs().all().values());
+        roots.add(repository.getHeadSha1());
+        Stage stage = repository.getStage();
+        reachableBlobs.addAll(stage.getAdditionMap().values());
+        reachableBlobs.addAll(stage.getRemovalMap().values());
+
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.invoke(new MarkTask(null, null, roots));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Marks the history of one commit. A chain of first parents is followed in a loop,
+     * so a long linear history doesn't nest tasks.
+     */
+    private class MarkTask extends CountedCompleter<Void> {
+        private final String id;
+        private final Collection<String> roots;
+
+        MarkTask(CountedCompleter<?> parent, String id, Collection<String> roots) {
+            super(parent);
+            this.id = id;
+            this.roots = roots;
+        }
+
+        @Override
+        public void compute() {
+            if (roots != null) {
+                for (String root : roots) {
+                    markLater(root);
+                }
+            }
+            String next = id;
+            while (next != null && reachableCommits.add(next)) {
+                Commit commit = repository.getCommit(next);
+                reachableBlobs.addAll(commit.getBlobs().values());
+                if (shallow.contains(next)) {
+                    // the history of a shallow root was never fetched
+                    break;
+                }
+                if (commit.getMergeFrom() != null) {
+                    markLater(commit.getMergeFrom());
+                }
+                next = commit.getParent();
+            }
+            tryComplete();
+        }
+
+        private void markLater(String commitId) {
+            addToPendingCount(1);
+            new MarkTask(this, commitId, null).fork();
+        }
+    }
+
+
+    private static class Sweep {
+        private int commits;
+        private int blobs;
+        private long bytes;
+    }
+
+
+    /**
+     * Delete unreachable objects that expired, and with PACKS loosen the unreachable blobs of
+     * recent packs, which are about to be deleted
+     */
+    private Sweep sweep(Instant expire, boolean packs) throws IOException {
+        Sweep sweep = new Sweep();
+        for (String sha1 : Objects.requireNonNull(Utils.plainFilenamesIn(commitDir))) {
+            if (!reachableCommits.contains(sha1) && delete(Utils.join(commitDir, sha1), expire, sweep)) {
+                sweep.commits++;
+            }
+        }
+        for (String sha1 : objects.looseObjects()) {
+            if (!reachableBlobs.contains(sha1) && delete(objects.looseFile(sha1), expire, sweep)) {
+                sweep.blobs++;
+            }
+        }
+        for (ObjectStore.Pack pack : packs ? objects.packs() : List.<ObjectStore.Pack>of()) {
+            FileTime packTime = Files.getLastModifiedTime(pack.packFile().toPath());
+            boolean expired = !packTime.toInstant().isAfter(expire);
+            for (String sha1 : pack.ids()) {
+                if (reachableBlobs.contains(sha1)) {
+                    continue;
+                }
+                if (expired) {
+                    sweep.blobs++;
+                    sweep.bytes += pack.length(sha1);
+                } else if (!objects.looseFile(sha1).exists()) {
+                    objects.writeLoose(sha1, pack.read(sha1));
+                    Files.setLastModifiedTime(objects.looseFile(sha1).toPath(), packTime);
+                }
+            }
+        }
+        return sweep;
+    }
+
+
+    private boolean delete(File file, Instant expire, Sweep sweep) throws IOException {
+        if (Files.getLastModifiedTime(file.toPath()).toInstant().isAfter(expire)) {
+            return false;
+        }
+        long length = file.length();
+        if (!file.delete()) {
+            return false;
+        }
+        sweep.bytes += length;
+        return true;
+    }
+
+
+    /**
+     * Write every reachable blob into one pack and remove the old packs and loose copies.
+     * Returns the new pack, or null if there is nothing to pack.
+     */
+    private ObjectStore.Pack repack() throws IOException {
+        List<String> packable = new ArrayList<>();
+        for (String sha1 : reachableBlobs) {
+            // a missing blob is reported by fsck, it can't be packed
+            if (objects.contains(sha1)) {
+                packable.add(sha1);
+            }
+        }
+        List<ObjectStore.Pack> oldPacks = objects.packs();
+        ObjectStore.Pack pack = packable.isEmpty() ? null : objects.writePack(packable);
+        for (ObjectStore.Pack oldPack : oldPacks) {
+            if (pack == null || !oldPack.name().equals(pack.name())) {
+                objects.deletePack(oldPack);
+            }
+        }
+        for (String sha1 : packable) {
+            Files.deleteIfExists(objects.looseFile(sha1).toPath());
+        }
+        objects.deleteEmptyDirectories();
+        return pack;
+    }
+
+
+    /**
+     * Write the reachable loose blobs into a new pack and remove their loose copies, leaving
+     * the existing packs as they are. Returns the new pack, or null if nothing is loose.
+     */
+    private ObjectStore.Pack packLoose() throws IOException {
+        List<String> loose = new ArrayList<>();
+        for (String sha1 : objects.looseObjects()) {
+            if (reachableBlobs.contains(sha1)) {
+                loose.add(sha1);
+            }
+        }
+        ObjectStore.Pack pack = loose.isEmpty() ? null : objects.writePack(loose);
+        for (String sha1 : loose) {
+            Files.deleteIfExists(objects.looseFile(sha1).toPath());
+        }
+        objects.deleteEmptyDirectories();
+        return pack;
+    }
+}
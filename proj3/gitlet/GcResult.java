@@ -0,0 +1,24 @@
+package gitlet;
+
+import java.time.Duration;
+
+/**
+ * Result of a garbage collection, phase by phase
+ *
+ * @param reachableCommits commits reachable from refs, HEAD and the stage
+ * @param reachableBlobs   blobs reachable from them
+ * @param markTime         time spent marking reachable objects
+ * @param prunedCommits    unreachable commits deleted
+ * @param prunedBlobs      unreachable blobs deleted, loose or dropped from packs
+ * @param prunedBytes      bytes reclaimed by deleting unreachable objects
+ * @param sweepTime        time spent deleting unreachable objects
+ * @param packedBlobs      blobs written to the new pack
+ * @param packBytes        size of the new pack and its index
+ * @param repackTime       time spent repacking
+ * @author Delete020
+ * @since 10/19/26 3:40 PM
+ */
+public record GcResult(int reachableCommits, int reachableBlobs, Duration markTime,
+                       int prunedCommits, int prunedBlobs, long prunedBytes, Duration sweepTime,
+                       int packedBlobs, long packBytes, Duration repackTime) {
+}
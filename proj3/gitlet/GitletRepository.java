@@ -3,12 +3,15 @@ package gitlet;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author Delete020
@@ -18,8 +21,13 @@ import java.util.*;
  * <p>
  * .gitlet/ -- top level folder for all persistent data
  * - objects/ -- folder containing all of the persistent data for commits and blobs
+ *   loose in objects/xx/ or packed in objects/pack/
  * - branches/ -- folder containing all of the persistent data for branch
+ * - packed-refs -- file containing the branches moved out of branches/ by pack-refs
  * - HEAD/ -- file containing the current HEAD point
+ * <p>
+ * Commands never print or exit, failures are reported by throwing a GitletException
+ * whose message is the error to show to the user.
  */
 public class GitletRepository {
 
@@ -31,7 +39,24 @@ public class GitletRepository {
     private final File HEAD;
     private final File STAGE;
     private final File REMOTE_DIR;
-    private static final DateTimeFormatter ZONE_DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss yyyy Z");
+    /** The commits of a shallow repository whose parents were never fetched, one per line */
+    private final File SHALLOW;
+    /** The remote a partial clone fetches its missing blobs from */
+    private final File PROMISOR;
+    private final LockManager locks;
+    private final Refs refs;
+    private final ObjectStore objects;
+    /**
+     * Commits are immutable once written, keep the recently used ones deserialized
+     */
+    private static final int COMMIT_CACHE_SIZE = 4096;
+    private final Map<String, Commit> commitCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Commit> eldest) {
+                    return size() > COMMIT_CACHE_SIZE;
+                }
+            });
 
 
     public GitletRepository() {
@@ -48,6 +73,18 @@ public class GitletRepository {
         HEAD = Utils.join(GITLET_DIR, "HEAD");
         STAGE = Utils.join(GITLET_DIR, "stage");
         REMOTE_DIR = Utils.join(GITLET_DIR, "remote");
+        SHALLOW = Utils.join(GITLET_DIR, "shallow");
+        PROMISOR = Utils.join(GITLET_DIR, "promisor");
+        locks = new LockManager(GITLET_DIR);
+        refs = new Refs(GITLET_DIR, locks);
+        objects = new ObjectStore(GITLET_DIR, locks);
+    }
+
+    /**
+     * Returns true if a Gitlet version-control system exists in the working directory
+     */
+    public boolean exists() {
+        return GITLET_DIR.exists();
     }
 
     /**
@@ -56,7 +93,7 @@ public class GitletRepository {
     public void init() throws IOException {
         // If there is already a Gitlet version-control system in the current directory
         if (GITLET_DIR.exists()) {
-            exitWithError("A Gitlet version-control system already exists in the current directory.");
+            throw Utils.error("A Gitlet version-control system already exists in the current directory.");
         }
 
         // Initialize folders
@@ -90,100 +127,91 @@ public class GitletRepository {
      * Adds a copy of the file as it currently exists to the staging area
      */
     public void add(String filename) throws IOException {
-        // Get stage object
-        Stage stage = Utils.readObject(STAGE, Stage.class);
-        Map<String, String> additionMap = stage.getAdditionMap();
-        Map<String, String> removalMap = stage.getRemovalMap();
+        try (LockManager.Lock ignored = locks.exclusive(LockManager.INDEX)) {
+            // Get stage object
+            Stage stage = Utils.readObject(STAGE, Stage.class);
+            BlobMap additionMap = stage.getAdditionMap();
+            BlobMap removalMap = stage.getRemovalMap();
 
-        // Get working directory file
-        File file = Utils.join(CWD, filename);
-        // Check the file exists in the working directory
-        if (!file.exists()) {
-            exitWithError("File does not exist.");
-        }
+            // Get working directory file
+            File file = Utils.join(CWD, filename);
+            // Check the file exists in the working directory
+            if (!file.exists()) {
+                throw Utils.error("File does not exist.");
+            }
 
-        String addFileSha1 = Utils.sha1(filename, Utils.readContents(file));
-        File stageFile = getObjectFile(addFileSha1);
+            String addFileSha1 = getCwdFileSha1(filename);
 
-        removalMap.remove(filename);
+            removalMap.remove(filename);
 
-        // The file is identical to the parent commit file or not
-        String parentVersion = getHead().getBlobs().get(filename);
-        if (parentVersion != null && parentVersion.equals(addFileSha1)) {
-            // Remove it from the staging area， if a file changed, added, and then changed back
-            additionMap.remove(filename);
-        } else {
-            additionMap.put(filename, addFileSha1);
-        }
+            // The file is identical to the parent commit file or not
+            String parentVersion = getHead().getBlobs().get(filename);
+            if (parentVersion != null && parentVersion.equals(addFileSha1)) {
+                // Remove it from the staging area, if a file changed, added, and then changed back
+                additionMap.remove(filename);
+            } else {
+                additionMap.put(filename, addFileSha1);
+            }
 
-        // File already exists in the staging area, do nothing
-        if (!stageFile.exists()) {
-            // Copy file to staging area
-            Files.copy(file.toPath(), stageFile.toPath());
-        }
+            // Copy file to staging area, unless it's already stored
+            objects.insert(addFileSha1, file.toPath());
 
-        // persistent stage object
-        saveStage(stage);
+            // persistent stage object
+            saveStage(stage);
+        }
     }
 
 
     /**
-     * Saves a snapshot of tracked files
+     * Saves a snapshot of tracked files, returns the sha1 of the new commit
      */
-    public void commit(String message) {
-        // Commit must have a non-blank message.
-        if (message.isEmpty()) {
-            exitWithError("Please enter a commit message.");
-        }
+    public String commit(String message) {
+        try (LockManager.Lock ignored = locks.exclusive(LockManager.INDEX)) {
+            // Commit must have a non-blank message.
+            if (message.isEmpty()) {
+                throw Utils.error("Please enter a commit message.");
+            }
 
-        // Get staging area, if empty means no files have been staged, abort.
-        Stage stage = getStage();
-        if (stage.getAdditionMap().isEmpty() && stage.getRemovalMap().isEmpty()) {
-            exitWithError("No changes added to the commit.");
-        }
+            // Get staging area, if empty means no files have been staged, abort.
+            Stage stage = getStage();
+            if (stage.getAdditionMap().isEmpty() && stage.getRemovalMap().isEmpty()) {
+                throw Utils.error("No changes added to the commit.");
+            }
 
-        // Get the contents of head
-        String headContent = Utils.readContentsAsString(HEAD);
-        // Get parent commit sha1 string
-        String parentSha1 = headContent;
-        // Two cases, head points to a branch or head points to a commit object
-        boolean isHeadPointBranch = false;
-        if (Utils.join(BRANCH_DIR, headContent).exists()) {
-            isHeadPointBranch = true;
-            parentSha1 = getBranchSha1(headContent);
-        }
+            // Get the contents of head
+            String headContent = Utils.readContentsAsString(HEAD);
+            // Get parent commit sha1 string
+            String parentSha1 = headContent;
+            // Two cases, head points to a branch or head points to a commit object
+            boolean isHeadPointBranch = false;
+            if (refs.exists(headContent)) {
+                isHeadPointBranch = true;
+                parentSha1 = getBranchSha1(headContent);
+            }
 
-        // Create a new commit object, get the parent commit blobs
-        Commit commit = new Commit(message, parentSha1);
-        Map<String, String> blobs = getHead().getBlobs();
-        commit.setBlobs(blobs);
+            // Create a new commit object with the parent commit blobs,
+            // plus files saved in the staging area and minus files deleted from the staging area
+            Commit commit = new Commit(message, parentSha1);
+            BlobMap blobs = getHead().getBlobs().update(stage.getAdditionMap(), stage.getRemovalMap());
+            commit.setBlobs(blobs);
 
-        // Add files saved in the staging area and remove files deleted from the staging area
-        blobs.putAll(stage.getAdditionMap());
-        for (String filename : stage.getRemovalMap().keySet()) {
-            blobs.remove(filename);
-        }
+            // clear staging area
+            saveStage(new Stage());
 
-        // clear staging area
-        saveStage(new Stage());
+            // Remove the files that removed by the system rm command
+            blobs.keySet().removeIf(blobsFile -> !Utils.join(CWD, blobsFile).exists());
 
-        // Remove the files that removed by the system rm command
-        for (String blobsFile : blobs.keySet()) {
-            if (!Utils.join(CWD, blobsFile).exists()) {
-                blobs.remove(blobsFile);
-            }
-        }
-
-        // Persistent new commit
-        String commitSha1 = getObjectSha1(commit);
-        persistentCommit(commitSha1, commit);
+            // Persistent new commit
+            String commitSha1 = getObjectSha1(commit);
+            persistentCommit(commitSha1, commit);
 
-        // Update branch or head point to new commit
-        if (isHeadPointBranch) {
-            File branch = Utils.join(BRANCH_DIR, headContent);
-            Utils.writeContents(branch, commitSha1);
-        } else {
-            Utils.writeContents(HEAD, commitSha1);
+            // Update branch or head point to new commit, unless another process moved it meanwhile
+            if (isHeadPointBranch) {
+                refs.compareAndSet(headContent, parentSha1, commitSha1);
+            } else {
+                locks.compareAndSet(HEAD, parentSha1, commitSha1);
+            }
+            return commitSha1;
         }
     }
 
@@ -192,201 +220,204 @@ public class GitletRepository {
      * Remove file from staging area or current working directory
      */
     public void rm(String filename) {
-        // get stage object
-        Stage stage = getStage();
-        Map<String, String> additionMap = stage.getAdditionMap();
-        Map<String, String> removalMap = stage.getRemovalMap();
-
-        // get current head blobs
-        Map<String, String> blobs = getHead().getBlobs();
-
-        // Two cases, file currently staged or in the current commit, otherwise error
-        if (additionMap.containsKey(filename)) {
-            additionMap.remove(filename);
-        } else if (blobs.containsKey(filename)) {
-            removalMap.put(filename, blobs.get(filename));
-            Utils.restrictedDelete(filename);
-        } else {
-            exitWithError("No reason to remove the file.");
-        }
+        try (LockManager.Lock ignored = locks.exclusive(LockManager.INDEX)) {
+            // get stage object
+            Stage stage = getStage();
+            BlobMap additionMap = stage.getAdditionMap();
+            BlobMap removalMap = stage.getRemovalMap();
+
+            // get current head blobs
+            BlobMap blobs = getHead().getBlobs();
+
+            // Two cases, file currently staged or in the current commit, otherwise error
+            int headIndex = blobs.indexOf(filename);
+            if (additionMap.containsKey(filename)) {
+                additionMap.remove(filename);
+            } else if (headIndex >= 0) {
+                removalMap.put(filename, blobs.id(headIndex).name());
+                Utils.restrictedDelete(Utils.join(CWD, filename));
+            } else {
+                throw Utils.error("No reason to remove the file.");
+            }
 
-        // persistent stage object
-        saveStage(stage);
+            // persistent stage object
+            saveStage(stage);
+        }
     }
 
 
     /**
-     * Display information about each commit backwards along the commit tree until the initial commit.
+     * Iterate over each commit backwards along the commit tree until the initial commit,
+     * following the first parent of merges. Commits are read lazily, as the iterator advances,
+     * under a shared lock held until the iterator is exhausted or closed.
      */
-    public void log() {
-        String sha1 = getHeadSha1();
-        Commit commit;
-
-        while (sha1 != null) {
-            commit = getCommit(sha1);
-            displayCommitInfo(commit, sha1);
-            sha1 = commit.getParent();
+    public CommitIterator log() {
+        LockManager.Lock lock = locks.shared(LockManager.INDEX);
+        try {
+            return new CommitIterator(new RevWalk(this).start(getHeadSha1()).firstParent(true).iterator(), lock);
+        } catch (RuntimeException excp) {
+            lock.close();
+            throw excp;
         }
     }
 
 
     /**
-     * Display information about all commits ever made
+     * Iterate over all commits ever made, under a shared lock like {@link #log()}
      */
-    public void globalLog() {
-        for (String commitSha1 : Objects.requireNonNull(Utils.plainFilenamesIn(COMMIT_DIR))) {
-            Commit commit = getCommit(commitSha1);
-            displayCommitInfo(commit, commitSha1);
-        }
-    }
+    public CommitIterator globalLog() {
+        LockManager.Lock lock = locks.shared(LockManager.INDEX);
+        try {
+            Iterator<String> commits = Objects.requireNonNull(Utils.plainFilenamesIn(COMMIT_DIR)).iterator();
+            return new CommitIterator(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return commits.hasNext();
+                }
 
-    /**
-     * Print all the information of a commit object
-     */
-    private void displayCommitInfo(Commit commit, String commitSha1) {
-        System.out.println("===");
-        System.out.println("commit " + commitSha1);
-        if (commit.getMergeFrom() != null) {
-            System.out.println("Merge: " + commit.getParent().substring(0, 7) + " " + commit.getMergeFrom().substring(0, 7));
+                @Override
+                public CommitInfo next() {
+                    String commitSha1 = commits.next();
+                    return CommitInfo.of(commitSha1, getCommit(commitSha1));
+                }
+            }, lock);
+        } catch (RuntimeException excp) {
+            lock.close();
+            throw excp;
         }
-        System.out.println("Date: " + commit.getTimestamp().withZoneSameInstant(ZoneOffset.systemDefault()).format(ZONE_DATE_TIME_FORMATTER));
-        System.out.println(commit.getMessage());
-        System.out.println();
     }
 
 
     /**
-     * Prints out the ids of all commits that have the given commit message
+     * Returns the ids of all commits that have the given commit message
      */
-    public void find(String message) {
-        boolean exists = false;
-        for (String commitSha1 : Objects.requireNonNull(Utils.plainFilenamesIn(COMMIT_DIR))) {
-            Commit commit = getCommit(commitSha1);
-            if (commit.getMessage().contains(message)) {
-                System.out.println(commitSha1);
-                exists = true;
+    public List<String> find(String message) {
+        try (LockManager.Lock ignored = locks.shared(LockManager.INDEX)) {
+            List<String> result = new ArrayList<>();
+            for (String commitSha1 : Objects.requireNonNull(Utils.plainFilenamesIn(COMMIT_DIR))) {
+                Commit commit = getCommit(commitSha1);
+                if (commit.getMessage().contains(message)) {
+                    result.add(commitSha1);
+                }
             }
-        }
-        if (!exists) {
-            System.out.println("Found no commit with that message.");
+            return result;
         }
     }
 
 
     /**
-     * Display current branch information
+     * Collect current branch information
      */
-    public void status() {
-        // branch status
-        String headContent = Utils.readContentsAsString(HEAD);
-        System.out.println("=== Branches ===");
-        List<String> branchList = Objects.requireNonNull(Utils.plainFilenamesIn(BRANCH_DIR));
-        Collections.sort(branchList);
-        for (String branch : branchList) {
-            if (branch.equals(headContent)) {
-                System.out.print("*");
+    public StatusResult status() {
+        try (LockManager.Lock ignored = locks.shared(LockManager.INDEX)) {
+            // branch status
+            String headContent = Utils.readContentsAsString(HEAD);
+            List<String> branchList = refs.branches();
+            String currentBranch = branchList.contains(headContent) ? headContent : null;
+
+            // get staging area and head commit blobs
+            BlobMap blobs = getHead().getBlobs();
+            Stage stage = getStage();
+            BlobMap stageAdditionList = stage.getAdditionMap();
+            BlobMap stageRemovalList = stage.getRemovalMap();
+            List<StatusResult.Modification> modifyList = new ArrayList<>();
+            // staged file
+            for (int i = 0; i < stageAdditionList.size(); i++) {
+                differentFile(stageAdditionList.path(i), stageAdditionList.id(i), modifyList);
             }
-            System.out.println(branch);
-        }
-        System.out.println();
-
-        // get staging area and head commit blobs
-        Map<String, String> blobs = getHead().getBlobs();
-        Stage stage = getStage();
-        Map<String, String> stageAdditionList = stage.getAdditionMap();
-        List<String> modifyList = new ArrayList<>();
-        // staged file
-        System.out.println("=== Staged Files ===");
-        for (String filename : stageAdditionList.keySet()) {
-            System.out.println(filename);
-            blobs.remove(filename);
-            differentFile(filename, stageAdditionList, modifyList);
-        }
-        System.out.println();
-
-        // removed file
-        System.out.println("=== Removed Files ===");
-        for (String filename : stage.getRemovalMap().keySet()) {
-            System.out.println(filename);
-            blobs.remove(filename);
-        }
-        System.out.println();
-
-        // modify not staged file
-        System.out.println("=== Modifications Not Staged For Commit ===");
-        blobs.keySet().forEach(filename -> differentFile(filename, blobs, modifyList));
-        Collections.sort(modifyList);
-        modifyList.forEach(System.out::println);
-        System.out.println();
 
-        // untracked files
-        System.out.println("=== Untracked Files ===");
-        blobs.putAll(stageAdditionList);
-        for (String filename : Utils.plainFilenamesIn(CWD)) {
-            if (!blobs.containsKey(filename)) {
-                System.out.println(filename);
+            // modify not staged file, neither staged nor removed
+            for (int i = 0; i < blobs.size(); i++) {
+                String filename = blobs.path(i);
+                if (!stageAdditionList.containsKey(filename) && !stageRemovalList.containsKey(filename)) {
+                    differentFile(filename, blobs.id(i), modifyList);
+                }
+            }
+            Collections.sort(modifyList);
+
+            // untracked files
+            List<String> untracked = new ArrayList<>();
+            for (String filename : Utils.plainFilenamesIn(CWD)) {
+                boolean tracked = stageAdditionList.containsKey(filename)
+                        || blobs.containsKey(filename) && !stageRemovalList.containsKey(filename);
+                if (!tracked) {
+                    untracked.add(filename);
+                }
             }
+
+            return new StatusResult(branchList, currentBranch, new ArrayList<>(stageAdditionList.keySet()),
+                    new ArrayList<>(stageRemovalList.keySet()), modifyList, untracked);
         }
     }
 
 
     /**
-     * Check the sha1 of file in working directory same as given map
+     * Check the sha1 of file in working directory same as the given version
      */
-    private void differentFile(String filename, Map<String, String> compare, List<String> modifyList) {
+    private void differentFile(String filename, ObjectId expected, List<StatusResult.Modification> modifyList) {
         File file = Utils.join(CWD, filename);
         if (!file.exists()) {
-            modifyList.add(filename + " (deleted)");
+            modifyList.add(new StatusResult.Modification(filename, true));
             return;
         }
-        String fileSha1 = Utils.sha1(filename, Utils.readContentsAsString(file));
-        if (!compare.get(filename).equals(fileSha1)) {
-            modifyList.add(filename + " (modified)");
+        if (!expected.equals(getCwdFileId(filename, file))) {
+            modifyList.add(new StatusResult.Modification(filename, false));
         }
     }
 
 
     /**
-     * Checkout of branch or file
-     * Updates the files in the working directory to match the version stored in given commit
      * Restore the entire working directory to the version of the specified branch
      */
-    public void checkout(String... args) throws IOException {
-        Map<String, String> currentBlobs = getHead().getBlobs();
-        // if checkout a branch
-        if (args.length == 1) {
+    public void checkoutBranch(String branchName) throws IOException {
+        try (LockManager.Lock ignored = locks.exclusive(LockManager.INDEX)) {
             // failure if branch not exists
-            if (args[0].equals(Utils.readContentsAsString(HEAD))) {
-                exitWithError("No need to checkout the current branch.");
+            if (branchName.equals(Utils.readContentsAsString(HEAD))) {
+                throw Utils.error("No need to checkout the current branch.");
             }
 
             // Recovery version by sha1 for the given branch
-            restoreVersion(currentBlobs, getBranchSha1(args[0]));
+            restoreVersion(getHead().getBlobs(), getBranchSha1(branchName));
             // change current branch to the given branch
-            Utils.writeContents(HEAD, args[0]);
-        } else if ("--".equals(args[0]) && args.length == 2) {
-            // takes the version of the file as it exists in the head commit
-            if (!currentBlobs.containsKey(args[1])) {
-                exitWithError("File does not exist in that commit.");
-            }
+            locks.set(HEAD, branchName);
+        }
+    }
 
-            // delete file and copy
-            Utils.restrictedDelete(args[1]);
-            Files.copy(getObjectFile(currentBlobs.get(args[1])).toPath(), Utils.join(CWD, args[1]).toPath());
-        } else if ("--".equals(args[1]) && args.length == 3) {
-            // takes the version of the file as it exists in the commit with the given id
-            String commitSha1 = getCommitSha1(args[0]);
-            currentBlobs = getCommit(commitSha1).getBlobs();
-            if (!currentBlobs.containsKey(args[2])) {
-                exitWithError("File does not exist in that commit.");
+
+    /**
+     * Takes the version of the file as it exists in the head commit
+     */
+    public void checkoutFile(String filename) throws IOException {
+        checkoutFile(getHead(), filename);
+    }
+
+
+    /**
+     * Takes the version of the file as it exists in the commit with the given id
+     */
+    public void checkoutFile(String commitId, String filename) throws IOException {
+        checkoutFile(getCommit(getCommitSha1(commitId)), filename);
+    }
+
+
+    /**
+     * Updates the file in the working directory to match the version stored in given commit
+     */
+    private void checkoutFile(Commit commit, String filename) throws IOException {
+        try (LockManager.Lock ignored = locks.exclusive(LockManager.INDEX)) {
+            BlobMap blobs = commit.getBlobs();
+            int i = blobs.indexOf(filename);
+            if (i < 0) {
+                throw Utils.error("File does not exist in that commit.");
             }
 
+            // a partial clone fetches the blob before the file is deleted
+            String blob = blobs.id(i).name();
+            objects.prefetch(List.of(blob));
             // delete file and copy
-            Utils.restrictedDelete(args[2]);
-            Files.copy(getObjectFile(currentBlobs.get(args[2])).toPath(), Utils.join(CWD, args[2]).toPath());
-        } else {
-            // command not correct
-            exitWithError("Incorrect operands.");
+            File file = Utils.join(CWD, filename);
+            Utils.restrictedDelete(file);
+            objects.checkout(blob, file.toPath());
         }
     }
 
@@ -396,21 +427,41 @@ public class GitletRepository {
      * restore previous version and moves the current branch's head to that commit node
      */
     public void reset(String commitId) throws IOException {
-        if (Utils.join(BRANCH_DIR, commitId).exists()) {
-            exitWithError("No commit with that id exists.");
+        try (LockManager.Lock ignored = locks.exclusive(LockManager.INDEX)) {
+            if (refs.exists(commitId)) {
+                throw Utils.error("No commit with that id exists.");
+            }
+
+            // restore
+            String headSha1 = getHeadSha1();
+            BlobMap headBlobs = getCommit(headSha1).getBlobs();
+            String commit = getCommitSha1(commitId);
+            restoreVersion(headBlobs, commit);
+
+            // move branch
+            updateHead(headSha1, commit);
         }
+    }
 
-        // restore
-        Map<String, String> headBlobs = getHead().getBlobs();
-        String commit = getCommitSha1(commitId);
-        restoreVersion(headBlobs, commit);
 
-        // move branch
-        File branchFile = Utils.join(BRANCH_DIR, Utils.readContentsAsString(HEAD));
-        if (branchFile.exists()) {
-            Utils.writeContents(branchFile, commit);
-        } else {
-            Utils.writeContents(HEAD, commit);
+    /**
+     * Move BRANCH from EXPECTED to COMMITSHA1, a commit with EXPECTED in its history.
+     * If BRANCH is checked out the working directory is restored to COMMITSHA1 as well.
+     * Fails without changing anything if BRANCH no longer points at EXPECTED, or if EXPECTED
+     * isn't in the history of COMMITSHA1: whoever pushes it must not rewrite the branch.
+     */
+    public void fastForward(String branch, String expected, String commitSha1) throws IOException {
+        try (LockManager.Lock ignored = locks.exclusive(LockManager.INDEX)) {
+            if (!expected.equals(refs.get(branch))) {
+                throw Utils.error("Cannot update %s: it was changed by another process.", branch);
+            }
+            if (!new RevWalk(this).start(commitSha1).contains(expected)) {
+                throw Utils.error("Please pull down remote changes before pushing.");
+            }
+            if (branch.equals(Utils.readContentsAsString(HEAD))) {
+                restoreVersion(getCommit(expected).getBlobs(), commitSha1);
+            }
+            refs.compareAndSet(branch, expected, commitSha1);
         }
     }
 
@@ -418,17 +469,18 @@ public class GitletRepository {
     /**
      * Restore working directory to the given commit version
      */
-    private void restoreVersion(Map<String, String> headBlobs, String commitSha1) throws IOException {
+    private void restoreVersion(BlobMap headBlobs, String commitSha1) throws IOException {
         // failure if working directory had modified file
-        for (Map.Entry<String, String> entry : headBlobs.entrySet()) {
-            File file = Utils.join(CWD, entry.getKey());
-            if (!file.exists() || !entry.getValue().equals(getCwdFileSha1(file))) {
-                exitWithError("here is an untracked file in the way; delete it, or add and commit it first.");
+        for (int i = 0; i < headBlobs.size(); i++) {
+            String filename = headBlobs.path(i);
+            File file = Utils.join(CWD, filename);
+            if (!file.exists() || !headBlobs.id(i).equals(getCwdFileId(filename, file))) {
+                throw Utils.error("There is an untracked file in the way; delete it, or add and commit it first.");
             }
         }
 
         // restore files to working directory
-        Map<String, String> commitBlobs = getCommit(commitSha1).getBlobs();
+        BlobMap commitBlobs = getCommit(commitSha1).getBlobs();
         restoreWorkingDirectory(commitBlobs, headBlobs);
     }
 
@@ -436,23 +488,26 @@ public class GitletRepository {
     /**
      * Clear working directory file, then copy given blobs files to working directory
      */
-    private void restoreWorkingDirectory(Map<String, String> restoreBlobs, Map<String, String> currentBlobs) throws IOException {
+    private void restoreWorkingDirectory(BlobMap restoreBlobs, BlobMap currentBlobs) throws IOException {
         //in order to not overwrite untracked files, check working file is untracked, but have same filename of restore commit
-        Map<String, String> differBlobs = new TreeMap<>(restoreBlobs);
-        currentBlobs.keySet().forEach(differBlobs::remove);
-        for (String filename : differBlobs.keySet()) {
-            File file = Utils.join(CWD, filename);
-            if (file.exists()) {
-                exitWithError("here is an untracked file in the way; delete it, or add and commit it first.");
+        for (int i = 0; i < restoreBlobs.size(); i++) {
+            String filename = restoreBlobs.path(i);
+            if (!currentBlobs.containsKey(filename) && Utils.join(CWD, filename).exists()) {
+                throw Utils.error("There is an untracked file in the way; delete it, or add and commit it first.");
             }
         }
 
+        // a partial clone fetches what it is about to check out in one go, before deleting anything
+        objects.prefetch(restoreBlobs.values());
+
         // delete all files in the working directory
-        currentBlobs.keySet().forEach(Utils::restrictedDelete);
+        for (int i = 0; i < currentBlobs.size(); i++) {
+            Utils.restrictedDelete(Utils.join(CWD, currentBlobs.path(i)));
+        }
 
-        for (Map.Entry<String, String> entry : restoreBlobs.entrySet()) {
-            File file = Utils.join(CWD, entry.getKey());
-            Files.copy(getObjectFile(entry.getValue()).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        for (int i = 0; i < restoreBlobs.size(); i++) {
+            File file = Utils.join(CWD, restoreBlobs.path(i));
+            objects.checkout(restoreBlobs.id(i).name(), file.toPath());
         }
 
         // clear staging area
@@ -464,12 +519,11 @@ public class GitletRepository {
      * Create new branch
      */
     public void branch(String branchName) throws IOException {
-        File branchFile = Utils.join(BRANCH_DIR, branchName);
-        if (branchFile.exists()) {
-            exitWithError("A branch with that name already exists.");
+        if (refs.exists(branchName)) {
+            throw Utils.error("A branch with that name already exists.");
         }
-        branchFile.createNewFile();
-        Utils.writeContents(branchFile, getHeadSha1());
+        // fails if another process created the branch in between
+        refs.compareAndSet(branchName, null, getHeadSha1());
     }
 
 
@@ -478,177 +532,307 @@ public class GitletRepository {
      */
     public void rmBranch(String branchName) {
         if (branchName.equals(Utils.readContentsAsString(HEAD))) {
-            exitWithError("Cannot remove the current branch.");
+            throw Utils.error("Cannot remove the current branch.");
         }
 
-        File file = Utils.join(BRANCH_DIR, branchName);
-        if (!file.exists()) {
-            exitWithError("A branch with that name does not exist.");
+        String branchSha1 = refs.get(branchName);
+        if (branchSha1 == null) {
+            throw Utils.error("A branch with that name does not exist.");
         }
-        file.delete();
+        refs.compareAndSet(branchName, branchSha1, null);
+    }
+
+
+    /**
+     * Delete unreachable objects older than GRACEPERIOD and pack the reachable blobs
+     */
+    public GcResult gc(Duration gracePeriod) throws IOException {
+        return gc(gracePeriod, true);
+    }
+
+
+    /**
+     * Like {@link #gc(Duration)}, but unless REPACKALL is true only the loose blobs are packed
+     * and existing packs are kept, see {@link GarbageCollector}
+     */
+    public GcResult gc(Duration gracePeriod, boolean repackAll) throws IOException {
+        try (LockManager.Lock ignored = locks.exclusive(LockManager.INDEX)) {
+            return new GarbageCollector(this).run(gracePeriod, repackAll);
+        }
+    }
+
+
+    /**
+     * Verify the integrity and connectivity of all commits and blobs
+     */
+    public FsckResult fsck() {
+        try (LockManager.Lock ignored = locks.shared(LockManager.INDEX)) {
+            return new Fsck(this).run();
+        }
+    }
+
+
+    /**
+     * Move all loose branches into the packed-refs file, returns the number of branches packed
+     */
+    public int packRefs() {
+        return refs.pack();
     }
 
 
     /**
      * Merges files from the given branch into the current branch.
      */
-    public void merge(String branchName) throws IOException {
-        // error, staging area is not empty
-        Stage stage = getStage();
-        if (!(stage.getAdditionMap().isEmpty() && stage.getRemovalMap().isEmpty())) {
-            exitWithError("You have uncommitted changes.");
-        }
-        // error, branch not exists
-        if (!Utils.join(BRANCH_DIR, branchName).exists()) {
-            exitWithError("A branch with that name does not exist.");
-        }
-
-        // get current head blob, ancestor blobs, merge branch blobs
-        String branchCommitSha1 = getBranchSha1(branchName);
-        Map<String, String> spilt = Objects.requireNonNull(commonAncestor(branchCommitSha1, branchName)).getBlobs();
-        Map<String, String> head = getHead().getBlobs();
-        Map<String, String> branch = getCommit(branchCommitSha1).getBlobs();
-        // use to save result blobs
-        Map<String, String> blobs = new TreeMap<>(spilt);
-        blobs.putAll(head);
-        blobs.putAll(branch);
-
-        // choose which version should save to merge version
-        for (String filename : blobs.keySet()) {
-            // get file sha1
-            String spiltSha1 = spilt.get(filename);
-            String headSha1 = head.get(filename);
-            String branchSha1 = branch.get(filename);
-
-            // check file is different with ancestor
-            boolean isHeadModify = !Objects.equals(headSha1, spiltSha1);
-            boolean isBranchModify = !Objects.equals(branchSha1, spiltSha1);
-            // save correct version file
-            if ((isHeadModify && !isBranchModify) || Objects.equals(headSha1, branchSha1)) {
-                if (headSha1 == null) {
-                    spilt.remove(filename);
+    public MergeResult merge(String branchName) throws IOException {
+        try (LockManager.Lock ignored = locks.exclusive(LockManager.INDEX)) {
+            // error, staging area is not empty
+            Stage stage = getStage();
+            if (!(stage.getAdditionMap().isEmpty() && stage.getRemovalMap().isEmpty())) {
+                throw Utils.error("You have uncommitted changes.");
+            }
+            // error, branch not exists
+            if (!refs.exists(branchName)) {
+                throw Utils.error("A branch with that name does not exist.");
+            }
+
+            // get current head blob, ancestor blobs, merge branch blobs
+            String branchCommitSha1 = getBranchSha1(branchName);
+            Commit ancestor = commonAncestor(branchCommitSha1);
+            if (ancestor == null) {
+                // the current branch is an ancestor of the given branch
+                checkoutBranch(branchName);
+                return new MergeResult(branchCommitSha1, true, List.of());
+            }
+            BlobMap spilt = ancestor.getBlobs();
+            BlobMap head = getHead().getBlobs();
+            BlobMap branch = getCommit(branchCommitSha1).getBlobs();
+            // use to save result blobs, built in file name order by walking the three trees at once
+            BlobMap blobs = new BlobMap(Math.max(head.size(), branch.size()));
+            List<Integer> bothChanged = new ArrayList<>();
+
+            // choose which version should save to merge version
+            int s = 0;
+            int h = 0;
+            int b = 0;
+            while (s < spilt.size() || h < head.size() || b < branch.size()) {
+                String filename = minPath(minPath(pathAt(spilt, s), pathAt(head, h)), pathAt(branch, b));
+                // index of the file in each tree, -1 if it isn't there
+                int spiltIndex = filename.equals(pathAt(spilt, s)) ? s++ : -1;
+                int headIndex = filename.equals(pathAt(head, h)) ? h++ : -1;
+                int branchIndex = filename.equals(pathAt(branch, b)) ? b++ : -1;
+
+                // check file is different with ancestor
+                boolean isHeadModify = !sameVersion(head, headIndex, spilt, spiltIndex);
+                boolean isBranchModify = !sameVersion(branch, branchIndex, spilt, spiltIndex);
+                // save correct version file
+                if ((isHeadModify && !isBranchModify) || sameVersion(head, headIndex, branch, branchIndex)) {
+                    if (headIndex >= 0) {
+                        blobs.append(head, headIndex);
+                    }
+                } else if (!isHeadModify && isBranchModify) {
+                    if (branchIndex >= 0) {
+                        blobs.append(branch, branchIndex);
+                    }
                 } else {
-                    spilt.put(filename, headSha1);
+                    // changed on both sides, merged line by line below, after the versions are fetched
+                    bothChanged.add(headIndex >= 0 ? blobs.append(head, headIndex) : blobs.append(branch, branchIndex));
                 }
-            } else if (!isHeadModify && isBranchModify) {
-                if (branchSha1 == null) {
-                    spilt.remove(filename);
-                } else {
-                    spilt.put(filename, branchSha1);
+            }
+
+            // a partial clone fetches all three versions of those files in one go
+            Set<String> versions = new HashSet<>();
+            for (int i : bothChanged) {
+                versions.addAll(mergeVersions(blobs.path(i), spilt, head, branch));
+            }
+            objects.prefetch(versions);
+
+            // merged files are streamed into the object directory, only true overlaps are conflicts
+            List<Diff3.Result> merged = mergeFiles(bothChanged, blobs, spilt, head, branch);
+            List<String> conflicts = new ArrayList<>();
+            for (int k = 0; k < bothChanged.size(); k++) {
+                int i = bothChanged.get(k);
+                blobs.setId(i, ObjectId.fromHex(merged.get(k).id()));
+                if (merged.get(k).conflicted()) {
+                    conflicts.add(blobs.path(i));
                 }
-            } else {
-                // replace the contents of the conflicted file
-                // create file content
-                String currentContent = headSha1 == null ? "" : Utils.readContentsAsString(getObjectFile(headSha1));
-                String branchContent = branchSha1 == null ? "" : Utils.readContentsAsString(getObjectFile(branchSha1));
-                String fileContent = "<<<<<<< HEAD\n" + currentContent + "=======\n" + branchContent + ">>>>>>>\n";
-                String fileSha1 = Utils.sha1(filename, fileContent);
-                // save file to object directory
-                Utils.writeContents(getObjectFile(fileSha1), fileContent);
-                spilt.put(filename, fileSha1);
-                System.out.println("Encountered a merge conflict.");
-            }
-        }
-
-        // copy merge version files to working directory
-        restoreWorkingDirectory(spilt, head);
-
-        // create merge commit
-        String commitMessage = "Merged " + branchName + " into " + Utils.readContentsAsString(HEAD) + ".";
-        Commit mergeCommit = new Commit(commitMessage, getHeadSha1(), branchCommitSha1);
-        mergeCommit.setBlobs(spilt);
-        String mergeCommitSha1 = getObjectSha1(mergeCommit);
-        persistentCommit(mergeCommitSha1, mergeCommit);
-
-        // update branch
-        File headBranch = Utils.join(BRANCH_DIR, Utils.readContentsAsString(HEAD));
-        if (headBranch.exists()) {
-            Utils.writeContents(headBranch, mergeCommitSha1);
-        } else {
-            Utils.writeContents(HEAD, mergeCommitSha1);
+            }
+
+            // copy merge version files to working directory
+            restoreWorkingDirectory(blobs, head);
+
+            // create merge commit
+            String commitMessage = "Merged " + branchName + " into " + Utils.readContentsAsString(HEAD) + ".";
+            String headSha1 = getHeadSha1();
+            Commit mergeCommit = new Commit(commitMessage, headSha1, branchCommitSha1);
+            mergeCommit.setBlobs(blobs);
+            String mergeCommitSha1 = getObjectSha1(mergeCommit);
+            persistentCommit(mergeCommitSha1, mergeCommit);
+
+            // update branch
+            updateHead(headSha1, mergeCommitSha1);
+            return new MergeResult(mergeCommitSha1, false, conflicts);
         }
     }
 
 
     /**
-     * Given a sha1 of commit, find the latest common commit with current head commit
+     * Three-way merge the files at INDEXES of BLOBS, each file on its own on a pool of
+     * merge.threads (.gitlet/config) threads, returns the results in the order of INDEXES
      */
-    private Commit commonAncestor(String mergeSha1, String branchName) throws IOException {
+    private List<Diff3.Result> mergeFiles(List<Integer> indexes, BlobMap blobs, BlobMap spilt, BlobMap head,
+                                          BlobMap branch) throws IOException {
+        int defaultThreads = Runtime.getRuntime().availableProcessors();
+        int threads = Math.min(indexes.size(), Config.load(GITLET_DIR).getInt("merge.threads", defaultThreads));
+        List<Diff3.Result> results = new ArrayList<>();
+        if (threads <= 1) {
+            for (int i : indexes) {
+                results.add(mergeFile(blobs.path(i), spilt, head, branch));
+            }
+            return results;
+        }
+
+        List<Callable<Diff3.Result>> merges = new ArrayList<>();
+        for (int i : indexes) {
+            String filename = blobs.path(i);
+            merges.add(() -> mergeFile(filename, spilt, head, branch));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (Future<Diff3.Result> merge : pool.invokeAll(merges)) {
+                results.add(merge.get());
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted.");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (excp.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+
+    private Diff3.Result mergeFile(String filename, BlobMap spilt, BlobMap head, BlobMap branch) throws IOException {
+        return Diff3.merge(objects, filename, spilt.get(filename), head.get(filename), branch.get(filename));
+    }
+
+
+    private static String pathAt(BlobMap blobs, int i) {
+        return i < blobs.size() ? blobs.path(i) : null;
+    }
+
+
+    private static String minPath(String a, String b) {
+        return a == null ? b : b == null || a.compareTo(b) <= 0 ? a : b;
+    }
+
+
+    /**
+     * Returns true if entry I of A and entry J of B are the same version of a file, where a
+     * negative index is a file that doesn't exist
+     */
+    private static boolean sameVersion(BlobMap a, int i, BlobMap b, int j) {
+        return i < 0 || j < 0 ? i < 0 && j < 0 : a.sameId(i, b, j);
+    }
+
+
+    private static List<String> mergeVersions(String filename, BlobMap spilt, BlobMap head, BlobMap branch) {
+        List<String> versions = new ArrayList<>(3);
+        for (BlobMap blobs : List.of(spilt, head, branch)) {
+            String version = blobs.get(filename);
+            if (version != null) {
+                versions.add(version);
+            }
+        }
+        return versions;
+    }
+
+
+    /**
+     * Given a sha1 of commit, find the latest common commit with current head commit.
+     * Returns null if the current head is an ancestor of the given commit.
+     * Package-private for MergeBaseBenchmark.
+     */
+    Commit commonAncestor(String mergeSha1) {
         String currentSha1 = getHeadSha1();
         if (currentSha1.equals(mergeSha1)) {
-            exitWithError("Cannot merge a branch with itself.");
-        }
-
-        // get current commit tree
-        Map<String, Integer> currentCommitMap = new HashMap<>();
-        dfs(currentSha1, currentCommitMap, 0);
-        if (currentCommitMap.containsKey(mergeSha1)) {
-            exitWithError("Given branch is an ancestor of the current branch.");
-        }
-
-        // get merge commit tree
-        Queue<String> queue = new LinkedList<>();
-        queue.add(mergeSha1);
-        // record latest
-        int minDistance = Integer.MAX_VALUE;
-        Commit latestAncestor = null;
-
-        // BFS, search the common ancestor
-        while (!queue.isEmpty()) {
-            int size = queue.size();
-            for (int i = 0; i < size; i++) {
-                String sha1 = queue.poll();
-                if (Objects.equals(sha1, currentSha1)) {
-                    checkout(branchName);
-                    exitWithError("Current branch fast-forwarded.");
-                }
-                Commit commit = getCommit(sha1);
-                // select the closest
-                if (currentCommitMap.containsKey(sha1)) {
-                    int distance = currentCommitMap.get(sha1);
-                    if (distance < minDistance) {
-                        latestAncestor = commit;
-                        minDistance = distance;
-                    }
-                }
-                if (commit.getParent() != null) {
-                    queue.add(commit.getParent());
-                }
-                if (commit.getMergeFrom() != null) {
-                    queue.add(commit.getMergeFrom());
-                }
+            throw Utils.error("Cannot merge a branch with itself.");
+        }
+
+        // stops as soon as the given commit shows up in the current history
+        if (new RevWalk(this).start(currentSha1).contains(mergeSha1)) {
+            throw Utils.error("Given branch is an ancestor of the current branch.");
+        }
+
+        // get merge commit tree, stops early when it reaches the current head
+        Events.MergeBase event = new Events.MergeBase();
+        event.begin();
+        Set<String> mergeHistory = new HashSet<>();
+        for (CommitInfo commit : new RevWalk(this).start(mergeSha1)) {
+            if (commit.id().equals(currentSha1)) {
+                commitMergeBase(event, currentSha1, mergeSha1, "", mergeHistory.size() + 1);
+                return null;
             }
+            mergeHistory.add(commit.id());
         }
 
-        return latestAncestor;
+        // BFS from the current head, the first shared commit is the closest
+        int[] walked = {mergeHistory.size()};
+        String ancestor = new RevWalk(this).start(currentSha1).stream()
+                .map(CommitInfo::id)
+                .peek(sha1 -> walked[0]++)
+                .filter(mergeHistory::contains)
+                .findFirst()
+                .orElseThrow(() -> Utils.error("No common ancestor."));
+        commitMergeBase(event, currentSha1, mergeSha1, ancestor, walked[0]);
+        return getCommit(ancestor);
+    }
+
+
+    private static void commitMergeBase(Events.MergeBase event, String head, String other, String ancestor, int commits) {
+        if (event.shouldCommit()) {
+            event.head = head;
+            event.other = other;
+            event.ancestor = ancestor;
+            event.commits = commits;
+            event.commit();
+        }
     }
 
 
     /**
-     * Deep first search, for traverse commit tree
+     * Returns the commit that last modified each line of a file in the head commit
      */
-    private void dfs(String sha1, Map<String, Integer> commitMap, int depth) {
-        if (sha1 == null) {
-            return;
+    public List<Blame.Line> blame(String filename) {
+        try (LockManager.Lock ignored = locks.shared(LockManager.INDEX)) {
+            return new Blame(this).blame(getHeadSha1(), filename);
         }
-        Commit commit = getCommit(sha1);
-        commitMap.put(sha1, depth);
-        depth++;
-        dfs(commit.getParent(), commitMap, depth);
-        dfs(commit.getMergeFrom(), commitMap, depth);
     }
 
 
     /**
-     * Prints out MESSAGE and exits with error code 0.
-     *
-     * @param message message to print
+     * Point the current branch, or HEAD when it's detached, from EXPECTED to COMMITSHA1.
+     * Fails if another process moved it in between.
      */
-    public static void exitWithError(String message) {
-        if (message != null && !"".equals(message)) {
-            System.out.println(message);
+    private void updateHead(String expected, String commitSha1) {
+        String headContent = Utils.readContentsAsString(HEAD);
+        if (refs.exists(headContent)) {
+            refs.compareAndSet(headContent, expected, commitSha1);
+        } else {
+            locks.compareAndSet(HEAD, expected, commitSha1);
         }
-        System.exit(0);
     }
 
 
@@ -657,10 +841,8 @@ public class GitletRepository {
      */
     public String getHeadSha1() {
         String headContent = Utils.readContentsAsString(HEAD);
-        if (Utils.join(BRANCH_DIR, headContent).exists()) {
-            return getBranchSha1(headContent);
-        }
-        return headContent;
+        String branchSha1 = refs.get(headContent);
+        return branchSha1 == null ? headContent : branchSha1;
     }
 
 
@@ -668,23 +850,21 @@ public class GitletRepository {
      * Returns the sha1 string of the commit pointed to by the specified branch
      */
     public String getBranchSha1(String branch) {
-        File branchFile = Utils.join(BRANCH_DIR, branch);
-        if (!branchFile.exists()) {
-            exitWithError("No such branch exists.");
+        String branchSha1 = refs.get(branch);
+        if (branchSha1 == null) {
+            throw Utils.error("No such branch exists.");
         }
-        return Utils.readContentsAsString(branchFile);
+        return branchSha1;
     }
 
 
     public String getCommitSha1(String shortSha1) {
-        int length = shortSha1.length();
         for (String sha1 : Objects.requireNonNull(Utils.plainFilenamesIn(COMMIT_DIR))) {
-            if (sha1.substring(0, length).equals(shortSha1)) {
+            if (sha1.startsWith(shortSha1)) {
                 return sha1;
             }
         }
-        exitWithError("No commit with that id exists.");
-        return shortSha1;
+        throw Utils.error("No commit with that id exists.");
     }
 
 
@@ -706,12 +886,41 @@ public class GitletRepository {
     }
 
 
+    /**
+     * Get a commit object, the returned commit is shared and must not be modified
+     */
     public Commit getCommit(String sha1) {
-        File commitFile = Utils.join(COMMIT_DIR, sha1);
-        if (!commitFile.exists() || !commitFile.isFile()) {
-            exitWithError("No commit with that id exists.");
+        Commit commit = commitCache.get(sha1);
+        if (commit != null) {
+            return commit;
+        }
+        File commitFile = getCommitFile(sha1);
+        if (!commitFile.isFile()) {
+            throw Utils.error("No commit with that id exists.");
         }
-        return Utils.readObject(commitFile, Commit.class);
+        Events.CommitLoad event = new Events.CommitLoad();
+        event.begin();
+        commit = Utils.readObject(commitFile, Commit.class);
+        if (event.shouldCommit()) {
+            event.id = sha1;
+            event.size = commitFile.length();
+            event.commit();
+        }
+        commitCache.put(sha1, commit);
+        return commit;
+    }
+
+
+    /**
+     * Returns true if the commit SHA1 is stored in this repository
+     */
+    public boolean hasCommit(String sha1) {
+        return getCommitFile(sha1).isFile();
+    }
+
+
+    public File getCommitFile(String sha1) {
+        return Utils.join(COMMIT_DIR, sha1);
     }
 
 
@@ -735,12 +944,19 @@ public class GitletRepository {
      * Return sah1 string of files in working directory
      */
     private String getCwdFileSha1(String filename) {
-        return getCwdFileSha1(Utils.join(CWD, filename));
+        return getCwdFileId(filename, Utils.join(CWD, filename)).name();
     }
 
 
-    private String getCwdFileSha1(File file) {
-        return Utils.sha1(file.getName(), Utils.readContents(file));
+    /**
+     * Hashed straight from the file, which isn't read onto the heap
+     */
+    private ObjectId getCwdFileId(String filename, File file) {
+        try {
+            return Hashing.blobId(filename, file.toPath());
+        } catch (IOException excp) {
+            throw Utils.error("Unable to read %s: %s", filename, excp.getMessage());
+        }
     }
 
 
@@ -748,22 +964,20 @@ public class GitletRepository {
      * Persistent commit
      */
     public void persistentCommit(String sha1, Serializable obj) {
-        Utils.writeObject(Utils.join(COMMIT_DIR, sha1), obj);
+        locks.writeAtomically(Utils.join(COMMIT_DIR, sha1), Utils.serialize(obj));
+    }
+
+
+    public File getGitletDir() {
+        return GITLET_DIR;
     }
 
 
     /**
-     * Get the file directory of the commit or blob
+     * Blobs of this repository
      */
-    public File getObjectFile(String sha1) {
-        if (sha1 == null || sha1.isEmpty()) {
-            return null;
-        }
-        File dir = Utils.join(OBJECTS_DIR, sha1.substring(0, 2));
-        if (!dir.exists()) {
-            dir.mkdir();
-        }
-        return Utils.join(dir, sha1.substring(2));
+    public ObjectStore getObjects() {
+        return objects;
     }
 
 
@@ -771,7 +985,70 @@ public class GitletRepository {
      * Persistent stage
      */
     private void saveStage(Stage stage) {
-        Utils.writeObject(STAGE, stage);
+        locks.writeAtomically(STAGE, Utils.serialize(stage));
+    }
+
+
+    /**
+     * Branches and remote-tracking refs of this repository
+     */
+    public Refs getRefs() {
+        return refs;
+    }
+
+
+    /**
+     * The shallow boundary: commits whose parents this repository doesn't have,
+     * history walks treat them as roots. Empty for a complete repository.
+     */
+    public Set<String> getShallow() {
+        if (!SHALLOW.isFile()) {
+            return Set.of();
+        }
+        return new HashSet<>(LineDiff.lines(Utils.readContentsAsString(SHALLOW)));
+    }
+
+
+    /**
+     * Add COMMITS to the shallow boundary
+     */
+    public void addShallow(Collection<String> commits) {
+        if (commits.isEmpty()) {
+            return;
+        }
+        try (LockManager.Lock ignored = locks.exclusive("shallow")) {
+            Set<String> shallow = new TreeSet<>(getShallow());
+            shallow.addAll(commits);
+            StringBuilder contents = new StringBuilder();
+            shallow.forEach(sha1 -> contents.append(sha1).append('\n'));
+            locks.writeAtomically(SHALLOW, contents.toString());
+        }
+    }
+
+
+    /**
+     * The remote this partial clone fetches blobs from on demand, null for a repository
+     * that stores all of its blobs
+     */
+    public String getPromisor() {
+        return PROMISOR.isFile() ? Utils.readContentsAsString(PROMISOR).trim() : null;
+    }
+
+
+    /**
+     * Make this repository a partial clone of REMOTENAME: fetches from it leave the blobs
+     * behind, and they are fetched from it when they are read
+     */
+    public void setPromisor(String remoteName) {
+        locks.writeAtomically(PROMISOR, remoteName + "\n");
+    }
+
+
+    /**
+     * Locks of this repository
+     */
+    public LockManager getLocks() {
+        return locks;
     }
 
 }
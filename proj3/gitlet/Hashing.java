@@ -0,0 +1,259 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * SHA-1 hashing without per-call setup. Every thread reuses one {@link MessageDigest}, ASCII
+ * file names are hashed without encoding them into a new array, hex names come from a lookup
+ * table, and files are hashed straight from a {@link FileChannel} through a reused direct
+ * buffer instead of being read onto the heap. A blob id is the SHA-1 of the file name
+ * followed by the contents.
+ * <p>
+ * {@link #digest()} hands out the calling thread's digest, which must be finished before
+ * anything that may hash again on the same thread. Digests that stay open across other work,
+ * like the checksum of a bundle, come from {@link #newDigest()}.
+ *
+ * @author Delete020
+ * @since 10/19/26 10:45 PM
+ */
+public final class Hashing {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int SCRATCH_SIZE = 8 * 1024;
+    /** The two hex digits of every byte value */
+    private static final char[] BYTE_HEX = new char[512];
+    /** The value of every hex digit, -1 for other characters */
+    private static final byte[] HEX_VALUE = new byte[128];
+
+    static {
+        String digits = "0123456789abcdef";
+        for (int b = 0; b < 256; b++) {
+            BYTE_HEX[2 * b] = digits.charAt(b >>> 4);
+            BYTE_HEX[2 * b + 1] = digits.charAt(b & 0xf);
+        }
+        Arrays.fill(HEX_VALUE, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUE[digits.charAt(i)] = (byte) i;
+            HEX_VALUE[Character.toUpperCase(digits.charAt(i))] = (byte) i;
+        }
+    }
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    /** What each thread reuses */
+    private static final class State {
+        private final MessageDigest digest = newDigest();
+        /** Encoded names on the way in, the digest on the way out */
+        private final byte[] scratch = new byte[SCRATCH_SIZE];
+        private ByteBuffer buffer;
+    }
+
+    private Hashing() {
+    }
+
+
+    /**
+     * A new SHA-1 digest, owned by the caller
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+
+    /**
+     * The reset SHA-1 digest of the calling thread
+     */
+    public static MessageDigest digest() {
+        MessageDigest digest = STATE.get().digest;
+        digest.reset();
+        return digest;
+    }
+
+
+    /**
+     * Finish DIGEST and return the id it computed
+     */
+    public static ObjectId finish(MessageDigest digest) {
+        byte[] scratch = STATE.get().scratch;
+        try {
+            digest.digest(scratch, 0, ObjectId.RAW_LENGTH);
+        } catch (DigestException excp) {
+            throw new IllegalStateException(excp);
+        }
+        return ObjectId.fromRaw(scratch, 0);
+    }
+
+
+    /**
+     * The SHA-1 of the concatenation of VALS, which may be any mixture of byte arrays and
+     * Strings, the latter hashed as UTF-8
+     */
+    public static ObjectId sha1(Object... vals) {
+        Events.Hash event = new Events.Hash();
+        event.begin();
+        long start = Trace.start();
+        MessageDigest digest = digest();
+        long bytes = 0;
+        for (Object val : vals) {
+            if (val instanceof byte[] data) {
+                digest.update(data);
+                bytes += data.length;
+            } else if (val instanceof String s) {
+                bytes += update(digest, s);
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
+            }
+        }
+        return finish(digest, event, start, bytes);
+    }
+
+
+    /**
+     * The SHA-1 of the remaining bytes of BUFFER, which are consumed
+     */
+    public static ObjectId sha1(ByteBuffer buffer) {
+        Events.Hash event = new Events.Hash();
+        event.begin();
+        long start = Trace.start();
+        MessageDigest digest = digest();
+        long bytes = buffer.remaining();
+        digest.update(buffer);
+        return finish(digest, event, start, bytes);
+    }
+
+
+    /**
+     * The id of FILE stored as FILENAME, streamed from disk
+     */
+    public static ObjectId blobId(String filename, Path file) throws IOException {
+        Events.Hash event = new Events.Hash();
+        event.begin();
+        long start = Trace.start();
+        MessageDigest digest = digest();
+        long bytes = update(digest, filename);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            bytes += update(digest, channel);
+        }
+        return finish(digest, event, start, bytes);
+    }
+
+
+    private static ObjectId finish(MessageDigest digest, Events.Hash event, long start, long bytes) {
+        ObjectId id = finish(digest);
+        Trace.stop(Trace.Phase.HASH, start, bytes);
+        if (event.shouldCommit()) {
+            event.size = bytes;
+            event.commit();
+        }
+        return id;
+    }
+
+
+    /**
+     * Hash S as UTF-8 into DIGEST, returns the number of bytes hashed. ASCII goes through
+     * the thread's scratch buffer, only the rest from the first other character is encoded.
+     */
+    public static long update(MessageDigest digest, String s) {
+        byte[] scratch = STATE.get().scratch;
+        int length = s.length();
+        for (int from = 0; from < length; from += SCRATCH_SIZE) {
+            int to = Math.min(length, from + SCRATCH_SIZE);
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    digest.update(scratch, 0, i - from);
+                    byte[] rest = s.substring(i).getBytes(StandardCharsets.UTF_8);
+                    digest.update(rest);
+                    return (long) i + rest.length;
+                }
+                scratch[i - from] = (byte) c;
+            }
+            digest.update(scratch, 0, to - from);
+        }
+        return length;
+    }
+
+
+    /**
+     * Hash the rest of CHANNEL into DIGEST through the thread's direct buffer, returns the
+     * number of bytes hashed
+     */
+    public static long update(MessageDigest digest, ReadableByteChannel channel) throws IOException {
+        State state = STATE.get();
+        if (state.buffer == null) {
+            state.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        ByteBuffer buffer = state.buffer;
+        long bytes = 0;
+        buffer.clear();
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            bytes += buffer.remaining();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Lowercase hex of LENGTH bytes of RAW from OFFSET
+     */
+    public static String toHex(byte[] raw, int offset, int length) {
+        char[] hex = new char[2 * length];
+        for (int i = 0; i < length; i++) {
+            int b = raw[offset + i] & 0xff;
+            hex[2 * i] = BYTE_HEX[2 * b];
+            hex[2 * i + 1] = BYTE_HEX[2 * b + 1];
+        }
+        return new String(hex);
+    }
+
+
+    public static String toHex(byte[] raw) {
+        return toHex(raw, 0, raw.length);
+    }
+
+
+    /**
+     * Write the 8 hex digits of WORD to DST from OFFSET
+     */
+    static void formatWord(char[] dst, int offset, int word) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int b = (word >>> shift) & 0xff;
+            dst[offset++] = BYTE_HEX[2 * b];
+            dst[offset++] = BYTE_HEX[2 * b + 1];
+        }
+    }
+
+
+    /**
+     * The word named by the 8 hex digits of HEX from OFFSET
+     */
+    static int parseWord(String hex, int offset) {
+        int word = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            char c = hex.charAt(i);
+            int value = c < HEX_VALUE.length ? HEX_VALUE[c] : -1;
+            if (value < 0) {
+                throw Utils.error("%s is not an object id.", hex);
+            }
+            word = word << 4 | value;
+        }
+        return word;
+    }
+}
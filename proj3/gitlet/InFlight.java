@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The blobs concurrent transfers into one repository are copying, so that two transfers
+ * never copy the same blob.
+ * <p>
+ * Each transfer claims the blobs it copies through its own {@link Batch}. A blob another batch
+ * claimed is skipped, but the batch that skipped it waits for it before it writes any commit,
+ * as a commit must never be stored before its blobs. A batch that fails drops its claims and
+ * fails every batch waiting for it, so the commits that needed its blobs aren't written either.
+ *
+ * @author Delete020
+ * @since 10/20/26 1:40 AM
+ */
+public class InFlight {
+
+    /** The batch copying each claimed blob, as the future completed once its blobs are stored */
+    private final Map<String, CompletableFuture<Void>> claims = new ConcurrentHashMap<>();
+
+
+    /**
+     * A new batch of blobs for one transfer
+     */
+    public Batch batch() {
+        return new Batch();
+    }
+
+
+    /**
+     * The blobs one transfer copies and the blobs it waits for. Not thread-safe.
+     */
+    public class Batch {
+        private final CompletableFuture<Void> stored = new CompletableFuture<>();
+        private final List<String> claimed = new ArrayList<>();
+        private final Set<CompletableFuture<Void>> awaited = new HashSet<>();
+
+        private Batch() {
+        }
+
+        /**
+         * Returns true if this batch is to copy SHA1, false if another batch copies it,
+         * {@link #await()} then waits for it
+         */
+        public boolean claim(String sha1) {
+            CompletableFuture<Void> other = claims.putIfAbsent(sha1, stored);
+            if (other == null) {
+                claimed.add(sha1);
+                return true;
+            }
+            if (other != stored) {
+                awaited.add(other);
+            }
+            return false;
+        }
+
+        /**
+         * Every blob this batch claimed is stored, release the batches waiting for them
+         */
+        public void complete() {
+            stored.complete(null);
+        }
+
+        /**
+         * The blobs this batch claimed won't all arrive: drop the claims, so a later transfer
+         * copies them itself, and fail the batches waiting for them with CAUSE. Does nothing
+         * once the batch is complete, what fails after that doesn't concern its blobs.
+         */
+        public void fail(Throwable cause) {
+            if (stored.isDone()) {
+                return;
+            }
+            for (String sha1 : claimed) {
+                claims.remove(sha1, stored);
+            }
+            stored.completeExceptionally(cause);
+        }
+
+        /**
+         * Wait until every blob this batch skipped for another one is stored.
+         * Call {@link #complete()} first, or two batches could wait for each other.
+         */
+        public void await() {
+            for (CompletableFuture<Void> other : awaited) {
+                try {
+                    other.get();
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                    throw Utils.error("Interrupted.");
+                } catch (ExecutionException excp) {
+                    throw Utils.error("A concurrent fetch failed to copy blobs this fetch needs: %s",
+                            excp.getCause().getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.time.Duration;
+
+/**
+ * Latencies of one kind of command, counted in power-of-two buckets of microseconds: bucket
+ * 0 holds calls under 1 us, bucket i calls from 2^(i-1) up to 2^i us. Percentiles are the
+ * upper bound of their bucket, so within a factor of two, count, mean and max are exact.
+ * Not thread-safe, each thread records into its own histogram and they are added up after.
+ *
+ * @author Delete020
+ * @since 10/19/26 10:10 PM
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+
+    /**
+     * Count a call that took NANOS nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts[bucket]++;
+        count++;
+        total += nanos;
+        max = Math.max(max, nanos);
+    }
+
+
+    /**
+     * Add the calls counted by OTHER to this histogram
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+
+    public long count() {
+        return count;
+    }
+
+
+    public Duration total() {
+        return Duration.ofNanos(total);
+    }
+
+
+    public Duration mean() {
+        return Duration.ofNanos(count == 0 ? 0 : total / count);
+    }
+
+
+    public Duration max() {
+        return Duration.ofNanos(max);
+    }
+
+
+    /**
+     * The latency below which the fraction P of the calls fall, 0 < P <= 1
+     */
+    public Duration percentile(double p) {
+        long rank = (long) Math.ceil(p * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Duration.ofNanos(Math.min(max, upperBound(i)));
+            }
+        }
+        return max();
+    }
+
+
+    /**
+     * Calls in bucket I, see {@link #upperBound(int)}
+     */
+    public long count(int i) {
+        return counts[i];
+    }
+
+
+    public int buckets() {
+        return BUCKETS;
+    }
+
+
+    /**
+     * The latency in nanoseconds the calls of bucket I stayed under
+     */
+    public static long upperBound(int i) {
+        return (1L << i) * 1000;
+    }
+}
@@ -0,0 +1,228 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Linear-space line diff (Myers' O((N+M)D) algorithm with the middle snake
+ * refinement). Lines are compared as interned integers, so each comparison is
+ * a single int compare and the whole diff is close to linear for files that
+ * differ in only a few places.
+ * <p>
+ * Results use the same edit encoding as {@link Diff#diffs()}.
+ *
+ * @author Delete020
+ * @since 10/19/26 9:12 AM
+ */
+public class LineDiff {
+
+    private final int[] a;
+    private final int[] b;
+    private final boolean[] changedA;
+    private final boolean[] changedB;
+    private final int[] vf;
+    private final int[] vb;
+
+    private LineDiff(int[] a, int[] b) {
+        this.a = a;
+        this.b = b;
+        this.changedA = new boolean[a.length];
+        this.changedB = new boolean[b.length];
+        int size = a.length + b.length + 3;
+        this.vf = new int[size];
+        this.vb = new int[size];
+    }
+
+
+    /**
+     * Return the edit that converts A to B as a sequence of 4n values
+     * d0, dL0, a0, aL0, ..., see {@link Diff#diffs()}.
+     */
+    public static int[] diffs(int[] a, int[] b) {
+        Events.Diff event = new Events.Diff();
+        event.begin();
+        long start = Trace.start();
+        LineDiff diff = new LineDiff(a, b);
+        diff.compare();
+        int[] edits = diff.edits();
+        Trace.stop(Trace.Phase.DIFF, start, a.length + b.length);
+        if (event.shouldCommit()) {
+            event.algorithm = "myers";
+            event.linesBefore = a.length;
+            event.linesAfter = b.length;
+            event.edits = edits.length / 4;
+            event.commit();
+        }
+        return edits;
+    }
+
+
+    /**
+     * Return the edit that converts the lines of A to the lines of B, compared as bytes
+     */
+    public static int[] diffs(LineView a, LineView b) {
+        LineView.Interner interner = new LineView.Interner();
+        return diffs(interner.intern(a), interner.intern(b));
+    }
+
+
+    /**
+     * Maps lines to small integers so that equal lines get equal ids
+     */
+    public static class Interner {
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        public int[] intern(List<String> lines) {
+            int[] result = new int[lines.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = ids.computeIfAbsent(lines.get(i), line -> ids.size());
+            }
+            return result;
+        }
+    }
+
+
+    /**
+     * Split contents into lines without their terminators, same as Files.readAllLines
+     */
+    public static List<String> lines(String contents) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int length = contents.length();
+        for (int i = 0; i < length; i++) {
+            char c = contents.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lines.add(contents.substring(start, i));
+                if (c == '\r' && i + 1 < length && contents.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            lines.add(contents.substring(start));
+        }
+        return lines;
+    }
+
+
+    /**
+     * Mark changed lines of both sequences, iteratively splitting at middle snakes
+     */
+    private void compare() {
+        Deque<int[]> todo = new ArrayDeque<>();
+        todo.push(new int[]{0, a.length, 0, b.length});
+        while (!todo.isEmpty()) {
+            int[] range = todo.pop();
+            int aLo = range[0], aHi = range[1], bLo = range[2], bHi = range[3];
+
+            // strip common prefix and suffix
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                aLo++;
+                bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                aHi--;
+                bHi--;
+            }
+
+            if (aLo == aHi) {
+                for (int j = bLo; j < bHi; j++) {
+                    changedB[j] = true;
+                }
+            } else if (bLo == bHi) {
+                for (int i = aLo; i < aHi; i++) {
+                    changedA[i] = true;
+                }
+            } else {
+                int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+                todo.push(new int[]{aLo, snake[0], bLo, snake[1]});
+                todo.push(new int[]{snake[2], aHi, snake[3], bHi});
+            }
+        }
+    }
+
+
+    /**
+     * Find the middle snake of an optimal edit path between a[aLo, aHi) and b[bLo, bHi).
+     * Returns {startA, startB, endA, endB} of that snake.
+     */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int max = (n + m + 1) / 2;
+        int off = max + 1;
+        vf[off + 1] = 0;
+        vb[off + 1] = 0;
+
+        for (int d = 0; d <= max; d++) {
+            // forward search
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && vf[off + k - 1] < vf[off + k + 1]))
+                        ? vf[off + k + 1] : vf[off + k - 1] + 1;
+                int y = x - k;
+                int xs = x, ys = y;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x++;
+                    y++;
+                }
+                vf[off + k] = x;
+                int kb = delta - k;
+                if (odd && kb >= -(d - 1) && kb <= d - 1 && x + vb[off + kb] >= n) {
+                    return new int[]{aLo + xs, bLo + ys, aLo + x, bLo + y};
+                }
+            }
+            // backward search, on the reversed sequences
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && vb[off + k - 1] < vb[off + k + 1]))
+                        ? vb[off + k + 1] : vb[off + k - 1] + 1;
+                int y = x - k;
+                int xs = x, ys = y;
+                while (x < n && y < m && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                    x++;
+                    y++;
+                }
+                vb[off + k] = x;
+                int kf = delta - k;
+                if (!odd && kf >= -d && kf <= d && x + vf[off + kf] >= n) {
+                    return new int[]{aHi - x, bHi - y, aHi - xs, bHi - ys};
+                }
+            }
+        }
+        throw new IllegalStateException("no middle snake");
+    }
+
+
+    /**
+     * Collect marked lines into edit hunks
+     */
+    private int[] edits() {
+        List<Integer> result = new ArrayList<>();
+        int i = 0, j = 0;
+        while (i < a.length || j < b.length) {
+            if ((i < a.length && changedA[i]) || (j < b.length && changedB[j])) {
+                int i0 = i, j0 = j;
+                while (i < a.length && changedA[i]) {
+                    i++;
+                }
+                while (j < b.length && changedB[j]) {
+                    j++;
+                }
+                result.add(i0);
+                result.add(i - i0);
+                result.add(j0);
+                result.add(j - j0);
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,250 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The lines of a file, as offsets into its bytes, which are usually a memory-mapped blob or
+ * working file. Lines are split like {@link LineDiff#lines(String)} splits them, on \n, \r
+ * and \r\n, which never occur inside a UTF-8 sequence, so the bytes are never decoded as a
+ * whole: lines compare and hash as bytes and only the lines asked for become Strings. The
+ * heap holds two ints a line, whatever the size of the file.
+ *
+ * @author Delete020
+ * @since 10/19/26 11:50 PM
+ */
+public final class LineView {
+
+    private static final int[] NO_LINES = {};
+
+    private final ByteBuffer bytes;
+    /** Where line i starts, and where it ends without its terminator */
+    private int[] starts = NO_LINES;
+    private int[] ends = NO_LINES;
+    private int count;
+
+
+    private LineView(ByteBuffer bytes) {
+        this.bytes = bytes;
+        int length = bytes.limit();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes.get(i);
+            if (b == '\n' || b == '\r') {
+                addLine(start, i);
+                if (b == '\r' && i + 1 < length && bytes.get(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            addLine(start, length);
+        }
+    }
+
+
+    /**
+     * The lines of the bytes from position 0 to the limit of BYTES, which must not change
+     */
+    public static LineView of(ByteBuffer bytes) {
+        ByteBuffer view = bytes.duplicate();
+        view.position(0);
+        return new LineView(view);
+    }
+
+
+    /**
+     * The lines of FILE, mapped read-only
+     */
+    public static LineView map(Path file) throws IOException {
+        return of(mapFile(file, 0, -1));
+    }
+
+
+    /**
+     * Map LENGTH bytes of FILE from OFFSET read-only, the whole file if LENGTH is negative.
+     * Files, or parts, of 2 GB or more can't be mapped in one buffer.
+     */
+    static ByteBuffer mapFile(Path file, long offset, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = length < 0 ? channel.size() - offset : length;
+            if (size > Integer.MAX_VALUE) {
+                throw Utils.error("%s is too large to map.", file.getFileName());
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        }
+    }
+
+
+    private void addLine(int start, int end) {
+        if (count == starts.length) {
+            int capacity = Math.max(16, count * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        starts[count] = start;
+        ends[count++] = end;
+    }
+
+
+    /**
+     * Number of lines
+     */
+    public int size() {
+        return count;
+    }
+
+
+    /**
+     * Line I without its terminator, decoded as UTF-8
+     */
+    public String line(int i) {
+        byte[] line = new byte[ends[i] - starts[i]];
+        bytes.get(starts[i], line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Lines [FROM, TO), decoded
+     */
+    public List<String> lines(int from, int to) {
+        List<String> lines = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            lines.add(line(i));
+        }
+        return lines;
+    }
+
+
+    /**
+     * The lines as a list that decodes a line every time it is read
+     */
+    public List<String> asList() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return line(index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+
+    /**
+     * Returns true if line I of this view and line J of OTHER have the same bytes
+     */
+    public boolean lineEquals(int i, LineView other, int j) {
+        int length = ends[i] - starts[i];
+        return length == other.ends[j] - other.starts[j]
+                && bytes.slice(starts[i], length).mismatch(other.bytes.slice(other.starts[j], length)) < 0;
+    }
+
+
+    /**
+     * Hash of the bytes of line I
+     */
+    public int lineHash(int i) {
+        int hash = 1;
+        for (int k = starts[i]; k < ends[i]; k++) {
+            hash = 31 * hash + bytes.get(k);
+        }
+        return hash;
+    }
+
+
+    /**
+     * The bytes of lines [FROM, TO) with their terminators, the last line's only if it has one
+     */
+    public ByteBuffer range(int from, int to) {
+        if (from >= to) {
+            return bytes.slice(0, 0);
+        }
+        int end = to < count ? starts[to] : bytes.limit();
+        return bytes.slice(starts[from], end - starts[from]);
+    }
+
+
+    /**
+     * Maps lines of views to small integers so that lines with equal bytes get equal ids,
+     * the byte counterpart of {@link LineDiff.Interner}
+     */
+    public static class Interner {
+        /** Open addressing table of id + 1, 0 for a free slot */
+        private int[] table = new int[64];
+        /** For every id, the hash and a view and line holding it */
+        private int[] hashes = new int[16];
+        private final List<LineView> views = new ArrayList<>();
+        private int[] lines = new int[16];
+
+        /**
+         * The number of distinct lines interned, each keeps a view of its bytes alive
+         */
+        public int size() {
+            return views.size();
+        }
+
+        public int[] intern(LineView view) {
+            int[] result = new int[view.count];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = intern(view, i);
+            }
+            return result;
+        }
+
+        private int intern(LineView view, int line) {
+            int hash = view.lineHash(line);
+            int mask = table.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int id = table[slot] - 1;
+                if (id < 0) {
+                    id = views.size();
+                    if (id == hashes.length) {
+                        hashes = Arrays.copyOf(hashes, id * 2);
+                        lines = Arrays.copyOf(lines, id * 2);
+                    }
+                    hashes[id] = hash;
+                    views.add(view);
+                    lines[id] = line;
+                    table[slot] = id + 1;
+                    if (2 * views.size() > table.length) {
+                        rehash();
+                    }
+                    return id;
+                }
+                if (hashes[id] == hash && views.get(id).lineEquals(lines[id], view, line)) {
+                    return id;
+                }
+            }
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int id = 0; id < views.size(); id++) {
+                int slot = mix(hashes[id]) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package gitlet;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.SortedMap;
+
+/**
+ * A remote repository in a directory this process can read and write itself
+ *
+ * @author Delete020
+ * @since 10/19/26 6:20 PM
+ */
+public class LocalTransport implements Transport {
+
+    private final GitletRepository remote;
+    private final SortedMap<String, String> refs;
+
+
+    public LocalTransport(GitletRepository remote) {
+        this.remote = remote;
+        this.refs = remote.getRefs().all();
+    }
+
+
+    @Override
+    public SortedMap<String, String> refs() {
+        return refs;
+    }
+
+
+    @Override
+    public TransferResult fetch(String branch, GitletRepository local, int depth, InFlight inFlight, boolean blobless)
+            throws IOException {
+        String want = refs.get(branch);
+        if (want == null) {
+            throw Utils.error("That remote does not have that branch.");
+        }
+        ObjectTransfer transfer = new ObjectTransfer(remote, local).depth(depth).inFlight(inFlight);
+        return (blobless ? transfer.blobless() : transfer).copy(want);
+    }
+
+
+    @Override
+    public TransferResult fetchBlobs(Collection<String> blobs, GitletRepository local) throws IOException {
+        return new ObjectTransfer(remote, local).copyBlobs(blobs);
+    }
+
+
+    @Override
+    public TransferResult push(GitletRepository local, String branch, String expected, String head) throws IOException {
+        TransferResult result = new ObjectTransfer(local, remote).requireComplete().copy(head);
+        // the remote branch only moves if nobody pushed to it in the meantime
+        if (!head.equals(expected)) {
+            remote.fastForward(branch, expected, head);
+        }
+        return result;
+    }
+
+
+    @Override
+    public void close() {
+    }
+}
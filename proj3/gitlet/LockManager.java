@@ -0,0 +1,434 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Locks that keep several gitlet processes (and threads) working on one repository safe.
+ * <p>
+ * Named locks are files under .gitlet/locks held with {@link FileChannel#lock}, shared for
+ * commands that only read and exclusive for commands that rewrite that part of the
+ * repository, so readers never block each other. A JVM can hold only one OS lock per file,
+ * so threads of one JVM share it through a read-write lock and a count of holders.
+ * <p>
+ * Refs are updated compare-and-swap style: the new value is written to REF.lock, created
+ * exclusively, checked against the expected old value and renamed over the ref atomically.
+ * Other files are replaced through a temporary file in .gitlet/tmp and an atomic rename.
+ *
+ * @author Delete020
+ * @since 10/19/26 1:15 PM
+ */
+public class LockManager {
+
+    /** Guards the staging area and the working directory */
+    public static final String INDEX = "index";
+
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final int REF_LOCK_ATTEMPTS = 200;
+    private static final long REF_LOCK_WAIT_MILLIS = 5;
+
+    private static final Map<Path, Holder> HOLDERS = new ConcurrentHashMap<>();
+
+    private final File lockDir;
+    private final File tempDir;
+
+    public LockManager(File gitletDir) {
+        this.lockDir = Utils.join(gitletDir, "locks");
+        this.tempDir = Utils.join(gitletDir, "tmp");
+    }
+
+
+    /**
+     * A held lock, released by close
+     */
+    public interface Lock extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+
+    /**
+     * OS lock of one lock file shared by all threads of this JVM
+     */
+    private static class Holder {
+        private final ReentrantReadWriteLock threads = new ReentrantReadWriteLock();
+        private int count;
+        private FileChannel channel;
+        private FileLock fileLock;
+
+        private synchronized void acquire(Path path, boolean shared) {
+            if (count++ > 0) {
+                return;
+            }
+            try {
+                Files.createDirectories(path.getParent());
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                fileLock = channel.lock(0, Long.MAX_VALUE, shared);
+            } catch (IOException excp) {
+                count--;
+                closeChannel();
+                throw Utils.error("Unable to lock %s: %s", path, excp.getMessage());
+            }
+        }
+
+        /**
+         * Take the OS lock exclusively if no other process holds it, the caller holds the write lock.
+         * If the caller already held it, through exclusive() or an earlier tryExclusive(), this JVM
+         * holds the OS lock exclusively already and it is only counted again.
+         */
+        private synchronized boolean tryAcquire(Path path) {
+            if (count > 0) {
+                count++;
+                return true;
+            }
+            try {
+                Files.createDirectories(path.getParent());
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                fileLock = channel.tryLock();
+            } catch (IOException excp) {
+                closeChannel();
+                throw Utils.error("Unable to lock %s: %s", path, excp.getMessage());
+            }
+            if (fileLock == null) {
+                closeChannel();
+                return false;
+            }
+            count = 1;
+            return true;
+        }
+
+        private synchronized void release() {
+            if (--count > 0) {
+                return;
+            }
+            try {
+                if (fileLock != null) {
+                    fileLock.release();
+                }
+            } catch (IOException ignored) {
+                // closing the channel releases the lock anyway
+            }
+            closeChannel();
+        }
+
+        private void closeChannel() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+            channel = null;
+            fileLock = null;
+        }
+    }
+
+
+    /**
+     * Acquire NAME for reading, other readers may hold it at the same time
+     */
+    public Lock shared(String name) {
+        return acquire(name, true);
+    }
+
+
+    /**
+     * Acquire NAME for writing, waits until every other holder released it
+     */
+    public Lock exclusive(String name) {
+        return acquire(name, false);
+    }
+
+
+    /**
+     * Acquire NAME for writing if nobody holds it, returns null instead of waiting
+     */
+    public Lock tryExclusive(String name) {
+        Path path = lockPath(name);
+        Holder holder = HOLDERS.computeIfAbsent(path, p -> new Holder());
+        java.util.concurrent.locks.Lock threadLock = holder.threads.writeLock();
+        if (!threadLock.tryLock()) {
+            return null;
+        }
+        try {
+            if (!holder.tryAcquire(path)) {
+                threadLock.unlock();
+                return null;
+            }
+        } catch (RuntimeException excp) {
+            threadLock.unlock();
+            throw excp;
+        }
+        return newLock(holder, threadLock);
+    }
+
+
+    private Path lockPath(String name) {
+        return Utils.join(lockDir, name).toPath().toAbsolutePath().normalize();
+    }
+
+
+    private Lock acquire(String name, boolean shared) {
+        Path path = lockPath(name);
+        Holder holder = HOLDERS.computeIfAbsent(path, p -> new Holder());
+        java.util.concurrent.locks.Lock threadLock = shared ? holder.threads.readLock() : holder.threads.writeLock();
+        threadLock.lock();
+        try {
+            holder.acquire(path, shared);
+        } catch (RuntimeException excp) {
+            threadLock.unlock();
+            throw excp;
+        }
+        return newLock(holder, threadLock);
+    }
+
+
+    private static Lock newLock(Holder holder, java.util.concurrent.locks.Lock threadLock) {
+        return new Lock() {
+            private boolean released;
+
+            @Override
+            public void close() {
+                if (!released) {
+                    released = true;
+                    holder.release();
+                    threadLock.unlock();
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Atomically point REF at VALUE if it currently holds EXPECTED.
+     * A null EXPECTED means the ref must not exist yet, a null VALUE deletes the ref.
+     */
+    public void compareAndSet(File ref, String expected, String value) {
+        try (RefLock lock = lockRef(ref)) {
+            String current = ref.isFile() ? Utils.readContentsAsString(ref) : null;
+            if (!Objects.equals(expected, current)) {
+                throw Utils.error("Cannot update %s: it was changed by another process.", ref.getName());
+            }
+            lock.commit(value);
+        }
+    }
+
+
+    /**
+     * Atomically point REF at VALUE whatever it held before
+     */
+    public void set(File ref, String value) {
+        try (RefLock lock = lockRef(ref)) {
+            lock.commit(value);
+        }
+    }
+
+
+    /**
+     * Take the REF.lock file, no other process can update REF until the returned lock is closed.
+     * The new value only becomes visible if it's committed before closing.
+     */
+    public RefLock lockRef(File ref) {
+        File lock = new File(ref.getPath() + LOCK_SUFFIX);
+        createLockFile(ref, lock);
+        return new RefLock(ref, lock);
+    }
+
+
+    /**
+     * A held REF.lock file
+     */
+    public static class RefLock implements AutoCloseable {
+        private final File ref;
+        private final File lock;
+        // once the lock is renamed or removed, the name may already belong to another process
+        private boolean released;
+
+        private RefLock(File ref, File lock) {
+            this.ref = ref;
+            this.lock = lock;
+        }
+
+        /**
+         * Replace the ref with VALUE and release the lock, a null VALUE deletes the ref
+         */
+        public void commit(String value) {
+            try {
+                if (value == null) {
+                    Files.deleteIfExists(ref.toPath());
+                    Files.delete(lock.toPath());
+                } else {
+                    writeAndSync(lock.toPath(), value.getBytes(StandardCharsets.UTF_8));
+                    move(lock.toPath(), ref.toPath());
+                }
+                released = true;
+            } catch (IOException excp) {
+                throw Utils.error("Cannot update %s: %s", ref.getName(), excp.getMessage());
+            }
+        }
+
+        /**
+         * Release the lock, leaving the ref unchanged unless it was committed
+         */
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                lock.delete();
+            }
+        }
+    }
+
+
+    /**
+     * Create the REF.lock file, waiting a little for another process to finish its update
+     */
+    private static void createLockFile(File ref, File lock) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Files.createDirectories(lock.toPath().getParent());
+                Files.createFile(lock.toPath());
+                return;
+            } catch (FileAlreadyExistsException excp) {
+                if (attempt >= REF_LOCK_ATTEMPTS) {
+                    throw Utils.error("Unable to lock %s: %s exists, another process is updating it.", ref.getName(), lock.getPath());
+                }
+                try {
+                    Thread.sleep(REF_LOCK_WAIT_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw Utils.error("Interrupted while locking %s.", ref.getName());
+                }
+            } catch (IOException excp) {
+                throw Utils.error("Unable to lock %s: %s", ref.getName(), excp.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * Replace FILE with the concatenation of CONTENTS (Strings or byte arrays) so that
+     * readers see either the old or the new file, never a partially written one
+     */
+    public void writeAtomically(File file, Object... contents) {
+        Path target = file.toPath();
+        Path temp = null;
+        try {
+            long start = Trace.start();
+            long bytes = 0;
+            temp = createTempFile(file);
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                for (Object obj : contents) {
+                    byte[] data = obj instanceof byte[] ? (byte[]) obj : ((String) obj).getBytes(StandardCharsets.UTF_8);
+                    out.write(data);
+                    bytes += data.length;
+                }
+            }
+            move(temp, target);
+            Trace.stop(Trace.Phase.WRITE, start, bytes);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+
+    /**
+     * Copy SOURCE to TARGET through a temporary file, does nothing if TARGET already exists
+     */
+    public void copyAtomically(Path source, File target) throws IOException {
+        if (target.exists()) {
+            return;
+        }
+        Path temp = createTempFile(target);
+        try {
+            long start = Trace.start();
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            Trace.stop(Trace.Phase.COPY, start, temp);
+            move(temp, target.toPath());
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+
+    /**
+     * Temporary files live in .gitlet/tmp, on the same file system as their target
+     * but out of the directories that are listed
+     */
+    public Path createTempFile(File target) throws IOException {
+        return createTempFile(target.getName());
+    }
+
+
+    /**
+     * A temporary file for a target whose name isn't known yet
+     */
+    public Path createTempFile(String prefix) throws IOException {
+        Files.createDirectories(tempDir.toPath());
+        return Files.createTempFile(tempDir.toPath(), prefix, ".tmp");
+    }
+
+
+    /**
+     * Rename a completely written temporary file over TARGET
+     */
+    public void moveAtomically(Path temp, File target) throws IOException {
+        move(temp, target.toPath());
+    }
+
+
+    private static void writeAndSync(Path path, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(bytes));
+            channel.force(false);
+        }
+    }
+
+
+    private static void move(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException excp) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // a leftover temporary file is harmless
+        }
+    }
+
+
+    /**
+     * Returns true if NAME is a lock file left next to a ref during an update
+     */
+    public static boolean isLockFile(String name) {
+        return name.endsWith(LOCK_SUFFIX);
+    }
+}
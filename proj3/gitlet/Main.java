@@ -1,120 +1,251 @@
 package gitlet;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
-
-import static gitlet.GitletRepository.exitWithError;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Driver class for Gitlet, the tiny stupid version-control system.
+ * Parses the command line, runs it against {@link Repository} and prints the result.
  *
  * @author Delete020
  */
 public class Main {
 
+    private static final DateTimeFormatter ZONE_DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss yyyy Z");
+    private static final DateTimeFormatter BLAME_DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss Z");
+
     /**
      * Usage: java gitlet.Main ARGS, where ARGS contains
      * <COMMAND> <OPERAND> ....
      */
     public static void main(String... args) throws IOException {
+        run(System.getProperty("user.dir"), System.out, args);
+    }
+
+
+    /**
+     * Run one command in the working directory CWD, writing everything the user
+     * should see to OUT. Errors are printed, never thrown.
+     * <p>
+     * A leading --trace, or GITLET_TRACE=1 in the environment, prints where the command spent
+     * its time to standard error once it is done. --trace=json and GITLET_TRACE=json print it
+     * as JSON, and any other value is a file to write the JSON to.
+     */
+    public static void run(String cwd, PrintStream out, String... args) throws IOException {
+        run(cwd, out, System.err, args);
+    }
+
+
+    /**
+     * Run one command in CWD like {@link #run(String, PrintStream, String...)}, writing the
+     * trace to ERR instead of standard error
+     */
+    public static void run(String cwd, PrintStream out, PrintStream err, String... args) throws IOException {
+        String trace = System.getenv("GITLET_TRACE");
+        if (args.length > 0 && (args[0].equals("--trace") || args[0].startsWith("--trace="))) {
+            trace = args[0].equals("--trace") ? "1" : args[0].substring("--trace=".length());
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        boolean tracing = trace != null && !trace.isEmpty() && !"0".equals(trace);
+        if (tracing) {
+            Trace.enable();
+        }
+        try {
+            execute(cwd, out, args);
+        } catch (GitletException e) {
+            if (e.getMessage() != null && !e.getMessage().isEmpty()) {
+                out.println(e.getMessage());
+            }
+        } finally {
+            if (tracing) {
+                printTrace(err, cwd, trace, Trace.disable());
+            }
+        }
+    }
+
+
+    private static void execute(String cwd, PrintStream out, String... args) throws IOException {
         // Handle failure case.
         if (args.length == 0) {
-            exitWithError("Please enter a command.");
+            throw Utils.error("Please enter a command.");
         }
-        // .getlet file
-        File gitletDirectory = Utils.join(System.getProperty("user.dir"), ".gitlet");
-        if (!("init".equals(args[0]) || gitletDirectory.exists())) {
-            exitWithError("Not in an initialized Gitlet directory.");
+        if ("init".equals(args[0])) {
+            validateNumArgs(args.length - 1, 0);
+            Repository.init(cwd);
+            return;
         }
-
-        // create GitletRepository object 
-        GitletRepository gitletRepository = new GitletRepository();
-        // create RemoteRepository Object
-        RemoteRepository remoteRepository = new RemoteRepository();
+        if ("clone".equals(args[0])) {
+            // clone LOCATION DIRECTORY [--depth N] [--filter=blob:none]
+            List<String> operands = new ArrayList<>(Arrays.asList(args));
+            int depth = parseDepth(operands);
+            boolean partial = parseFilter(operands);
+            validateNumArgs(operands.size() - 1, 2);
+            Repository.clone(cwd, operands.get(1), operands.get(2), depth, partial);
+            return;
+        }
+        if ("serve".equals(args[0])) {
+            // serves the repositories under CWD, which needn't be one itself
+            validateNumArgs(args.length - 1, 0, 1);
+            new TransportServer(cwd).serve(args.length == 2 ? args[1] : String.valueOf(Protocol.DEFAULT_PORT), out);
+            return;
+        }
+        Repository repository = Repository.open(cwd);
 
         // user inputs operands
         int operands = args.length - 1;
         switch (args[0]) {
-            case ("init") -> {
-                validateNumArgs(operands, 0);
-                gitletRepository.init();
-            }
             case ("add") -> {
                 validateNumArgs(operands, 1);
-                gitletRepository.add(args[1]);
+                repository.add(args[1]);
             }
             case ("commit") -> {
                 validateNumArgs(operands, 1);
-                gitletRepository.commit(args[1]);
+                repository.commit(args[1]);
+                repository.scheduleMaintenance();
             }
             case ("rm") -> {
                 validateNumArgs(operands, 1);
-                gitletRepository.rm(args[1]);
+                repository.rm(args[1]);
             }
             case ("log") -> {
                 validateNumArgs(operands, 0);
-                gitletRepository.log();
+                try (CommitIterator commits = repository.log()) {
+                    printLog(out, commits);
+                }
             }
             case ("global-log") -> {
                 validateNumArgs(operands, 0);
-                gitletRepository.globalLog();
+                try (CommitIterator commits = repository.globalLog()) {
+                    printLog(out, commits);
+                }
             }
             case ("find") -> {
                 validateNumArgs(operands, 1);
-                gitletRepository.find(args[1]);
+                List<String> commits = repository.find(args[1]);
+                if (commits.isEmpty()) {
+                    out.println("Found no commit with that message.");
+                }
+                commits.forEach(out::println);
             }
             case ("status") -> {
                 validateNumArgs(operands, 0);
-                gitletRepository.status();
+                printStatus(out, repository.status());
             }
             case ("checkout") -> {
                 validateNumArgs(operands, 1, 3);
-                // remove first arg
-                gitletRepository.checkout(Arrays.stream(args).skip(1).toArray(String[]::new));
+                if (operands == 1) {
+                    repository.checkoutBranch(args[1]);
+                } else if (operands == 2 && "--".equals(args[1])) {
+                    repository.checkoutFile(args[2]);
+                } else if (operands == 3 && "--".equals(args[2])) {
+                    repository.checkoutFile(args[1], args[3]);
+                } else {
+                    throw Utils.error("Incorrect operands.");
+                }
             }
             case ("branch") -> {
                 validateNumArgs(operands, 1);
-                gitletRepository.branch(args[1]);
+                repository.branch(args[1]);
             }
             case ("rm-branch") -> {
                 validateNumArgs(operands, 1);
-                gitletRepository.rmBranch(args[1]);
+                repository.rmBranch(args[1]);
+            }
+            case ("pack-refs") -> {
+                validateNumArgs(operands, 0);
+                repository.packRefs();
+            }
+            case ("gc") -> {
+                validateNumArgs(operands, 0, 1);
+                if (operands == 1 && "--auto".equals(args[1])) {
+                    // run by auto maintenance, only does what is still needed
+                    GcResult result = repository.runMaintenance();
+                    if (result != null) {
+                        printGc(out, result);
+                    }
+                } else {
+                    printGc(out, repository.gc(operands == 0 ? GarbageCollector.DEFAULT_GRACE_PERIOD : parsePrune(args[1])));
+                }
+            }
+            case ("fsck") -> {
+                validateNumArgs(operands, 0);
+                printFsck(out, repository.fsck());
             }
             case ("reset") -> {
                 validateNumArgs(operands, 1);
-                gitletRepository.reset(args[1]);
+                repository.reset(args[1]);
             }
             case ("merge") -> {
                 validateNumArgs(operands, 1);
-                gitletRepository.merge(args[1]);
+                printMerge(out, repository.merge(args[1]));
+                repository.scheduleMaintenance();
+            }
+            case ("blame") -> {
+                validateNumArgs(operands, 1);
+                printBlame(out, repository.blame(args[1]));
             }
             case ("add-remote") -> {
                 validateNumArgs(operands, 2);
-                remoteRepository.addRemote(args[1], args[2]);
+                repository.addRemote(args[1], args[2]);
             }
             case ("rm-remote") -> {
                 validateNumArgs(operands, 1);
-                remoteRepository.rmRemote(args[1]);
+                repository.rmRemote(args[1]);
             }
             case ("push") -> {
-                validateNumArgs(operands, 2);
-                remoteRepository.push(args[1], args[2]);
+                validateNumArgs(operands, 2, 3);
+                boolean stats = parseStats(args);
+                printTransfer(out, repository.push(args[1], args[2]), stats);
             }
             case ("fetch") -> {
-                validateNumArgs(operands, 2);
-                remoteRepository.fetch(args[1], args[2]);
+                List<String> fetchArgs = new ArrayList<>(Arrays.asList(args));
+                int depth = parseDepth(fetchArgs);
+                boolean partial = parseFilter(fetchArgs);
+                if (fetchArgs.contains("--all")) {
+                    if (partial) {
+                        throw Utils.error("Incorrect operands.");
+                    }
+                    // fetch --all: every remote, fetch REMOTE... --all: every branch of those remotes
+                    List<String> remotes = fetchArgs.subList(1, fetchArgs.size()).stream()
+                            .filter(arg -> !"--all".equals(arg))
+                            .toList();
+                    printFetch(out, repository.fetchAll(remotes, depth));
+                } else {
+                    String[] options = fetchArgs.toArray(new String[0]);
+                    validateNumArgs(options.length - 1, 2, 3);
+                    boolean stats = parseStats(options);
+                    if (partial) {
+                        repository.setPromisor(options[1]);
+                    }
+                    printTransfer(out, repository.fetch(options[1], options[2], depth), stats);
+                }
+                repository.scheduleMaintenance();
             }
             case ("pull") -> {
                 validateNumArgs(operands, 2);
-                remoteRepository.pull(args[1], args[2]);
+                printMerge(out, repository.pull(args[1], args[2]));
+                repository.scheduleMaintenance();
+            }
+            case ("bundle") -> {
+                validateNumArgs(operands, 2, Integer.MAX_VALUE);
+                printBundle(out, args[1], bundle(repository, Arrays.asList(args).subList(1, args.length)));
             }
             case ("diff") -> {
                 validateNumArgs(operands, 0, 2);
                 // remove first arg
-                remoteRepository.diff(Arrays.stream(args).skip(1).toArray(String[]::new));
+                printDiff(out, repository.diff(Arrays.copyOfRange(args, 1, args.length)));
             }
-            default -> exitWithError("No command with that name exists.");
+            default -> throw Utils.error("No command with that name exists.");
         }
     }
 
@@ -122,7 +253,7 @@ public class Main {
     /**
      * Checks the number of arguments versus the expected number,
      * If a user inputs a command with the wrong number or format of operands,
-     * print the message and exit.
+     * throws an error with the message to print.
      *
      * @param operands User input operands from command line
      * @param number   Number of expected arguments
@@ -133,7 +264,295 @@ public class Main {
 
     public static void validateNumArgs(int operands, int min, int max) {
         if (operands > max || operands < min) {
-            exitWithError("Incorrect operands.");
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+
+
+    /**
+     * Parse --prune=now or --prune=DAYS, the age unreachable objects need before gc deletes them
+     */
+    private static Duration parsePrune(String option) {
+        if (!option.startsWith("--prune=")) {
+            throw Utils.error("Incorrect operands.");
+        }
+        String value = option.substring("--prune=".length());
+        if ("now".equals(value)) {
+            return Duration.ZERO;
+        }
+        try {
+            return Duration.ofDays(Long.parseUnsignedLong(value));
+        } catch (NumberFormatException e) {
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+
+
+    /**
+     * Remove --depth N from ARGS, returns N or 0 if there is no --depth
+     */
+    private static int parseDepth(List<String> args) {
+        int index = args.indexOf("--depth");
+        if (index < 0) {
+            return 0;
+        }
+        if (index + 1 >= args.size()) {
+            throw Utils.error("Incorrect operands.");
+        }
+        int depth;
+        try {
+            depth = Integer.parseInt(args.get(index + 1));
+        } catch (NumberFormatException e) {
+            throw Utils.error("Incorrect operands.");
+        }
+        if (depth <= 0) {
+            throw Utils.error("Incorrect operands.");
+        }
+        args.subList(index, index + 2).clear();
+        return depth;
+    }
+
+
+    /**
+     * bundle create FILE BRANCH... [--basis COMMIT]..., bundle verify FILE or bundle unbundle FILE
+     */
+    private static BundleResult bundle(Repository repository, List<String> args) throws IOException {
+        switch (args.get(0)) {
+            case ("create") -> {
+                List<String> branches = new ArrayList<>();
+                List<String> basis = new ArrayList<>();
+                for (int i = 2; i < args.size(); i++) {
+                    if (!"--basis".equals(args.get(i))) {
+                        branches.add(args.get(i));
+                    } else if (++i < args.size()) {
+                        basis.add(args.get(i));
+                    } else {
+                        throw Utils.error("Incorrect operands.");
+                    }
+                }
+                validateNumArgs(branches.size(), 1, Integer.MAX_VALUE);
+                return repository.createBundle(args.get(1), branches, basis);
+            }
+            case ("verify") -> {
+                validateNumArgs(args.size() - 1, 1);
+                return repository.verifyBundle(args.get(1));
+            }
+            case ("unbundle") -> {
+                validateNumArgs(args.size() - 1, 1);
+                return repository.unbundle(args.get(1));
+            }
+            default -> throw Utils.error("Incorrect operands.");
+        }
+    }
+
+
+    /**
+     * Remove --filter=blob:none from ARGS, returns true if it was there
+     */
+    private static boolean parseFilter(List<String> args) {
+        boolean partial = args.remove("--filter=blob:none");
+        if (args.stream().anyMatch(arg -> arg.startsWith("--filter"))) {
+            throw Utils.error("Incorrect operands.");
+        }
+        return partial;
+    }
+
+
+    /**
+     * Returns true if the optional operand after REMOTE BRANCH is --stats
+     */
+    private static boolean parseStats(String... args) {
+        if (args.length == 4 && !"--stats".equals(args[3])) {
+            throw Utils.error("Incorrect operands.");
+        }
+        return args.length == 4;
+    }
+
+
+    /**
+     * Print all the information of each commit
+     */
+    private static void printLog(PrintStream out, Iterator<CommitInfo> commits) {
+        while (commits.hasNext()) {
+            CommitInfo commit = commits.next();
+            out.println("===");
+            out.println("commit " + commit.id());
+            if (commit.isMerge()) {
+                out.println("Merge: " + commit.parent().substring(0, 7) + " " + commit.mergeFrom().substring(0, 7));
+            }
+            out.println("Date: " + commit.timestamp().withZoneSameInstant(ZoneOffset.systemDefault()).format(ZONE_DATE_TIME_FORMATTER));
+            out.println(commit.message());
+            out.println();
+        }
+    }
+
+
+    private static void printStatus(PrintStream out, StatusResult status) {
+        out.println("=== Branches ===");
+        for (String branch : status.branches()) {
+            if (branch.equals(status.currentBranch())) {
+                out.print("*");
+            }
+            out.println(branch);
+        }
+        out.println();
+
+        out.println("=== Staged Files ===");
+        status.staged().forEach(out::println);
+        out.println();
+
+        out.println("=== Removed Files ===");
+        status.removed().forEach(out::println);
+        out.println();
+
+        out.println("=== Modifications Not Staged For Commit ===");
+        status.modified().forEach(out::println);
+        out.println();
+
+        out.println("=== Untracked Files ===");
+        status.untracked().forEach(out::println);
+    }
+
+
+    private static void printMerge(PrintStream out, MergeResult result) {
+        if (result.fastForward()) {
+            out.println("Current branch fast-forwarded.");
+        } else if (result.hasConflicts()) {
+            out.println("Encountered a merge conflict.");
+        }
+    }
+
+
+    private static void printGc(PrintStream out, GcResult result) {
+        out.printf("Marked %d commits and %d blobs reachable in %d ms.%n",
+                result.reachableCommits(), result.reachableBlobs(), result.markTime().toMillis());
+        out.printf("Removed %d commits and %d blobs, %d bytes reclaimed in %d ms.%n",
+                result.prunedCommits(), result.prunedBlobs(), result.prunedBytes(), result.sweepTime().toMillis());
+        out.printf("Packed %d blobs into %d bytes in %d ms.%n",
+                result.packedBlobs(), result.packBytes(), result.repackTime().toMillis());
+    }
+
+
+    private static void printFsck(PrintStream out, FsckResult result) {
+        result.problems().forEach(out::println);
+        out.printf("Checked %d commits and %d blobs, %d bytes in %d ms.%n",
+                result.commits(), result.blobs(), result.bytes(), result.time().toMillis());
+    }
+
+
+    private static void printTransfer(PrintStream out, TransferResult result, boolean stats) {
+        if (stats) {
+            out.printf("Copied %d commits and %d blobs (%d bytes), skipped %d blobs (%d bytes).%n",
+                    result.commits(), result.blobs(), result.bytes(), result.skippedBlobs(), result.skippedBytes());
+        }
+    }
+
+
+    private static void printFetch(PrintStream out, FetchResult fetch) {
+        for (FetchResult.Branch branch : fetch.branches()) {
+            TransferResult result = branch.result();
+            out.printf("%s/%s: copied %d commits and %d blobs (%d bytes), skipped %d blobs (%d bytes) in %d ms.%n",
+                    branch.remote(), branch.branch(), result.commits(), result.blobs(), result.bytes(),
+                    result.skippedBlobs(), result.skippedBytes(), branch.time().toMillis());
+        }
+        long remotes = fetch.branches().stream().map(FetchResult.Branch::remote).distinct().count();
+        out.printf("Fetched %d branches from %d remotes in %d ms.%n",
+                fetch.branches().size(), remotes, fetch.time().toMillis());
+    }
+
+
+    private static void printBundle(PrintStream out, String command, BundleResult result) {
+        switch (command) {
+            case ("create") -> out.printf("Bundled %d commits and %d blobs (%d bytes).%n",
+                    result.commits(), result.blobs(), result.bytes());
+            case ("verify") -> {
+                result.refs().forEach((branch, sha1) -> out.println(sha1 + " " + branch));
+                for (String sha1 : result.basis()) {
+                    out.println("Requires " + sha1 + (result.missing().contains(sha1) ? " (missing)" : ""));
+                }
+                out.println(result.missing().isEmpty()
+                        ? "The bundle is okay."
+                        : "The bundle requires commits this repository lacks.");
+            }
+            default -> {
+                result.refs().forEach((branch, sha1) -> out.println(sha1 + " " + Bundle.REF_PREFIX + "/" + branch));
+                out.printf("Unbundled %d commits and %d blobs.%n", result.commits(), result.blobs());
+            }
+        }
+    }
+
+
+    /**
+     * Print the trace of a command to ERR as a table, or as JSON if TRACE is json,
+     * or write the JSON to the file TRACE
+     */
+    private static void printTrace(PrintStream err, String cwd, String trace, TraceResult result) throws IOException {
+        if (!"json".equals(trace) && !"1".equals(trace) && !"true".equals(trace)) {
+            Files.writeString(Path.of(cwd).resolve(trace), traceJson(result));
+            return;
+        }
+        if ("json".equals(trace)) {
+            err.print(traceJson(result));
+            return;
+        }
+        err.printf("trace: %-12s %8s %14s %10s%n", "phase", "calls", "amount", "time");
+        for (TraceResult.Entry entry : result.phases()) {
+            err.printf("trace: %-12s %8d %14s %7.1f ms%n", entry.phase().label(), entry.calls(),
+                    entry.amount() + " " + entry.phase().unit(), entry.time().toNanos() / 1e6);
+        }
+        err.printf("trace: %-12s %8s %14s %7.1f ms%n", "total", "", "", result.time().toNanos() / 1e6);
+    }
+
+
+    private static String traceJson(TraceResult result) {
+        StringBuilder json = new StringBuilder("{\"time_ms\": ")
+                .append(String.format(Locale.ROOT, "%.3f", result.time().toNanos() / 1e6))
+                .append(", \"phases\": [");
+        for (int i = 0; i < result.phases().size(); i++) {
+            TraceResult.Entry entry = result.phases().get(i);
+            json.append(i == 0 ? "" : ", ")
+                    .append(String.format(Locale.ROOT, "{\"phase\": \"%s\", \"calls\": %d, \"%s\": %d, \"time_ms\": %.3f}",
+                            entry.phase().label(), entry.calls(), entry.phase().unit(), entry.amount(),
+                            entry.time().toNanos() / 1e6));
+        }
+        return json.append("]}\n").toString();
+    }
+
+
+    private static void printBlame(PrintStream out, List<Blame.Line> lines) {
+        int width = String.valueOf(lines.size()).length();
+        for (Blame.Line line : lines) {
+            String date = line.commit().getTimestamp().withZoneSameInstant(ZoneOffset.systemDefault()).format(BLAME_DATE_TIME_FORMATTER);
+            out.printf("%s (%s %" + width + "d) %s%n", line.commitSha1().substring(0, 8), date, line.number(), line.text());
+        }
+    }
+
+
+    /**
+     * Print patches in unified diff format
+     */
+    private static void printDiff(PrintStream out, List<FilePatch> patches) {
+        for (FilePatch patch : patches) {
+            // The start of the differences for one of the files in the two versions
+            String firstFilename = patch.oldExists() ? "a/" + patch.filename() : "/dev/null";
+            String secondFilename = patch.newExists() ? "b/" + patch.filename() : "/dev/null";
+            out.println("diff --git " + firstFilename + " " + secondFilename);
+            out.println("--- " + firstFilename);
+            out.println("+++ " + secondFilename);
+
+            for (FilePatch.Hunk hunk : patch.hunks()) {
+                int n1 = hunk.removed().size();
+                int n2 = hunk.added().size();
+                int l1 = n1 == 0 ? hunk.oldStart() : hunk.oldStart() + 1;
+                int l2 = n2 == 0 ? hunk.newStart() : hunk.newStart() + 1;
+
+                // sequence of edits
+                String edits1 = n1 == 1 ? l1 + "" : l1 + "," + n1;
+                String edits2 = n2 == 1 ? l2 + "" : l2 + "," + n2;
+                out.println("@@ -" + edits1 + " +" + edits2 + " @@");
+                hunk.removed().forEach(line -> out.println("-" + line));
+                hunk.added().forEach(line -> out.println("+" + line));
+            }
         }
     }
 }
@@ -0,0 +1,223 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Automatic maintenance: once loose objects, packs or loose refs pile up, gc and pack-refs
+ * run in a detached background process so the command that noticed doesn't wait for them.
+ * <p>
+ * The check after commit, merge and fetch must stay cheap, so it never lists objects/.
+ * Loose objects are estimated from a single fan-out directory, blob ids are uniformly
+ * distributed so objects/17 holds about 1/256 of them. Thresholds come from .gitlet/config:
+ * <ul>
+ *     <li>gc.auto - estimated loose blobs before gc runs, 0 disables auto maintenance</li>
+ *     <li>gc.autoPackLimit - packs before gc runs to merge them into one</li>
+ *     <li>gc.autoRefLimit - loose refs before pack-refs runs</li>
+ *     <li>gc.autoDetach - false runs maintenance in the foreground</li>
+ * </ul>
+ * Too many packs run a full gc that merges them. Too many loose objects alone run an
+ * incremental gc that packs just the reachable loose blobs, see {@link GarbageCollector}.
+ * Unreachable objects younger than the grace period stay loose, so a run may not get below
+ * gc.auto: the estimate it left is recorded in .gitlet/gc.last and the next run waits for
+ * another gc.auto objects on top of it, like git waits on the gc.log of a run that didn't help.
+ *
+ * @author Delete020
+ * @since 10/19/26 4:30 PM
+ */
+public class Maintenance {
+
+    private static final int DEFAULT_LOOSE_LIMIT = 6700;
+    private static final int DEFAULT_PACK_LIMIT = 50;
+    private static final int DEFAULT_REF_LIMIT = 1000;
+    private static final String SAMPLE_DIR = "17";
+    private static final int FANOUT = 256;
+    /** Held by the process running auto maintenance, so at most one runs at a time */
+    private static final String LOCK = "maintenance";
+    /** Loose estimate left by the last auto gc, when it couldn't get below gc.auto */
+    private static final String LAST_RUN = "gc.last";
+
+    private final GitletRepository repository;
+    private final File gitletDir;
+    private final int looseLimit;
+    private final int packLimit;
+    private final int refLimit;
+    private final boolean detach;
+
+
+    public Maintenance(GitletRepository repository) {
+        this.repository = repository;
+        this.gitletDir = repository.getGitletDir();
+        Config config = Config.load(gitletDir);
+        this.looseLimit = config.getInt("gc.auto", DEFAULT_LOOSE_LIMIT);
+        this.packLimit = config.getInt("gc.autoPackLimit", DEFAULT_PACK_LIMIT);
+        this.refLimit = config.getInt("gc.autoRefLimit", DEFAULT_REF_LIMIT);
+        this.detach = config.getBoolean("gc.autoDetach", true);
+    }
+
+
+    /**
+     * Returns true if gc should run
+     */
+    public boolean needsGc() {
+        return needsRepack() || needsLoosePack();
+    }
+
+
+    /**
+     * Returns true if there are too many packs, which only a full gc merges
+     */
+    public boolean needsRepack() {
+        return looseLimit > 0 && count(Utils.join(gitletDir, "objects", "pack"), ".idx") > packLimit;
+    }
+
+
+    /**
+     * Returns true if enough loose objects were written since the last auto gc
+     */
+    public boolean needsLoosePack() {
+        return looseLimit > 0 && looseSample() > sampleLimit() + lastRunSample();
+    }
+
+
+    /**
+     * Returns true if pack-refs should run
+     */
+    public boolean needsPackRefs() {
+        return looseLimit > 0 && countLooseRefs() > refLimit;
+    }
+
+
+    /**
+     * Start maintenance if a threshold is exceeded, in a detached low priority
+     * process unless gc.autoDetach is false
+     */
+    public void schedule() throws IOException {
+        if (!needsGc() && !needsPackRefs()) {
+            return;
+        }
+        if (!detach) {
+            run();
+            return;
+        }
+        new ProcessBuilder(command())
+                .directory(gitletDir.getParentFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(Utils.join(gitletDir, "gc.log")))
+                .start();
+    }
+
+
+    /**
+     * Run the maintenance that is still needed, returns the gc result or null if gc didn't run.
+     * Does nothing if another process is already running maintenance.
+     */
+    public GcResult run() throws IOException {
+        try (LockManager.Lock lock = repository.getLocks().tryExclusive(LOCK)) {
+            if (lock == null) {
+                return null;
+            }
+            if (needsPackRefs()) {
+                repository.packRefs();
+            }
+            GcResult result;
+            if (needsRepack()) {
+                result = repository.gc(GarbageCollector.DEFAULT_GRACE_PERIOD, true);
+            } else if (needsLoosePack()) {
+                result = repository.gc(GarbageCollector.DEFAULT_GRACE_PERIOD, false);
+            } else {
+                return null;
+            }
+            recordLastRun();
+            return result;
+        }
+    }
+
+
+    /**
+     * Record the loose estimate a gc left if it is still above gc.auto, forget it otherwise
+     */
+    private void recordLastRun() throws IOException {
+        File lastRun = Utils.join(gitletDir, LAST_RUN);
+        int sample = looseSample();
+        if (sample > sampleLimit()) {
+            Utils.writeContents(lastRun, Integer.toString(sample));
+        } else {
+            Files.deleteIfExists(lastRun.toPath());
+        }
+    }
+
+
+    private int lastRunSample() {
+        File lastRun = Utils.join(gitletDir, LAST_RUN);
+        if (!lastRun.isFile()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(Utils.readContentsAsString(lastRun).trim());
+        } catch (IllegalArgumentException excp) {
+            // gone since the check, or garbled
+            return 0;
+        }
+    }
+
+
+    private int looseSample() {
+        return count(Utils.join(gitletDir, "objects", SAMPLE_DIR), null);
+    }
+
+
+    /**
+     * gc.auto scaled down to the sampled directory, rounded up so a limit below 256 still
+     * needs at least one sampled object
+     */
+    private int sampleLimit() {
+        return (looseLimit + FANOUT - 1) / FANOUT;
+    }
+
+
+    /**
+     * java -cp CLASSPATH gitlet.Main gc --auto, run by nice where available
+     */
+    private static List<String> command() {
+        List<String> command = new ArrayList<>();
+        File nice = new File("/usr/bin/nice");
+        if (nice.canExecute()) {
+            command.add(nice.getPath());
+            command.add("-n");
+            command.add("19");
+        }
+        command.add(ProcessHandle.current().info().command()
+                .orElse(Utils.join(System.getProperty("java.home"), "bin", "java").getPath()));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.add("gc");
+        command.add("--auto");
+        return command;
+    }
+
+
+    private int countLooseRefs() {
+        File branchDir = Utils.join(gitletDir, "branches");
+        int refs = 0;
+        File[] files = branchDir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        for (File file : files) {
+            // remote-tracking refs are one level down, in a directory named after the remote
+            refs += file.isDirectory() ? count(file, null) : 1;
+        }
+        return refs;
+    }
+
+
+    private static int count(File dir, String suffix) {
+        String[] names = dir.list((parent, name) -> suffix == null || name.endsWith(suffix));
+        return names == null ? 0 : names.length;
+    }
+}
@@ -0,0 +1,19 @@
+package gitlet;
+
+import java.util.List;
+
+/**
+ * Result of merging a branch into the current branch
+ *
+ * @param commitId    the merge commit, or the new head when fast-forwarded
+ * @param fastForward true if the current branch was simply moved to the given branch
+ * @param conflicts   files written with conflict markers
+ * @author Delete020
+ * @since 10/19/26 10:05 AM
+ */
+public record MergeResult(String commitId, boolean fastForward, List<String> conflicts) {
+
+    public boolean hasConflicts() {
+        return !conflicts.isEmpty();
+    }
+}
@@ -0,0 +1,175 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A SHA-1 object id held as its 20 raw bytes, five ints, instead of a 40 character hex
+ * string. Ids order like their hex names, and as SHA-1 output is uniformly distributed the
+ * first word is already a good hash code, so it needs no computing or caching of its own.
+ *
+ * @author Delete020
+ * @since 10/19/26 10:45 PM
+ */
+public final class ObjectId implements Comparable<ObjectId> {
+
+    /** Length of an id in bytes */
+    public static final int RAW_LENGTH = 20;
+    /** Length of the hex name of an id */
+    public static final int HEX_LENGTH = 40;
+
+    private final int w1;
+    private final int w2;
+    private final int w3;
+    private final int w4;
+    private final int w5;
+
+
+    private ObjectId(int w1, int w2, int w3, int w4, int w5) {
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+        this.w4 = w4;
+        this.w5 = w5;
+    }
+
+
+    /**
+     * The id whose raw bytes start at OFFSET of RAW
+     */
+    public static ObjectId fromRaw(byte[] raw, int offset) {
+        return new ObjectId(word(raw, offset), word(raw, offset + 4), word(raw, offset + 8),
+                word(raw, offset + 12), word(raw, offset + 16));
+    }
+
+
+    public static ObjectId fromRaw(byte[] raw) {
+        return fromRaw(raw, 0);
+    }
+
+
+    /**
+     * The id named by the 40 hex digits HEX
+     */
+    public static ObjectId fromHex(String hex) {
+        if (hex == null || hex.length() != HEX_LENGTH) {
+            throw Utils.error("%s is not an object id.", hex);
+        }
+        return new ObjectId(Hashing.parseWord(hex, 0), Hashing.parseWord(hex, 8), Hashing.parseWord(hex, 16),
+                Hashing.parseWord(hex, 24), Hashing.parseWord(hex, 32));
+    }
+
+
+    /**
+     * Returns true if S is 40 lowercase hex digits
+     */
+    public static boolean isId(String s) {
+        if (s == null || s.length() != HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            char c = s.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    public static ObjectId read(DataInput in) throws IOException {
+        return new ObjectId(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+    }
+
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(w1);
+        out.writeInt(w2);
+        out.writeInt(w3);
+        out.writeInt(w4);
+        out.writeInt(w5);
+    }
+
+
+    /**
+     * Store the raw bytes of this id at OFFSET of DST
+     */
+    public void copyRawTo(byte[] dst, int offset) {
+        putWord(dst, offset, w1);
+        putWord(dst, offset + 4, w2);
+        putWord(dst, offset + 8, w3);
+        putWord(dst, offset + 12, w4);
+        putWord(dst, offset + 16, w5);
+    }
+
+
+    public byte[] toRaw() {
+        byte[] raw = new byte[RAW_LENGTH];
+        copyRawTo(raw, 0);
+        return raw;
+    }
+
+
+    /**
+     * The 40 digit hex name, as used in file names, refs and commits
+     */
+    public String name() {
+        char[] hex = new char[HEX_LENGTH];
+        Hashing.formatWord(hex, 0, w1);
+        Hashing.formatWord(hex, 8, w2);
+        Hashing.formatWord(hex, 16, w3);
+        Hashing.formatWord(hex, 24, w4);
+        Hashing.formatWord(hex, 32, w5);
+        return new String(hex);
+    }
+
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int c = Integer.compareUnsigned(w1, other.w1);
+        if (c == 0) {
+            c = Integer.compareUnsigned(w2, other.w2);
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(w3, other.w3);
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(w4, other.w4);
+        }
+        return c != 0 ? c : Integer.compareUnsigned(w5, other.w5);
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ObjectId other
+                && w1 == other.w1 && w2 == other.w2 && w3 == other.w3 && w4 == other.w4 && w5 == other.w5;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return w1;
+    }
+
+
+    @Override
+    public String toString() {
+        return name();
+    }
+
+
+    private static int word(byte[] raw, int offset) {
+        return (raw[offset] & 0xff) << 24 | (raw[offset + 1] & 0xff) << 16
+                | (raw[offset + 2] & 0xff) << 8 | raw[offset + 3] & 0xff;
+    }
+
+
+    private static void putWord(byte[] dst, int offset, int word) {
+        dst[offset] = (byte) (word >>> 24);
+        dst[offset + 1] = (byte) (word >>> 16);
+        dst[offset + 2] = (byte) (word >>> 8);
+        dst[offset + 3] = (byte) word;
+    }
+}
@@ -0,0 +1,761 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Blob storage of a repository.
+ * <p>
+ * A blob is either loose, the file objects/xx/rest named after its sha1, or stored in a pack:
+ * objects/pack/pack-NAME.pack holds the contents of many blobs back to back and pack-NAME.idx
+ * the sorted sha1s with the offset and length of each blob. New blobs are written loose, except
+ * that push and fetch write a large batch as one pack, {@link GarbageCollector} moves the
+ * reachable ones into a single pack.
+ * <p>
+ * A pack is only used once its index exists, and the index is written last, so a pack that
+ * is being written is never read. Pack indexes are loaded lazily and the pack directory is
+ * scanned again whenever a blob can't be found, in case another process repacked.
+ * <p>
+ * The store of a partial clone lacks blobs on purpose, it has a {@link Promisor} that fetches
+ * a missing blob when it is read. Commands that are about to read many blobs {@link #prefetch}
+ * them first, so they arrive in one batch.
+ *
+ * @author Delete020
+ * @since 10/19/26 3:10 PM
+ */
+public class ObjectStore {
+
+    private static final int PACK_MAGIC = 0x47504b31;
+    private static final int INDEX_MAGIC = 0x47494431;
+    private static final String PACK_SUFFIX = ".pack";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final File objectsDir;
+    private final File packDir;
+    private final LockManager locks;
+    private volatile List<Pack> packs;
+    private volatile Promisor promisor;
+
+
+    public ObjectStore(File gitletDir, LockManager locks) {
+        this.objectsDir = Utils.join(gitletDir, "objects");
+        this.packDir = Utils.join(objectsDir, "pack");
+        this.locks = locks;
+    }
+
+
+    /**
+     * Fetches the blobs a partial clone was promised from the remote that promised them
+     */
+    public interface Promisor {
+        void fetch(Collection<String> ids) throws IOException;
+    }
+
+
+    /**
+     * Fetch blobs this store lacks through PROMISOR instead of failing
+     */
+    public void setPromisor(Promisor promisor) {
+        this.promisor = promisor;
+    }
+
+
+    /**
+     * Fetch the blobs of IDS this store lacks in a single batch, does nothing unless
+     * this is a partial clone
+     */
+    public void prefetch(Collection<String> ids) {
+        if (promisor == null) {
+            return;
+        }
+        List<String> missing = missing(ids);
+        if (!missing.isEmpty()) {
+            fetchPromised(missing);
+        }
+    }
+
+
+    /**
+     * The blobs of IDS this store lacks, the pack directory is scanned again at most once
+     */
+    private List<String> missing(Collection<String> ids) {
+        List<String> missing = new ArrayList<>();
+        for (String sha1 : new TreeSet<>(ids)) {
+            if (!looseFile(sha1).isFile() && packs().stream().noneMatch(pack -> pack.contains(sha1))) {
+                missing.add(sha1);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<Pack> rescanned = scanPacks();
+            missing.removeIf(sha1 -> rescanned.stream().anyMatch(pack -> pack.contains(sha1)));
+        }
+        return missing;
+    }
+
+
+    /**
+     * Fetch the missing blobs IDS through the promisor, fails if there is none
+     * or it didn't deliver them
+     */
+    private void fetchPromised(List<String> ids) {
+        if (promisor != null) {
+            try {
+                promisor.fetch(ids);
+            } catch (IOException excp) {
+                throw Utils.error("Could not fetch missing objects: %s", excp.getMessage());
+            }
+        }
+        for (String sha1 : ids) {
+            if (!contains(sha1)) {
+                throw Utils.error("Missing object %s.", sha1);
+            }
+        }
+    }
+
+
+    /**
+     * Returns true if the blob SHA1 is stored loose or in a pack
+     */
+    public boolean contains(String sha1) {
+        return looseFile(sha1).isFile() || findPack(sha1) != null;
+    }
+
+
+    /**
+     * Returns the contents of the blob SHA1
+     */
+    public byte[] read(String sha1) {
+        Events.ObjectRead event = new Events.ObjectRead();
+        event.begin();
+        File loose = looseFile(sha1);
+        if (loose.isFile()) {
+            byte[] contents = Utils.readContents(loose);
+            commitRead(event, sha1, contents.length, "loose");
+            return contents;
+        }
+        Pack pack = findPack(sha1);
+        if (pack == null) {
+            fetchPromised(List.of(sha1));
+            return read(sha1);
+        }
+        byte[] contents = pack.read(sha1);
+        commitRead(event, sha1, contents.length, "pack");
+        return contents;
+    }
+
+
+    /**
+     * Stream the contents of the blob SHA1, for blobs too large to read at once
+     */
+    public InputStream open(String sha1) throws IOException {
+        Events.ObjectRead event = new Events.ObjectRead();
+        event.begin();
+        File loose = looseFile(sha1);
+        if (loose.isFile()) {
+            InputStream in = Files.newInputStream(loose.toPath());
+            if (event.shouldCommit()) {
+                commitRead(event, sha1, loose.length(), "loose");
+            }
+            return in;
+        }
+        Pack pack = findPack(sha1);
+        if (pack == null) {
+            fetchPromised(List.of(sha1));
+            return open(sha1);
+        }
+        InputStream in = pack.open(sha1);
+        if (event.shouldCommit()) {
+            commitRead(event, sha1, pack.length(sha1), "pack");
+        }
+        return in;
+    }
+
+
+    /**
+     * Map the contents of the blob SHA1 read-only, from its loose file or its pack, so it can
+     * be read without copying it onto the heap. See {@link LineView}.
+     */
+    public ByteBuffer map(String sha1) throws IOException {
+        Events.ObjectRead event = new Events.ObjectRead();
+        event.begin();
+        File loose = looseFile(sha1);
+        if (loose.isFile()) {
+            ByteBuffer contents = LineView.mapFile(loose.toPath(), 0, -1);
+            commitRead(event, sha1, contents.limit(), "loose");
+            return contents;
+        }
+        Pack pack = findPack(sha1);
+        if (pack == null) {
+            fetchPromised(List.of(sha1));
+            return map(sha1);
+        }
+        ByteBuffer contents = pack.map(sha1);
+        commitRead(event, sha1, contents.limit(), "pack");
+        return contents;
+    }
+
+
+    /**
+     * The lines of the blob SHA1 over its mapped contents
+     */
+    public LineView mapLines(String sha1) throws IOException {
+        return LineView.of(map(sha1));
+    }
+
+
+    private static void commitRead(Events.ObjectRead event, String sha1, long size, String source) {
+        if (event.shouldCommit()) {
+            event.id = sha1;
+            event.size = size;
+            event.source = source;
+            event.commit();
+        }
+    }
+
+
+    private static void commitWrite(Events.ObjectWrite event, String id, long size, String source) {
+        if (event.shouldCommit()) {
+            event.id = id;
+            event.size = size;
+            event.source = source;
+            event.commit();
+        }
+    }
+
+
+    /**
+     * Returns the size of the blob SHA1 in bytes without reading it
+     */
+    public long size(String sha1) {
+        File loose = looseFile(sha1);
+        if (loose.isFile()) {
+            return loose.length();
+        }
+        Pack pack = findPack(sha1);
+        if (pack == null) {
+            fetchPromised(List.of(sha1));
+            return size(sha1);
+        }
+        return pack.length(sha1);
+    }
+
+
+    public String readString(String sha1) {
+        return new String(read(sha1), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Store CONTENTS as the blob SHA1, does nothing if it's already stored
+     */
+    public void write(String sha1, byte[] contents) {
+        if (!contains(sha1)) {
+            writeLoose(sha1, contents);
+        }
+    }
+
+
+    /**
+     * Store CONTENTS as a loose blob even if SHA1 is already packed
+     */
+    public void writeLoose(String sha1, byte[] contents) {
+        Events.ObjectWrite event = new Events.ObjectWrite();
+        event.begin();
+        locks.writeAtomically(looseFile(sha1), contents);
+        commitWrite(event, sha1, contents.length, "loose");
+    }
+
+
+    /**
+     * Store the file SOURCE as the blob SHA1, does nothing if it's already stored
+     */
+    public void insert(String sha1, Path source) throws IOException {
+        if (!contains(sha1)) {
+            Events.ObjectWrite event = new Events.ObjectWrite();
+            event.begin();
+            locks.copyAtomically(source, looseFile(sha1));
+            if (event.shouldCommit()) {
+                commitWrite(event, sha1, looseFile(sha1).length(), "loose");
+            }
+        }
+    }
+
+
+    /**
+     * Store the stream CONTENTS as a loose blob SHA1, for blobs arriving from another process.
+     * Reads CONTENTS to the end even if SHA1 is already stored.
+     */
+    public void receive(String sha1, InputStream contents) throws IOException {
+        Events.ObjectWrite event = new Events.ObjectWrite();
+        event.begin();
+        File target = looseFile(sha1);
+        Path temp = locks.createTempFile(target);
+        try {
+            long start = Trace.start();
+            long bytes = Files.copy(contents, temp, StandardCopyOption.REPLACE_EXISTING);
+            Trace.stop(Trace.Phase.COPY, start, bytes);
+            if (!contains(sha1)) {
+                locks.moveAtomically(temp, target);
+                commitWrite(event, sha1, bytes, "received");
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+
+    /**
+     * Start writing a blob that will be stored as FILENAME, for contents built piece by piece
+     * and too large to hold in memory
+     */
+    public BlobWriter newBlob(String filename) throws IOException {
+        return new BlobWriter(filename);
+    }
+
+
+    /**
+     * Write the contents of the blob SHA1 to TARGET, replacing it if it exists
+     */
+    public void checkout(String sha1, Path target) throws IOException {
+        File loose = looseFile(sha1);
+        if (loose.isFile()) {
+            Events.ObjectRead event = new Events.ObjectRead();
+            event.begin();
+            long start = Trace.start();
+            Files.copy(loose.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+            Trace.stop(Trace.Phase.COPY, start, target);
+            if (event.shouldCommit()) {
+                commitRead(event, sha1, loose.length(), "loose");
+            }
+        } else {
+            try (InputStream in = open(sha1)) {
+                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+
+    /**
+     * Copy the blob SHA1 from this store to OTHER
+     */
+    public void copyTo(ObjectStore other, String sha1) throws IOException {
+        File loose = looseFile(sha1);
+        if (loose.isFile()) {
+            Events.ObjectWrite event = new Events.ObjectWrite();
+            event.begin();
+            other.locks.copyAtomically(loose.toPath(), other.looseFile(sha1));
+            if (event.shouldCommit()) {
+                commitWrite(event, sha1, loose.length(), "loose");
+            }
+        } else {
+            other.write(sha1, read(sha1));
+        }
+    }
+
+
+    /**
+     * The sha1s of all loose blobs
+     */
+    public List<String> looseObjects() {
+        List<String> result = new ArrayList<>();
+        for (File dir : fanoutDirectories()) {
+            for (String rest : Objects.requireNonNull(Utils.plainFilenamesIn(dir))) {
+                result.add(dir.getName() + rest);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Remove the objects/xx directories left empty once their blobs were packed
+     */
+    public void deleteEmptyDirectories() {
+        for (File dir : fanoutDirectories()) {
+            // only succeeds for empty directories
+            dir.delete();
+        }
+    }
+
+
+    private File[] fanoutDirectories() {
+        File[] fanout = objectsDir.listFiles(file -> file.isDirectory() && file.getName().length() == 2);
+        return fanout == null ? new File[0] : fanout;
+    }
+
+
+    /**
+     * The file a loose blob is or would be stored in
+     */
+    public File looseFile(String sha1) {
+        return Utils.join(objectsDir, sha1.substring(0, 2), sha1.substring(2));
+    }
+
+
+    /**
+     * All packs of this store
+     */
+    public List<Pack> packs() {
+        List<Pack> current = packs;
+        if (current == null) {
+            current = scanPacks();
+        }
+        return current;
+    }
+
+
+    private Pack findPack(String sha1) {
+        List<Pack> current = packs();
+        for (Pack pack : current) {
+            if (pack.contains(sha1)) {
+                return pack;
+            }
+        }
+        // another process may have repacked since the packs were listed
+        List<Pack> rescanned = scanPacks();
+        if (!rescanned.equals(current)) {
+            for (Pack pack : rescanned) {
+                if (pack.contains(sha1)) {
+                    return pack;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    private synchronized List<Pack> scanPacks() {
+        List<Pack> previous = packs == null ? List.of() : packs;
+        List<Pack> result = new ArrayList<>();
+        String[] names = packDir.list((dir, name) -> name.endsWith(INDEX_SUFFIX));
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                String base = name.substring(0, name.length() - INDEX_SUFFIX.length());
+                Pack pack = previous.stream().filter(p -> p.name().equals(base)).findFirst()
+                        .orElseGet(() -> new Pack(packDir, base));
+                result.add(pack);
+            }
+        }
+        packs = List.copyOf(result);
+        return packs;
+    }
+
+
+    /**
+     * Write the blobs IDS of this store into a new pack, returns the pack.
+     * The blobs stay where they are, the caller removes them once the pack is in place.
+     */
+    public Pack writePack(Collection<String> ids) throws IOException {
+        return writePack(this, ids);
+    }
+
+
+    /**
+     * Write the blobs IDS of SOURCE into one pack of this store, streaming each blob so
+     * a transfer of many blobs is a single sequential write. Returns the pack.
+     */
+    public Pack writePack(ObjectStore source, Collection<String> ids) throws IOException {
+        List<String> sorted = new ArrayList<>(new TreeSet<>(ids));
+        String name = "pack-" + Utils.sha1(String.join("\n", sorted));
+        Files.createDirectories(packDir.toPath());
+        File packFile = Utils.join(packDir, name + PACK_SUFFIX);
+        File indexFile = Utils.join(packDir, name + INDEX_SUFFIX);
+        if (indexFile.isFile()) {
+            // exactly these blobs were packed before
+            scanPacks();
+            return packs().stream().filter(p -> p.name().equals(name)).findFirst().orElseThrow();
+        }
+
+        // blobs are written back to back after the header, in sorted order
+        Events.ObjectWrite event = new Events.ObjectWrite();
+        event.begin();
+        long[] offsets = new long[sorted.size()];
+        long[] lengths = new long[sorted.size()];
+        Path tempPack = locks.createTempFile(packFile);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPack)))) {
+                out.writeInt(PACK_MAGIC);
+                out.writeInt(sorted.size());
+                long offset = 8;
+                for (int i = 0; i < sorted.size(); i++) {
+                    try (InputStream in = source.open(sorted.get(i))) {
+                        offsets[i] = offset;
+                        lengths[i] = in.transferTo(out);
+                        offset += lengths[i];
+                    }
+                }
+            }
+            locks.moveAtomically(tempPack, packFile);
+        } finally {
+            Files.deleteIfExists(tempPack);
+        }
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(index);
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            ObjectId.fromHex(sorted.get(i)).write(out);
+            out.writeLong(offsets[i]);
+            out.writeLong(lengths[i]);
+        }
+        locks.writeAtomically(indexFile, index.toByteArray());
+        commitWrite(event, name, packFile.length(), "pack");
+        scanPacks();
+        return packs().stream().filter(p -> p.name().equals(name)).findFirst().orElseThrow();
+    }
+
+
+    /**
+     * Delete PACK, its blobs must be stored elsewhere by now
+     */
+    public void deletePack(Pack pack) throws IOException {
+        // the index goes first so the pack is never used without its data
+        Files.deleteIfExists(pack.indexFile().toPath());
+        Files.deleteIfExists(pack.packFile().toPath());
+        scanPacks();
+    }
+
+
+    /**
+     * Writes a blob to a temporary file while hashing it, the id is only known once it's
+     * complete: {@link #commit()} moves it into place under that id. Closing an uncommitted
+     * writer discards what was written. Not thread-safe.
+     */
+    public class BlobWriter implements AutoCloseable {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final Path temp;
+        private final FileChannel channel;
+        private final MessageDigest digest;
+        private final Events.ObjectWrite event = new Events.ObjectWrite();
+        private final long start;
+        private ByteBuffer buffer;
+        private long size;
+        private String id;
+
+        private BlobWriter(String filename) throws IOException {
+            event.begin();
+            start = Trace.start();
+            temp = locks.createTempFile("blob");
+            channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+            // held across other hashing, so not the thread's shared digest
+            digest = Hashing.newDigest();
+            Hashing.update(digest, filename);
+        }
+
+        /**
+         * Append the remaining bytes of SRC, which are consumed
+         */
+        public void write(ByteBuffer src) throws IOException {
+            digest.update(src.duplicate());
+            size += src.remaining();
+            while (src.hasRemaining()) {
+                channel.write(src);
+            }
+        }
+
+        /**
+         * Append S as UTF-8
+         */
+        public void write(String s) throws IOException {
+            write(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        /**
+         * Append the contents of the blob SHA1 of this store, streamed through a buffer
+         */
+        public void copy(String sha1) throws IOException {
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+            try (ReadableByteChannel in = Channels.newChannel(open(sha1))) {
+                buffer.clear();
+                while (in.read(buffer) >= 0) {
+                    buffer.flip();
+                    write(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+
+        /**
+         * Finish the blob and store it, unless it's already stored, returns its id
+         */
+        public String commit() throws IOException {
+            if (id == null) {
+                channel.close();
+                id = Hashing.finish(digest).name();
+                if (!contains(id)) {
+                    locks.moveAtomically(temp, looseFile(id));
+                }
+                Trace.stop(Trace.Phase.WRITE, start, size);
+                commitWrite(event, id, size, "loose");
+            }
+            return id;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+
+    /**
+     * A pack file and its index
+     */
+    public static class Pack {
+        private final File dir;
+        private final String name;
+        private String[] ids;
+        private long[] offsets;
+        private long[] lengths;
+
+        private Pack(File dir, String name) {
+            this.dir = dir;
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public File packFile() {
+            return Utils.join(dir, name + PACK_SUFFIX);
+        }
+
+        public File indexFile() {
+            return Utils.join(dir, name + INDEX_SUFFIX);
+        }
+
+        /**
+         * The sorted sha1s of the blobs in this pack
+         */
+        public List<String> ids() {
+            load();
+            return Arrays.asList(ids);
+        }
+
+        public boolean contains(String sha1) {
+            load();
+            return Arrays.binarySearch(ids, sha1) >= 0;
+        }
+
+        public long length(String sha1) {
+            load();
+            return lengths[Arrays.binarySearch(ids, sha1)];
+        }
+
+        public byte[] read(String sha1) {
+            load();
+            int i = Arrays.binarySearch(ids, sha1);
+            if (lengths[i] > Integer.MAX_VALUE - 8) {
+                throw Utils.error("%s is too large to read at once.", sha1);
+            }
+            byte[] contents = new byte[(int) lengths[i]];
+            try (RandomAccessFile file = new RandomAccessFile(packFile(), "r")) {
+                file.seek(offsets[i]);
+                file.readFully(contents);
+            } catch (IOException excp) {
+                throw Utils.error("Unable to read %s from %s: %s", sha1, name, excp.getMessage());
+            }
+            return contents;
+        }
+
+        /**
+         * Map the contents of SHA1 straight from the pack file
+         */
+        public ByteBuffer map(String sha1) throws IOException {
+            load();
+            int i = Arrays.binarySearch(ids, sha1);
+            return LineView.mapFile(packFile().toPath(), offsets[i], lengths[i]);
+        }
+
+        /**
+         * Stream the contents of SHA1 straight from the pack file
+         */
+        public InputStream open(String sha1) throws IOException {
+            load();
+            int i = Arrays.binarySearch(ids, sha1);
+            FileChannel channel = FileChannel.open(packFile().toPath(), StandardOpenOption.READ);
+            channel.position(offsets[i]);
+            return new FilterInputStream(Channels.newInputStream(channel)) {
+                private long remaining = lengths[i];
+
+                @Override
+                public int read() throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int b = super.read();
+                    remaining--;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int off, int len) throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int n = super.read(buffer, off, (int) Math.min(len, remaining));
+                    if (n > 0) {
+                        remaining -= n;
+                    }
+                    return n;
+                }
+            };
+        }
+
+        private synchronized void load() {
+            if (ids != null) {
+                return;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile().toPath())))) {
+                if (in.readInt() != INDEX_MAGIC) {
+                    throw Utils.error("Corrupt pack index %s.", indexFile().getName());
+                }
+                int count = in.readInt();
+                String[] loadedIds = new String[count];
+                long[] loadedOffsets = new long[count];
+                long[] loadedLengths = new long[count];
+                for (int i = 0; i < count; i++) {
+                    loadedIds[i] = ObjectId.read(in).name();
+                    loadedOffsets[i] = in.readLong();
+                    loadedLengths[i] = in.readLong();
+                }
+                offsets = loadedOffsets;
+                lengths = loadedLengths;
+                ids = loadedIds;
+            } catch (IOException excp) {
+                throw Utils.error("Unable to read pack index %s: %s", indexFile().getName(), excp.getMessage());
+            }
+        }
+    }
+}
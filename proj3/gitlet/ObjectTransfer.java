@@ -0,0 +1,448 @@
+package gitlet;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Copies the commits and blobs one repository lacks from another.
+ * <p>
+ * Negotiation walks the source history from the wanted commit and stops at every commit
+ * the destination already has, those are its haves. A repository that has a commit has its
+ * whole history, so only the commits before the haves are copied. The blobs of the haves are
+ * known to be at the destination and are skipped without asking, the remaining blobs of the
+ * copied commits are only copied if the destination doesn't store them yet. Blobs go first
+ * and commits parents first, so the destination never has a commit without its blobs and history,
+ * except for a partial clone, which is copied the commits alone and fetches blobs as it needs them.
+ * <p>
+ * More blobs than transfer.unpackLimit in the destination's .gitlet/config are streamed into a
+ * single pack instead of being written loose one by one.
+ *
+ * @author Delete020
+ * @since 10/19/26 5:45 PM
+ */
+public class ObjectTransfer {
+
+    private static final int DEFAULT_UNPACK_LIMIT = 100;
+
+    private final GitletRepository source;
+    private final GitletRepository destination;
+    private final int unpackLimit;
+    private InFlight inFlight = new InFlight();
+    private int depth = 0;
+    private boolean requireComplete = false;
+    private boolean blobless = false;
+
+
+    public ObjectTransfer(GitletRepository source, GitletRepository destination) {
+        this.source = source;
+        this.destination = destination;
+        this.unpackLimit = Config.load(destination.getGitletDir()).getInt("transfer.unpackLimit", DEFAULT_UNPACK_LIMIT);
+    }
+
+
+    /**
+     * Share the blobs being copied with other transfers into the same destination. A blob
+     * another transfer claimed in IN_FLIGHT is skipped, the commits wait until it is stored.
+     */
+    public ObjectTransfer inFlight(InFlight inFlight) {
+        this.inFlight = inFlight;
+        return this;
+    }
+
+
+    /**
+     * Only copy the commits less than DEPTH parents away from the wanted commit, 0 copies all
+     * history. The destination records the oldest copied commits as its shallow boundary.
+     */
+    public ObjectTransfer depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+
+    /**
+     * Fail instead of leaving the destination with a shallow boundary, a push must not cut
+     * the history of the remote
+     */
+    public ObjectTransfer requireComplete() {
+        this.requireComplete = true;
+        return this;
+    }
+
+
+    /**
+     * Copy the commits without their blobs, the destination is a partial clone that
+     * fetches them on demand
+     */
+    public ObjectTransfer blobless() {
+        this.blobless = true;
+        return this;
+    }
+
+
+    /**
+     * Copy the commit WANT with all of its history and blobs the destination lacks
+     */
+    public TransferResult copy(String want) throws IOException {
+        Negotiation negotiation = negotiate(source, want, destination::hasCommit, depth);
+        if (negotiation.commits().isEmpty()) {
+            return TransferResult.EMPTY;
+        }
+        if (requireComplete && !negotiation.shallow().isEmpty()) {
+            throw Utils.error("Cannot push: the remote lacks history this shallow repository doesn't have.");
+        }
+        InFlight.Batch batch = inFlight.batch();
+        Counts counts = transferBlobs(negotiation.blobs(), negotiation.knownBlobs(), batch);
+        batch.await();
+        for (String sha1 : negotiation.commits()) {
+            destination.getLocks().copyAtomically(source.getCommitFile(sha1).toPath(), destination.getCommitFile(sha1));
+        }
+        destination.addShallow(negotiation.shallow());
+        return new TransferResult(negotiation.commits().size(), counts.blobs, counts.bytes, counts.skippedBlobs, counts.skippedBytes);
+    }
+
+
+    /**
+     * What a repository that has the commits HAS lacks of the commit WANT of SOURCE
+     *
+     * @param commits    the missing commits, parents before children
+     * @param blobs      the blobs of the missing commits
+     * @param knownBlobs the blobs of the commits the walk stopped at, the destination has them
+     * @param shallow    the missing commits whose parents are neither missing nor had, because of
+     *                   the depth limit or because SOURCE is shallow itself
+     */
+    public record Negotiation(List<String> commits, Set<String> blobs, Set<String> knownBlobs, Set<String> shallow) {
+    }
+
+
+    /**
+     * Walk the history of WANT in SOURCE, stopping at every commit HAS accepts and,
+     * if DEPTH is positive, at DEPTH commits from WANT
+     */
+    public static Negotiation negotiate(GitletRepository source, String want, Predicate<String> has, int depth) {
+        Set<String> within = depth > 0 ? within(source, want, has, depth) : null;
+        Set<String> haves = new HashSet<>();
+        List<String> missing = new ArrayList<>();
+        new RevWalk(source)
+                .start(want)
+                .sort(RevWalk.Order.TOPO)
+                .boundary(sha1 -> {
+                    if (has.test(sha1)) {
+                        haves.add(sha1);
+                        return true;
+                    }
+                    return within != null && !within.contains(sha1);
+                })
+                .forEach(commit -> missing.add(commit.id()));
+        // parents before children
+        Collections.reverse(missing);
+
+        Set<String> blobs = new LinkedHashSet<>();
+        Set<String> shallow = new HashSet<>();
+        Set<String> sent = new HashSet<>(missing);
+        Set<String> sourceShallow = source.getShallow();
+        for (String sha1 : missing) {
+            Commit commit = source.getCommit(sha1);
+            blobs.addAll(commit.getBlobs().values());
+            for (String parent : new String[]{commit.getParent(), commit.getMergeFrom()}) {
+                if (parent != null && (sourceShallow.contains(sha1) || !sent.contains(parent) && !haves.contains(parent))) {
+                    shallow.add(sha1);
+                }
+            }
+        }
+        Set<String> known = new HashSet<>();
+        for (String have : haves) {
+            known.addAll(source.getCommit(have).getBlobs().values());
+        }
+        return new Negotiation(missing, blobs, known, shallow);
+    }
+
+
+    /**
+     * What a repository that has the commits HAVES, and their history, lacks of the commit WANT of
+     * SOURCE. Haves SOURCE doesn't have are ignored.
+     * <p>
+     * The history of the haves is never listed first: WANT and the haves are walked together,
+     * newest first, and the haves mark everything they reach as uninteresting, also commits the
+     * walk has passed already. Once only uninteresting commits are queued, none of them newer
+     * than the oldest interesting commit, nothing the queue still reaches can be missing and the
+     * walk stops, so the cost follows the commits between the haves and WANT, not the history.
+     */
+    public static Negotiation negotiate(GitletRepository source, String want, Collection<String> haves, int depth) {
+        Set<String> starts = new HashSet<>();
+        for (String have : haves) {
+            if (have != null && source.hasCommit(have)) {
+                starts.add(have);
+            }
+        }
+        Set<String> within = depth > 0 ? within(source, want, starts::contains, depth) : null;
+        return new HaveWalk(source, within).run(want, starts);
+    }
+
+
+    /**
+     * The walk of {@link #negotiate(GitletRepository, String, Collection, int)}
+     */
+    private static class HaveWalk {
+        private final GitletRepository source;
+        private final Set<String> sourceShallow;
+        private final Set<String> within;
+        private final Map<String, Node> nodes = new HashMap<>();
+        private final PriorityQueue<Node> queue = new PriorityQueue<>(
+                Comparator.comparing((Node node) -> node.time).reversed());
+        private int interestingQueued;
+
+        private static class Node {
+            private final String id;
+            private final Instant time;
+            private final List<Node> parents = new ArrayList<>(2);
+            private boolean uninteresting;
+            private boolean queued;
+            private boolean expanded;
+            /** 1 while its parents are ordered, 2 once it is */
+            private int order;
+
+            Node(String id, Instant time) {
+                this.id = id;
+                this.time = time;
+            }
+        }
+
+        HaveWalk(GitletRepository source, Set<String> within) {
+            this.source = source;
+            this.sourceShallow = source.getShallow();
+            this.within = within;
+        }
+
+        Negotiation run(String want, Set<String> haves) {
+            for (String have : haves) {
+                node(have, true);
+            }
+            node(want, false);
+
+            List<Node> candidates = new ArrayList<>();
+            Instant oldestInteresting = null;
+            while (!queue.isEmpty()) {
+                if (interestingQueued == 0
+                        && (oldestInteresting == null || queue.peek().time.isBefore(oldestInteresting))) {
+                    break;
+                }
+                Node node = queue.poll();
+                node.queued = false;
+                if (!node.uninteresting) {
+                    interestingQueued--;
+                    oldestInteresting = node.time;
+                    if (within != null && !within.contains(node.id)) {
+                        // beyond the depth limit, its parents aren't wanted
+                        continue;
+                    }
+                    candidates.add(node);
+                }
+                expand(node);
+            }
+
+            // parents before children, whatever the dates say
+            List<String> missing = new ArrayList<>();
+            Deque<Node> stack = new ArrayDeque<>();
+            for (int i = candidates.size() - 1; i >= 0; i--) {
+                if (!candidates.get(i).uninteresting) {
+                    stack.push(candidates.get(i));
+                }
+                while (!stack.isEmpty()) {
+                    Node node = stack.peek();
+                    if (node.order == 0) {
+                        node.order = 1;
+                        for (Node parent : node.parents) {
+                            if (parent.order == 0 && isMissing(parent)) {
+                                stack.push(parent);
+                            }
+                        }
+                    } else {
+                        stack.pop();
+                        if (node.order == 1) {
+                            node.order = 2;
+                            missing.add(node.id);
+                        }
+                    }
+                }
+            }
+
+            Set<String> blobs = new LinkedHashSet<>();
+            Set<String> known = new HashSet<>();
+            Set<String> shallow = new HashSet<>();
+            Set<Node> boundary = new HashSet<>();
+            for (String sha1 : missing) {
+                Node node = nodes.get(sha1);
+                blobs.addAll(source.getCommit(sha1).getBlobs().values());
+                for (Node parent : node.parents) {
+                    if (parent.uninteresting) {
+                        boundary.add(parent);
+                    } else if (!isMissing(parent)) {
+                        shallow.add(sha1);
+                    }
+                }
+            }
+            for (Node have : boundary) {
+                known.addAll(source.getCommit(have.id).getBlobs().values());
+            }
+            return new Negotiation(missing, blobs, known, shallow);
+        }
+
+        private boolean isMissing(Node node) {
+            return node.expanded && !node.uninteresting;
+        }
+
+        /**
+         * The node of SHA1, queued if it is new
+         */
+        private Node node(String sha1, boolean uninteresting) {
+            Node node = nodes.get(sha1);
+            if (node != null) {
+                if (uninteresting) {
+                    markUninteresting(node);
+                }
+                return node;
+            }
+            node = new Node(sha1, source.getCommit(sha1).getTimestamp().toInstant());
+            node.uninteresting = uninteresting;
+            node.queued = true;
+            if (!uninteresting) {
+                interestingQueued++;
+            }
+            nodes.put(sha1, node);
+            queue.add(node);
+            return node;
+        }
+
+        private void expand(Node node) {
+            node.expanded = true;
+            if (sourceShallow.contains(node.id)) {
+                // the history of a shallow root was never fetched
+                return;
+            }
+            Commit commit = source.getCommit(node.id);
+            for (String parent : new String[]{commit.getParent(), commit.getMergeFrom()}) {
+                if (parent != null) {
+                    node.parents.add(node(parent, node.uninteresting));
+                }
+            }
+        }
+
+        /**
+         * Mark NODE uninteresting and, if the walk passed it already, what it reached since
+         */
+        private void markUninteresting(Node node) {
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.push(node);
+            while (!pending.isEmpty()) {
+                Node next = pending.pop();
+                if (next.uninteresting) {
+                    continue;
+                }
+                next.uninteresting = true;
+                if (next.queued) {
+                    interestingQueued--;
+                }
+                next.parents.forEach(pending::push);
+            }
+        }
+    }
+
+
+    /**
+     * The commits less than DEPTH parents away from WANT, by the shortest path, that HAS doesn't accept
+     */
+    private static Set<String> within(GitletRepository source, String want, Predicate<String> has, int depth) {
+        Set<String> within = new HashSet<>();
+        Set<String> sourceShallow = source.getShallow();
+        List<String> level = List.of(want);
+        for (int distance = 0; distance < depth && !level.isEmpty(); distance++) {
+            List<String> next = new ArrayList<>();
+            for (String sha1 : level) {
+                if (has.test(sha1) || !within.add(sha1) || sourceShallow.contains(sha1)) {
+                    continue;
+                }
+                Commit commit = source.getCommit(sha1);
+                if (commit.getParent() != null) {
+                    next.add(commit.getParent());
+                }
+                if (commit.getMergeFrom() != null) {
+                    next.add(commit.getMergeFrom());
+                }
+            }
+            level = next;
+        }
+        return within;
+    }
+
+
+    private static class Counts {
+        private int blobs;
+        private long bytes;
+        private int skippedBlobs;
+        private long skippedBytes;
+    }
+
+
+    /**
+     * Copy the blobs BLOBS the destination doesn't store yet, without any commit
+     */
+    public TransferResult copyBlobs(Collection<String> blobs) throws IOException {
+        InFlight.Batch batch = inFlight.batch();
+        Counts counts = transferBlobs(blobs, Set.of(), batch);
+        batch.await();
+        return new TransferResult(0, counts.blobs, counts.bytes, counts.skippedBlobs, counts.skippedBytes);
+    }
+
+
+    /**
+     * Copy the BLOBS that are neither KNOWN nor stored yet, claiming them in BATCH, which is
+     * complete once they are stored and failed if they can't be
+     */
+    private Counts transferBlobs(Collection<String> blobs, Set<String> known, InFlight.Batch batch)
+            throws IOException {
+        ObjectStore from = source.getObjects();
+        ObjectStore to = destination.getObjects();
+        Counts counts = new Counts();
+        List<String> copied = new ArrayList<>();
+        try {
+            for (String sha1 : blobs) {
+                long size = from.size(sha1);
+                if (blobless || known.contains(sha1) || to.contains(sha1) || !batch.claim(sha1)) {
+                    counts.skippedBlobs++;
+                    counts.skippedBytes += size;
+                } else {
+                    copied.add(sha1);
+                    counts.blobs++;
+                    counts.bytes += size;
+                }
+            }
+            if (copied.size() > unpackLimit) {
+                to.writePack(from, copied);
+            } else {
+                for (String sha1 : copied) {
+                    from.copyTo(to, sha1);
+                }
+            }
+        } catch (IOException | RuntimeException excp) {
+            batch.fail(excp);
+            throw excp;
+        }
+        batch.complete();
+        return counts;
+    }
+}
@@ -0,0 +1,384 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The framed binary protocol spoken between {@link SocketTransport} and {@link TransportServer}
+ * over TCP or a Unix domain socket.
+ * <p>
+ * Every message is one frame: an int with the length of the rest of the frame, a type byte and
+ * the body. Strings are written with writeUTF, ids as their 20 raw bytes, and a blob as a BLOB
+ * frame with its id and size followed by DATA frames of at most 64 KB, so no frame ever holds a
+ * whole large file. A conversation:
+ * <pre>
+ * client                              server
+ * HELLO path                   -&gt;
+ *                              &lt;-     REFS name id ...        (or ERROR message)
+ * WANT branch depth have ...   -&gt;                              fetch
+ *                              &lt;-     CANDIDATES known shallow (id size) ...
+ * NEED (id) ...                -&gt;
+ *                              &lt;-     BLOB/DATA ... COMMIT ... DONE
+ * NEED (id) ...                -&gt;                              promised blobs of a partial clone
+ *                              &lt;-     BLOB/DATA ... DONE
+ * QUERY (commit) ... (blob) ...-&gt;                              push
+ *                              &lt;-     NEED (commit) ... (blob) ...
+ * PUSH branch expected head    -&gt;
+ * BLOB/DATA ... COMMIT ... DONE-&gt;
+ *                              &lt;-     OK                      (or ERROR message)
+ * </pre>
+ * The server answers requests in the order they arrive, so a client may write several requests
+ * before reading any answer, a fetch sends HELLO and WANT in one round trip.
+ *
+ * @author Delete020
+ * @since 10/19/26 6:20 PM
+ */
+public final class Protocol {
+
+    public static final int DEFAULT_PORT = 9418;
+
+    static final byte HELLO = 1;
+    static final byte REFS = 2;
+    static final byte WANT = 3;
+    static final byte CANDIDATES = 4;
+    static final byte NEED = 5;
+    static final byte BLOB = 6;
+    static final byte DATA = 7;
+    static final byte COMMIT = 8;
+    static final byte DONE = 9;
+    static final byte QUERY = 10;
+    static final byte PUSH = 11;
+    static final byte OK = 12;
+    static final byte ERROR = 13;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    /** Larger than any commit file, a longer frame means the stream is out of step */
+    private static final int MAX_FRAME = 64 * 1024 * 1024;
+
+    private Protocol() {
+    }
+
+
+    /**
+     * Parse a listen address: PORT, HOST:PORT or unix:PATH
+     */
+    public static SocketAddress parseAddress(String address) {
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        }
+        int colon = address.lastIndexOf(':');
+        String host = colon < 0 ? "localhost" : address.substring(0, colon);
+        try {
+            int port = Integer.parseInt(address.substring(colon + 1));
+            return new InetSocketAddress(host, port);
+        } catch (IllegalArgumentException excp) {
+            throw Utils.error("Invalid address %s.", address);
+        }
+    }
+
+
+    /**
+     * Open a connection to ADDRESS
+     */
+    public static Connection connect(SocketAddress address) throws IOException {
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+        try {
+            channel.connect(address);
+        } catch (IOException excp) {
+            channel.close();
+            throw Utils.error("Could not connect to %s.", address);
+        }
+        return new Connection(channel);
+    }
+
+
+    /**
+     * Writes the body of a frame
+     */
+    interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+
+    /**
+     * A frame that was read, its body is fully buffered
+     */
+    record Frame(byte type, DataInputStream body) {
+    }
+
+
+    /**
+     * One end of a connection. Frames are buffered until {@link #flush()}.
+     */
+    public static class Connection implements Closeable {
+        private final SocketChannel channel;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), CHUNK_SIZE));
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), CHUNK_SIZE));
+        }
+
+
+        void write(byte type, Body body) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            body.write(new DataOutputStream(bytes));
+            out.writeInt(bytes.size() + 1);
+            out.writeByte(type);
+            bytes.writeTo(out);
+        }
+
+
+        void flush() throws IOException {
+            out.flush();
+        }
+
+
+        /**
+         * Read the next frame, null at the end of the stream
+         */
+        Frame read() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException excp) {
+                return null;
+            }
+            if (length < 1 || length > MAX_FRAME) {
+                throw Utils.error("Protocol error: bad frame length %d.", length);
+            }
+            byte type = in.readByte();
+            byte[] body = new byte[length - 1];
+            in.readFully(body);
+            return new Frame(type, new DataInputStream(new ByteArrayInputStream(body)));
+        }
+
+
+        /**
+         * Read the next frame, which must be of TYPE. An ERROR frame is thrown as its message.
+         */
+        DataInputStream expect(byte type) throws IOException {
+            Frame frame = read();
+            if (frame == null) {
+                throw Utils.error("Protocol error: connection closed.");
+            }
+            if (frame.type() == ERROR) {
+                throw Utils.error(frame.body().readUTF());
+            }
+            if (frame.type() != type) {
+                throw Utils.error("Protocol error: unexpected frame %d.", frame.type());
+            }
+            return frame.body();
+        }
+
+
+        void writeError(String message) throws IOException {
+            write(ERROR, body -> body.writeUTF(message == null ? "" : message));
+            flush();
+        }
+
+
+        /**
+         * Write the blob SHA1 of OBJECTS as a BLOB frame and its DATA frames, returns its size
+         */
+        long writeBlob(ObjectStore objects, String sha1) throws IOException {
+            long size = objects.size(sha1);
+            write(BLOB, body -> {
+                writeId(body, sha1);
+                body.writeLong(size);
+            });
+            try (InputStream blob = objects.open(sha1)) {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                for (long remaining = size; remaining > 0; ) {
+                    int n = blob.readNBytes(chunk, 0, (int) Math.min(chunk.length, remaining));
+                    if (n == 0) {
+                        throw Utils.error("Object %s changed while it was sent.", sha1);
+                    }
+                    write(DATA, body -> body.write(chunk, 0, n));
+                    remaining -= n;
+                }
+            }
+            return size;
+        }
+
+
+        /**
+         * Read the DATA frames of the BLOB frame whose body is BLOB into OBJECTS, returns its size
+         */
+        long readBlob(DataInputStream blob, ObjectStore objects) throws IOException {
+            String sha1 = readId(blob);
+            long size = blob.readLong();
+            objects.receive(sha1, new InputStream() {
+                private long remaining = size;
+                private DataInputStream chunk = new DataInputStream(InputStream.nullInputStream());
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] buffer, int off, int len) throws IOException {
+                    if (remaining == 0) {
+                        return -1;
+                    }
+                    while (chunk.available() == 0) {
+                        chunk = expect(DATA);
+                    }
+                    int n = chunk.read(buffer, off, (int) Math.min(len, Math.min(chunk.available(), remaining)));
+                    remaining -= n;
+                    return n;
+                }
+            });
+            return size;
+        }
+
+
+        /**
+         * Write the blobs BLOBS then the commits COMMITS of REPOSITORY, parents first, and DONE.
+         * Returns the bytes of the blobs.
+         */
+        long send(GitletRepository repository, Collection<String> blobs, Collection<String> commits) throws IOException {
+            long bytes = 0;
+            for (String sha1 : blobs) {
+                bytes += writeBlob(repository.getObjects(), sha1);
+            }
+            for (String sha1 : commits) {
+                byte[] contents = Utils.readContents(repository.getCommitFile(sha1));
+                write(COMMIT, body -> {
+                    writeId(body, sha1);
+                    body.write(contents);
+                });
+            }
+            write(DONE, body -> {
+            });
+            return bytes;
+        }
+
+
+        /**
+         * Store the blobs and commits sent by {@link #send} into REPOSITORY,
+         * returns the commits, blobs and bytes received
+         */
+        TransferResult receive(GitletRepository repository) throws IOException {
+            return receive(repository, new InFlight().batch());
+        }
+
+
+        /**
+         * Store the blobs and commits sent by {@link #send} into REPOSITORY like
+         * {@link #receive(GitletRepository)}, the blobs for BATCH. The commits are only stored
+         * once the blobs BATCH waits for are.
+         */
+        TransferResult receive(GitletRepository repository, InFlight.Batch batch) throws IOException {
+            try {
+                return receiveObjects(repository, batch);
+            } catch (IOException | RuntimeException excp) {
+                batch.fail(excp);
+                throw excp;
+            }
+        }
+
+
+        private TransferResult receiveObjects(GitletRepository repository, InFlight.Batch batch) throws IOException {
+            int commits = 0;
+            int blobs = 0;
+            long bytes = 0;
+            for (Frame frame = read(); frame == null || frame.type() != DONE; frame = read()) {
+                if (frame == null) {
+                    throw Utils.error("Protocol error: connection closed.");
+                }
+                if (frame.type() == COMMIT && commits == 0) {
+                    // blobs come first, all of them are here
+                    batch.complete();
+                    batch.await();
+                }
+                switch (frame.type()) {
+                    case BLOB -> {
+                        bytes += readBlob(frame.body(), repository.getObjects());
+                        blobs++;
+                    }
+                    case COMMIT -> {
+                        String sha1 = readId(frame.body());
+                        byte[] contents = frame.body().readAllBytes();
+                        // a commit id is the hash of its file, a commit that doesn't match is never stored
+                        if (!sha1.equals(Utils.sha1((Object) contents))) {
+                            throw Utils.error("Protocol error: corrupt commit %s.", sha1);
+                        }
+                        // the bytes come from the peer, they're only stored if they are nothing but a commit
+                        try {
+                            Commit.parse(contents);
+                        } catch (GitletException excp) {
+                            throw Utils.error("Protocol error: corrupt commit %s.", sha1);
+                        }
+                        if (!repository.hasCommit(sha1)) {
+                            repository.getLocks().writeAtomically(repository.getCommitFile(sha1), (Object) contents);
+                        }
+                        commits++;
+                    }
+                    case ERROR -> throw Utils.error(frame.body().readUTF());
+                    default -> throw Utils.error("Protocol error: unexpected frame %d.", frame.type());
+                }
+            }
+            batch.complete();
+            batch.await();
+            return new TransferResult(commits, blobs, bytes, 0, 0);
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+
+    static void writeId(DataOutputStream out, String sha1) throws IOException {
+        ObjectId.fromHex(sha1).write(out);
+    }
+
+
+    static String readId(DataInputStream in) throws IOException {
+        return ObjectId.read(in).name();
+    }
+
+
+    static void writeIds(DataOutputStream out, Collection<String> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (String id : ids) {
+            writeId(out, id);
+        }
+    }
+
+
+    static List<String> readIds(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(readId(in));
+        }
+        return ids;
+    }
+}
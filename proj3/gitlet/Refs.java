@@ -0,0 +1,287 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Branches and remote-tracking refs of a repository.
+ * <p>
+ * A ref is either loose, one file under .gitlet/branches holding the sha1 of its commit
+ * (remote-tracking refs such as R1/master live in subdirectories), or packed into the
+ * sorted .gitlet/packed-refs file, one "SHA1 NAME" line per ref. A loose ref overrides the
+ * packed one of the same name, so updates only ever write loose files and {@link #pack()}
+ * moves them back into packed-refs. Listing refs then costs a single read of packed-refs
+ * plus the few loose refs changed since the last pack.
+ *
+ * @author Delete020
+ * @since 10/19/26 2:05 PM
+ */
+public class Refs {
+
+    private final File branchDir;
+    private final File packedRefs;
+    private final LockManager locks;
+
+    /** Last packed-refs read, reused until the file changes */
+    private Packed packed = new Packed(null, Collections.emptySortedMap());
+
+
+    public Refs(File gitletDir, LockManager locks) {
+        this.branchDir = Utils.join(gitletDir, "branches");
+        this.packedRefs = Utils.join(gitletDir, "packed-refs");
+        this.locks = locks;
+    }
+
+
+    /**
+     * Parsed packed-refs with the attributes of the file it was read from. packed-refs is
+     * always replaced by a rename, so a new version also has a new file key.
+     */
+    private record Packed(List<Object> version, SortedMap<String, String> refs) {
+    }
+
+
+    /**
+     * Returns the sha1 NAME points to, or null if there is no such ref
+     */
+    public String get(String name) {
+        String value = readLoose(looseFile(name).toPath());
+        return value != null ? value : readPacked().get(name);
+    }
+
+
+    public boolean exists(String name) {
+        return get(name) != null;
+    }
+
+
+    /**
+     * All refs, loose and packed, sorted by name.
+     * The loose refs are read first: {@link #pack()} writes packed-refs before it deletes the
+     * loose files, so a loose ref gone by the time it is read is in the packed-refs read after.
+     */
+    public SortedMap<String, String> all() {
+        SortedMap<String, String> refs = new TreeMap<>();
+        readLooseRefs(branchDir, refs);
+        readPacked().forEach(refs::putIfAbsent);
+        return refs;
+    }
+
+
+    /**
+     * Read the loose refs under DIR into REFS, skipping any deleted while it is listed
+     */
+    private void readLooseRefs(File dir, SortedMap<String, String> refs) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                readLooseRefs(file, refs);
+            } else if (!LockManager.isLockFile(file.getName())) {
+                String value = readLoose(file.toPath());
+                if (value != null) {
+                    refs.put(refName(branchDir.toPath(), file.toPath()), value);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * The content of the loose ref FILE, or null if there is none.
+     * Refs are replaced by a rename, so the file is either there whole or not at all.
+     */
+    private static String readLoose(Path file) {
+        try {
+            return Files.readString(file);
+        } catch (NoSuchFileException excp) {
+            return null;
+        } catch (IOException excp) {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            throw Utils.error("Unable to read ref %s: %s", file.getFileName(), excp.getMessage());
+        }
+    }
+
+
+    /**
+     * Names of the local branches, sorted, without remote-tracking refs
+     */
+    public List<String> branches() {
+        List<String> branches = new ArrayList<>();
+        for (String name : all().keySet()) {
+            if (name.indexOf('/') < 0) {
+                branches.add(name);
+            }
+        }
+        return branches;
+    }
+
+
+    /**
+     * Atomically point NAME at VALUE if it currently points at EXPECTED.
+     * A null EXPECTED means the ref must not exist yet, a null VALUE deletes the ref.
+     */
+    public void compareAndSet(String name, String expected, String value) {
+        try (LockManager.RefLock lock = locks.lockRef(looseFile(name))) {
+            if (!Objects.equals(expected, get(name))) {
+                throw Utils.error("Cannot update %s: it was changed by another process.", name);
+            }
+            if (value == null) {
+                delete(name, lock);
+            } else {
+                lock.commit(value);
+            }
+        }
+    }
+
+
+    /**
+     * Atomically point NAME at VALUE whatever it pointed at before
+     */
+    public void set(String name, String value) {
+        try (LockManager.RefLock lock = locks.lockRef(looseFile(name))) {
+            lock.commit(value);
+        }
+    }
+
+
+    /**
+     * Point every ref of REFS at its value, all or none of them: every ref is locked before
+     * any is changed, so a ref that can't be locked fails the update without changing any.
+     * Refs are locked in name order, so two batches can't each wait for a lock the other holds.
+     */
+    public void setAll(Map<String, String> refs) {
+        SortedMap<String, String> sorted = new TreeMap<>(refs);
+        List<LockManager.RefLock> held = new ArrayList<>();
+        try {
+            for (String name : sorted.keySet()) {
+                held.add(locks.lockRef(looseFile(name)));
+            }
+            int i = 0;
+            for (String value : sorted.values()) {
+                held.get(i++).commit(value);
+            }
+        } finally {
+            held.forEach(LockManager.RefLock::close);
+        }
+    }
+
+
+    /**
+     * The packed entry has to go before the loose file, or the ref would briefly
+     * fall back to its old packed value. Holding the packed-refs lock also keeps a
+     * concurrent pack from writing back the ref it read just before the delete.
+     */
+    private void delete(String name, LockManager.RefLock lock) {
+        try (LockManager.RefLock packedLock = locks.lockRef(packedRefs)) {
+            SortedMap<String, String> refs = new TreeMap<>(readPacked());
+            if (refs.remove(name) != null) {
+                packedLock.commit(format(refs));
+            }
+            lock.commit(null);
+        }
+    }
+
+
+    /**
+     * Move every loose ref into packed-refs, returns the number of refs packed
+     */
+    public int pack() {
+        SortedMap<String, String> refs;
+        try (LockManager.RefLock packedLock = locks.lockRef(packedRefs)) {
+            refs = all();
+            packedLock.commit(format(refs));
+        }
+
+        // a loose ref updated since it was read still overrides the packed value, so keep it
+        int packedCount = 0;
+        for (Map.Entry<String, String> ref : refs.entrySet()) {
+            File loose = looseFile(ref.getKey());
+            if (!loose.isFile()) {
+                continue;
+            }
+            try (LockManager.RefLock lock = locks.lockRef(loose)) {
+                if (loose.isFile() && ref.getValue().equals(Utils.readContentsAsString(loose))) {
+                    lock.commit(null);
+                    packedCount++;
+                }
+            }
+            deleteEmptyParents(loose.getParentFile());
+        }
+        return packedCount;
+    }
+
+
+    private void deleteEmptyParents(File dir) {
+        while (!dir.equals(branchDir) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+
+    /**
+     * Parse packed-refs, or return the previous result if the file didn't change
+     */
+    private synchronized SortedMap<String, String> readPacked() {
+        List<Object> version = packedVersion();
+        if (version.equals(packed.version())) {
+            return packed.refs();
+        }
+        SortedMap<String, String> refs = new TreeMap<>();
+        if (!version.isEmpty()) {
+            for (String line : Utils.readContentsAsString(packedRefs).split("\n")) {
+                int space = line.indexOf(' ');
+                if (space > 0) {
+                    refs.put(line.substring(space + 1), line.substring(0, space));
+                }
+            }
+        }
+        packed = new Packed(version, Collections.unmodifiableSortedMap(refs));
+        return packed.refs();
+    }
+
+
+    private List<Object> packedVersion() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(packedRefs.toPath(), BasicFileAttributes.class);
+            return Arrays.asList(attributes.fileKey(), attributes.lastModifiedTime(), attributes.size());
+        } catch (NoSuchFileException excp) {
+            return List.of();
+        } catch (IOException excp) {
+            throw Utils.error("Unable to read packed-refs: %s", excp.getMessage());
+        }
+    }
+
+
+    private static String format(SortedMap<String, String> refs) {
+        StringBuilder content = new StringBuilder();
+        refs.forEach((name, sha1) -> content.append(sha1).append(' ').append(name).append('\n'));
+        return content.toString();
+    }
+
+
+    private File looseFile(String name) {
+        return Utils.join(branchDir, name);
+    }
+
+
+    private static String refName(Path root, Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+}
@@ -2,13 +2,22 @@ package gitlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
-
-import static gitlet.GitletRepository.exitWithError;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author Delete020
@@ -16,23 +25,36 @@ import static gitlet.GitletRepository.exitWithError;
  */
 public class RemoteRepository {
 
-    private final String CWD = System.getProperty("user.dir");
+    private static final LineView EMPTY = LineView.of(ByteBuffer.allocate(0));
+    /** Largest table of the LCS diff, 4 MB, larger files are diffed by LineDiff in linear space */
+    private static final long LCS_CELLS = 1 << 20;
+
+    private final String CWD;
     private final String GITLET_NAME = ".gitlet";
-    private final File GITLET_DIR = Utils.join(CWD, GITLET_NAME);
-    private final File REMOTE_DIR = Utils.join(GITLET_DIR, "remote");
-    private final File BRANCH_DIR = Utils.join(GITLET_DIR, "branches");
-    private final File COMMIT_DIR = Utils.join(GITLET_DIR, "commit");
-    private final File OBJECTS_DIR = Utils.join(GITLET_DIR, "objects");
-    private final File HEAD = Utils.join(GITLET_DIR, "HEAD");
+    private final File GITLET_DIR;
+    private final File REMOTE_DIR;
+    private final GitletRepository gitletRepository;
+
+
+    public RemoteRepository(GitletRepository gitletRepository, String CWD) {
+        this.gitletRepository = gitletRepository;
+        this.CWD = CWD;
+        GITLET_DIR = Utils.join(CWD, GITLET_NAME);
+        REMOTE_DIR = Utils.join(GITLET_DIR, "remote");
+        String promisor = gitletRepository.getPromisor();
+        if (promisor != null) {
+            gitletRepository.getObjects().setPromisor(blobs -> fetchPromised(promisor, blobs));
+        }
+    }
 
 
     /**
-     * add a remote gitlet directory
+     * add a remote gitlet directory, or the gitlet:// URL of a served repository
      */
     public void addRemote(String removeName, String path) throws IOException {
         File removeFile = Utils.join(REMOTE_DIR, removeName);
         if (removeFile.exists()) {
-            exitWithError("A remote with that name already exists.");
+            throw Utils.error("A remote with that name already exists.");
         }
         removeFile.createNewFile();
         Utils.writeContents(removeFile, path);
@@ -45,91 +67,152 @@ public class RemoteRepository {
     public void rmRemote(String removeName) {
         File removeFile = Utils.join(REMOTE_DIR, removeName);
         if (!removeFile.exists()) {
-            exitWithError("A remote with that name does not exist.");
+            throw Utils.error("A remote with that name does not exist.");
         }
         removeFile.delete();
     }
 
-    public void push(String remoteName, String remoteBranchName) throws IOException {
-        File remoteGitlet = getRemoteGitlet(remoteName);
-        if (!remoteGitlet.getName().equals(GITLET_NAME)) {
-            exitWithError("Remote directory not found.");
+    /**
+     * Make the current gitlet a partial clone of REMOTENAME: fetches from it only copy commits,
+     * blobs are fetched from it when a command reads them
+     */
+    public void setPromisor(String remoteName) {
+        if (!Utils.join(REMOTE_DIR, remoteName).exists()) {
+            throw Utils.error("A remote with that name does not exist.");
+        }
+        String promisor = gitletRepository.getPromisor();
+        if (promisor != null && !promisor.equals(remoteName)) {
+            throw Utils.error("Already a partial clone of %s.", promisor);
         }
+        gitletRepository.setPromisor(remoteName);
+        gitletRepository.getObjects().setPromisor(blobs -> fetchPromised(remoteName, blobs));
+    }
+
 
-        // get two gitletRepository
-        GitletRepository currentGitletRepository = new GitletRepository();
-        File remoteWorkingDir = remoteGitlet.getParentFile();
-        GitletRepository remoteGitletRepository = new GitletRepository(remoteWorkingDir.getPath());
-
-        // check the remote branch's head is in the history of the current local head
-        String remoteCommitSha1 = getRemoteCommitSha1(remoteGitlet, remoteBranchName);
-        String headSha1 = currentGitletRepository.getHeadSha1();
-        Commit headCommit = currentGitletRepository.getHead();
-
-        // check current commit history
-        String sha1 = headSha1;
-        while (sha1 != null) {
-            Commit commit = currentGitletRepository.getCommit(sha1);
-            if (commit.getParent() == null) {
-                exitWithError("Please pull down remote changes before pushing.");
+    private void fetchPromised(String remoteName, Collection<String> blobs) throws IOException {
+        try (Transport remote = openTransport(remoteName)) {
+            remote.fetchBlobs(blobs, gitletRepository);
+        }
+    }
+
+
+    /**
+     * Push the current head with its history to the branch of a remote, returns what was copied
+     */
+    public TransferResult push(String remoteName, String remoteBranchName) throws IOException {
+        try (Transport remote = openTransport(remoteName)) {
+            // check the remote branch's head is in the history of the current local head
+            String remoteCommitSha1 = remote.refs().get(remoteBranchName);
+            if (remoteCommitSha1 == null) {
+                throw Utils.error("Remote directory not found.");
             }
-            if (sha1.equals(remoteCommitSha1)) {
-                break;
+            String headSha1 = gitletRepository.getHeadSha1();
+
+            // check current commit history, stops as soon as the remote head is found
+            if (!new RevWalk(gitletRepository).start(headSha1).contains(remoteCommitSha1)) {
+                throw Utils.error("Please pull down remote changes before pushing.");
             }
-            sha1 = commit.getParent();
+
+            // every commit between the remote head and the current head with the blobs the remote lacks,
+            // then the remote branch is fast-forwarded
+            return remote.push(gitletRepository, remoteBranchName, remoteCommitSha1, headSha1);
         }
+    }
 
-        // push current objects to remote objects directory
-        pushFile(GITLET_DIR, remoteGitlet, headCommit);
 
-        // create new commit
-        Commit newCommit = new Commit(headCommit.getMessage(), remoteCommitSha1);
-        newCommit.setBlobs(headCommit.getBlobs());
-        // persistent commit to remote gitlet directory
-        String newCommitSha1 = Utils.sha1(Utils.serialize(newCommit));
-        remoteGitletRepository.persistentCommit(headSha1, newCommit);
-        remoteGitletRepository.reset(headSha1);
+    /**
+     * Brings down commits from the remote Gitlet repository into the local Gitlet repository,
+     * returns what was copied. A positive DEPTH only fetches that many generations of history.
+     */
+    public TransferResult fetch(String remoteName, String remoteBranchName, int depth) throws IOException {
+        try (Transport remote = openTransport(remoteName)) {
+            // only the commits and blobs the current gitlet lacks
+            TransferResult result = remote.fetch(remoteBranchName, gitletRepository, depth, new InFlight(),
+                    remoteName.equals(gitletRepository.getPromisor()));
+
+            // create or move the remote-tracking branch in current gitlet
+            gitletRepository.getRefs().set(remoteName + "/" + remoteBranchName, remote.refs().get(remoteBranchName));
+            return result;
+        }
     }
 
 
     /**
-     * Brings down commits from the remote Gitlet repository into the local Gitlet repository.
+     * Fetch every branch of the remotes REMOTENAMES, of all remotes if it is empty,
+     * DEPTH generations deep if it is positive.
+     * <p>
+     * The branches are fetched concurrently on fetch.threads threads (.gitlet/config), each
+     * over its own transport, and share the blobs in flight so two branches never copy the same
+     * blob, a branch writes its commits only once the blobs it left to others are stored. The
+     * remote-tracking refs are only moved once every branch is complete, all in one ref
+     * transaction, a failed fetch leaves all of them where they were.
      */
-    public void fetch(String remoteName, String remoteBranchName) throws IOException {
-        File remoteGitlet = getRemoteGitlet(remoteName);
-        if (!remoteGitlet.getName().equals(GITLET_NAME) || !remoteGitlet.exists()) {
-            exitWithError("Remote directory not found.");
+    public FetchResult fetchAll(List<String> remoteNames, int depth) throws IOException {
+        long start = System.nanoTime();
+        List<String> remotes = remoteNames.isEmpty()
+                ? Objects.requireNonNull(Utils.plainFilenamesIn(REMOTE_DIR))
+                : remoteNames;
+        List<String[]> targets = new ArrayList<>();
+        for (String remoteName : remotes) {
+            try (Transport remote = openTransport(remoteName)) {
+                for (String branch : remote.refs().keySet()) {
+                    // the remote's own remote-tracking refs aren't fetched
+                    if (!branch.contains("/")) {
+                        targets.add(new String[]{remoteName, branch});
+                    }
+                }
+            }
         }
 
-        File remoteBranch = Utils.join(remoteGitlet, "branches", remoteBranchName);
-        if (!remoteBranch.exists()) {
-            exitWithError("That remote does not have that branch.");
+        int defaultThreads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        int threads = Config.load(GITLET_DIR).getInt("fetch.threads", defaultThreads);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        InFlight inFlight = new InFlight();
+        List<FetchResult.Branch> branches = new ArrayList<>();
+        try {
+            List<Future<FetchResult.Branch>> fetches = new ArrayList<>();
+            for (String[] target : targets) {
+                fetches.add(pool.submit(() -> fetchBranch(target[0], target[1], depth, inFlight)));
+            }
+            for (Future<FetchResult.Branch> fetch : fetches) {
+                branches.add(fetch.get());
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted.");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (excp.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            pool.shutdownNow();
         }
 
-        // create new branch in current gitlet
-        String branchName = remoteName + "/" + remoteBranchName;
-        File currentBranch = Utils.join(BRANCH_DIR, branchName);
-        if (!currentBranch.exists()) {
-            currentBranch.getParentFile().mkdir();
-            currentBranch.createNewFile();
+        // every commit and blob is in place, move the remote-tracking refs
+        Map<String, String> trackingRefs = new HashMap<>();
+        for (FetchResult.Branch branch : branches) {
+            trackingRefs.put(branch.remote() + "/" + branch.branch(), branch.commit());
         }
+        gitletRepository.getRefs().setAll(trackingRefs);
+        return new FetchResult(branches, Duration.ofNanos(System.nanoTime() - start));
+    }
 
-        String remoteCommitSha1 = Utils.readContentsAsString(remoteBranch);
-        Utils.writeContents(currentBranch, remoteCommitSha1);
-
-        // copies all remote commits and blobs to current gitlet
-        while (remoteCommitSha1 != null) {
-            File remoteCommitFile = Utils.join(remoteGitlet, "commit", remoteCommitSha1);
-            File currentCommitFile = Utils.join(COMMIT_DIR, remoteCommitSha1);
-            Commit remoteCommit = getRemoteCommit(remoteGitlet, remoteCommitSha1);
-            remoteCommitSha1 = remoteCommit.getParent();
-            if (currentCommitFile.exists()) {
-                break;
-            }
-            // copy commit
-            Files.copy(remoteCommitFile.toPath(), currentCommitFile.toPath());
-            // copy blobs
-            pushFile(remoteGitlet, GITLET_DIR, remoteCommit);
+
+    private FetchResult.Branch fetchBranch(String remoteName, String branch, int depth, InFlight inFlight) throws IOException {
+        long start = System.nanoTime();
+        try (Transport remote = openTransport(remoteName)) {
+            TransferResult result = remote.fetch(branch, gitletRepository, depth, inFlight,
+                    remoteName.equals(gitletRepository.getPromisor()));
+            return new FetchResult.Branch(remoteName, branch, remote.refs().get(branch), result,
+                    Duration.ofNanos(System.nanoTime() - start));
         }
     }
 
@@ -137,33 +220,36 @@ public class RemoteRepository {
     /**
      * Simple fetch and merge remote branch
      */
-    public void pull(String remoteName, String remoteBranchName) throws IOException {
-        fetch(remoteName, remoteBranchName);
-        GitletRepository gitletRepository = new GitletRepository();
-        gitletRepository.merge(remoteName + "/" + remoteBranchName);
+    public MergeResult pull(String remoteName, String remoteBranchName) throws IOException {
+        fetch(remoteName, remoteBranchName, 0);
+        return gitletRepository.merge(remoteName + "/" + remoteBranchName);
     }
 
 
     /**
      * Compares the contents of a commit with a working directory or compares two commits
      */
-    public void diff(String... branches) {
-        switch (branches.length) {
-            case 0 -> diffHeadWithWorkingDirectory();
-            case 1 -> diffBranchWithWorkingDirectory(branches[0]);
-            case 2 -> diffTwoBranch(branches[0], branches[1]);
+    public List<FilePatch> diff(String... branches) {
+        try (LockManager.Lock ignored = gitletRepository.getLocks().shared(LockManager.INDEX)) {
+            List<FilePatch> patches = new ArrayList<>();
+            switch (branches.length) {
+                case 0 -> diffHeadWithWorkingDirectory(patches);
+                case 1 -> diffBranchWithWorkingDirectory(branches[0], patches);
+                case 2 -> diffTwoBranch(branches[0], branches[1], patches);
+                default -> throw Utils.error("Incorrect operands.");
+            }
+            return patches;
         }
     }
 
     /**
      * Compare the commit at the head of the current branch with the files in the working directory.
      */
-    private void diffHeadWithWorkingDirectory() {
+    private void diffHeadWithWorkingDirectory(List<FilePatch> patches) {
         Map<String, String> blobs = getHead().getBlobs();
+        gitletRepository.getObjects().prefetch(blobs.values());
         for (String filename : blobs.keySet()) {
-            File commitFile = getCurrentObjectFile(blobs.get(filename));
-            File workingFile = getWorkingDirectoryFile(filename);
-            diffs(filename, commitFile, workingFile);
+            diffs(filename, readBlobLines(blobs.get(filename)), readWorkingDirectoryLines(filename), patches);
         }
     }
 
@@ -171,15 +257,14 @@ public class RemoteRepository {
     /**
      * Compare commit in the specified branch header with files in the working directory.
      */
-    private void diffBranchWithWorkingDirectory(String branch) {
+    private void diffBranchWithWorkingDirectory(String branch, List<FilePatch> patches) {
         if (branchNotExist(branch)) {
-            exitWithError("A branch with that name does not exist.");
+            throw Utils.error("A branch with that name does not exist.");
         }
         Map<String, String> blobs = getBranch(branch).getBlobs();
+        gitletRepository.getObjects().prefetch(blobs.values());
         for (String filename : blobs.keySet()) {
-            File commitFile = getCurrentObjectFile(blobs.get(filename));
-            File workingFile = getWorkingDirectoryFile(filename);
-            diffs(filename, commitFile, workingFile);
+            diffs(filename, readBlobLines(blobs.get(filename)), readWorkingDirectoryLines(filename), patches);
         }
     }
 
@@ -187,21 +272,26 @@ public class RemoteRepository {
     /**
      * Compares the files in two specified branch header commits.
      */
-    private void diffTwoBranch(String firstBranch, String secondBranch) {
+    private void diffTwoBranch(String firstBranch, String secondBranch, List<FilePatch> patches) {
         if (branchNotExist(firstBranch) && branchNotExist(secondBranch)) {
-            exitWithError("At least one branch does not exist.");
+            throw Utils.error("At least one branch does not exist.");
         }
         Map<String, String> firstBlobs = getBranch(firstBranch).getBlobs();
         Map<String, String> secondBlobs = getBranch(secondBranch).getBlobs();
         Set<String> blobs = new TreeSet<>(firstBlobs.keySet());
         blobs.addAll(secondBlobs.keySet());
+        // only the versions that differ are read
+        Set<String> changed = new HashSet<>(firstBlobs.values());
+        changed.addAll(secondBlobs.values());
+        Set<String> unchanged = new HashSet<>(firstBlobs.values());
+        unchanged.retainAll(secondBlobs.values());
+        changed.removeAll(unchanged);
+        gitletRepository.getObjects().prefetch(changed);
 
         for (String filename : blobs) {
             String firstSha1 = firstBlobs.get(filename);
             String secondSha1 = secondBlobs.get(filename);
-            File firstFile = firstSha1 == null ? null : getCurrentObjectFile(firstBlobs.get(filename));
-            File secondFile = secondSha1 == null ? null : getCurrentObjectFile(secondBlobs.get(filename));
-            diffs(filename, firstFile, secondFile);
+            diffs(filename, readBlobLines(firstSha1), readBlobLines(secondSha1), patches);
         }
     }
 
@@ -210,83 +300,100 @@ public class RemoteRepository {
      * Check branch is not in the current gitlet
      */
     private boolean branchNotExist(String branch) {
-        return !Utils.join(BRANCH_DIR, branch).exists();
+        return !gitletRepository.getRefs().exists(branch);
     }
 
 
     /**
-     * Use diff to compare content of two file
+     * Use diff to compare the lines of two versions of a file, adds a patch if they differ.
+     * A null version means the file doesn't exist in it. The lines are compared as mapped
+     * bytes and only the lines of hunks are decoded. Small files keep the hunks of the LCS
+     * diff, the quadratic table is only built up to LCS_CELLS.
      */
-    private void diffs(String filename, File firstVersion, File secondVersion) {
-        Diff diff = new Diff();
-        // set two file to Diff
-        diff.setSequences(firstVersion, secondVersion);
+    private void diffs(String filename, LineView firstVersion, LineView secondVersion, List<FilePatch> patches) {
+        LineView first = firstVersion == null ? EMPTY : firstVersion;
+        LineView second = secondVersion == null ? EMPTY : secondVersion;
         // If two files are the same, skip
-        if (diff.sequencesEqual()) {
+        if (sameLines(first, second)) {
             return;
         }
 
-        // output compare information
-        diffHeaderInfo(filename, firstVersion, secondVersion);
         // diff line array
-        int[] diffs = diff.diffs();
+        int[] diffs;
+        if ((long) (first.size() + 1) * (second.size() + 1) <= LCS_CELLS) {
+            Diff diff = new Diff();
+            diff.setSequences(first, second);
+            diffs = diff.diffs();
+        } else {
+            diffs = LineDiff.diffs(first, second);
+        }
+        List<FilePatch.Hunk> hunks = new ArrayList<>();
         for (int i = 0; i < diffs.length; i += 4) {
-            int n1 = diffs[i + 1];
-            int n2 = diffs[i + 3];
-            int l1 = n1 == 0 ? diffs[i] : diffs[i] + 1;
-            int l2 = n2 == 0 ? diffs[i + 2] : diffs[i + 2] + 1;
-
-            // sequence of edits
-            String edits1 = n1 == 1 ? l1 + "" : l1 + "," + n1;
-            String edits2 = n2 == 1 ? l2 + "" : l2 + "," + n2;
-            System.out.println("@@ -" + edits1 + " +" + edits2 + " @@");
-
-            l1 = diffs[i];
-            for (int j = 0; j < n1; j++) {
-                System.out.println("-" + diff.get1(l1 + j));
-            }
+            int l1 = diffs[i];
+            int l2 = diffs[i + 2];
+            hunks.add(new FilePatch.Hunk(l1, l2,
+                    List.copyOf(first.lines(l1, l1 + diffs[i + 1])),
+                    List.copyOf(second.lines(l2, l2 + diffs[i + 3]))));
+        }
+        patches.add(new FilePatch(filename, firstVersion != null, secondVersion != null, hunks));
+    }
+
 
-            l2 = diffs[i + 2];
-            for (int j = 0; j < n2; j++) {
-                System.out.println("+" + diff.get2(l2 + j));
+    private static boolean sameLines(LineView first, LineView second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            if (!first.lineEquals(i, second, i)) {
+                return false;
             }
         }
+        return true;
     }
 
 
     /**
-     * The start of the differences for one of the files in the two versions
+     * Lines of a blob of the current gitlet, null for a missing blob
      */
-    private void diffHeaderInfo(String filename, File firstVersionFile, File secondVersionFile) {
-        String firstFilename = firstVersionFile != null && firstVersionFile.exists() ? "a/" + filename : "/dev/null";
-        String secondFilename = secondVersionFile != null && secondVersionFile.exists() ? "b/" + filename : "/dev/null";
-        System.out.println("diff --git " + firstFilename + " " + secondFilename);
-        System.out.println("--- " + firstFilename);
-        System.out.println("+++ " + secondFilename);
+    private LineView readBlobLines(String sha1) {
+        try {
+            return sha1 == null ? null : gitletRepository.getObjects().mapLines(sha1);
+        } catch (IOException excp) {
+            throw Utils.error("Unable to read %s: %s", sha1, excp.getMessage());
+        }
     }
 
 
     /**
-     * Get file object of remove gitlet directory
+     * Lines of a file in the working directory, null if it doesn't exist
      */
-    private File getRemoteGitlet(String remoteName) {
-        File remote = Utils.join(REMOTE_DIR, remoteName);
-        if (!remote.exists()) {
-            exitWithError("A remote with that name does not exist.");
+    private LineView readWorkingDirectoryLines(String filename) {
+        File file = Utils.join(CWD, filename);
+        try {
+            return file.isFile() ? LineView.map(file.toPath()) : null;
+        } catch (IOException excp) {
+            throw Utils.error("Unable to read %s: %s", filename, excp.getMessage());
         }
-        return Utils.join(Utils.readContentsAsString(remote));
     }
 
 
     /**
-     * Get the sha1 of the specified branch header in the specified gitlet directory
+     * Open the remote named REMOTENAME, a gitlet directory or the URL of a served repository
      */
-    private String getRemoteCommitSha1(File gitlet, String remoteBranchName) {
-        File remoteBranch = Utils.join(gitlet, "branches", remoteBranchName);
-        if (!remoteBranch.exists()) {
-            exitWithError("Remote directory not found.");
+    private Transport openTransport(String remoteName) throws IOException {
+        File remote = Utils.join(REMOTE_DIR, remoteName);
+        if (!remote.exists()) {
+            throw Utils.error("A remote with that name does not exist.");
+        }
+        String location = Utils.readContentsAsString(remote);
+        if (SocketTransport.isUrl(location)) {
+            return SocketTransport.open(location);
         }
-        return Utils.readContentsAsString(remoteBranch);
+        File remoteGitlet = new File(CWD).toPath().resolve(location).toFile();
+        if (!remoteGitlet.getName().equals(GITLET_NAME) || !remoteGitlet.isDirectory()) {
+            throw Utils.error("Remote directory not found.");
+        }
+        return new LocalTransport(new GitletRepository(remoteGitlet.getParent()));
     }
 
 
@@ -306,54 +413,11 @@ public class RemoteRepository {
     }
 
 
-    /**
-     * Push current files of head commit to the objects directory of remote gitlet
-     */
-    private void pushFile(File currentGitlet, File remoteGitlet, Commit head) throws IOException {
-        Map<String, String> blobs = head.getBlobs();
-        for (String filename : blobs.keySet()) {
-            String fileSha1 = blobs.get(filename);
-            File currentFile = getObjectFile(currentGitlet, fileSha1);
-            File remoteFile = getObjectFile(remoteGitlet, fileSha1);
-            Files.copy(currentFile.toPath(), remoteFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-        }
-    }
-
-
-    /**
-     * Get the object file under the current gitlet
-     */
-    private File getCurrentObjectFile(String sha1) {
-        return getObjectFile(GITLET_DIR, sha1);
-    }
-
-
-    /**
-     * Get the object file under the specified gitlet
-     */
-    private File getObjectFile(File gitletDir, String sha1) {
-        File dir = Utils.join(gitletDir, "objects", sha1.substring(0, 2));
-        if (!dir.exists()) {
-            dir.mkdir();
-        }
-        return Utils.join(dir, sha1.substring(2));
-    }
-
-
-    /**
-     * Get the files in the current working directory
-     */
-    private File getWorkingDirectoryFile(String filename) {
-        return Utils.join(CWD, filename);
-    }
-
-
     /**
      * Get head commit object
      */
     private Commit getHead() {
-        String headContext = Utils.readContentsAsString(HEAD);
-        return getBranch(headContext);
+        return getCurrentCommit(gitletRepository.getHeadSha1());
     }
 
 
@@ -361,8 +425,7 @@ public class RemoteRepository {
      * Get the head commit of the specified branch
      */
     private Commit getBranch(String branch) {
-        String commitSha1 = Utils.readContentsAsString(Utils.join(BRANCH_DIR, branch));
-        return getCurrentCommit(commitSha1);
+        return getCurrentCommit(gitletRepository.getBranchSha1(branch));
     }
 
 }
@@ -0,0 +1,291 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Embeddable entry point to a Gitlet repository.
+ * <p>
+ * Operations return their results instead of printing them and report failures
+ * by throwing a {@link GitletException}, so one JVM can keep a repository open and
+ * run many operations against it, reusing the commits it has already loaded.
+ * {@link Main} is a thin command line front end on top of this class.
+ *
+ * @author Delete020
+ * @since 10/19/26 10:20 AM
+ */
+public class Repository {
+
+    private final File workingDirectory;
+    private final GitletRepository gitletRepository;
+    private final RemoteRepository remoteRepository;
+
+    private Repository(File workingDirectory) {
+        this.workingDirectory = workingDirectory;
+        this.gitletRepository = new GitletRepository(workingDirectory.getPath());
+        this.remoteRepository = new RemoteRepository(gitletRepository, workingDirectory.getPath());
+    }
+
+
+    /**
+     * Open the repository whose working directory is PATH
+     */
+    public static Repository open(String path) {
+        Repository repository = new Repository(new File(path).getAbsoluteFile());
+        if (!repository.gitletRepository.exists()) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        return repository;
+    }
+
+
+    /**
+     * Create a new repository in PATH and open it
+     */
+    public static Repository init(String path) throws IOException {
+        Repository repository = new Repository(new File(path).getAbsoluteFile());
+        repository.gitletRepository.init();
+        return repository;
+    }
+
+
+    /**
+     * Create a new repository in DIRECTORY, resolved against CWD, with LOCATION as its remote
+     * origin. Every branch of origin is fetched, DEPTH generations deep if DEPTH is positive,
+     * and master is reset to origin/master. A PARTIAL clone only fetches commits, blobs are
+     * fetched from origin when they are read.
+     */
+    public static Repository clone(String cwd, String location, String directory, int depth, boolean partial)
+            throws IOException {
+        File target = new File(cwd).toPath().resolve(directory).toFile().getAbsoluteFile();
+        String[] existing = target.list();
+        if (existing != null && existing.length > 0) {
+            throw Utils.error("Destination path already exists and is not an empty directory.");
+        }
+        boolean created = !target.isDirectory();
+        if (created && !target.mkdirs()) {
+            throw Utils.error("Could not create %s.", directory);
+        }
+        try {
+            Repository repository = init(target.getPath());
+            // the clone lives elsewhere, so a directory remote is stored absolute
+            repository.addRemote("origin", SocketTransport.isUrl(location)
+                    ? location
+                    : new File(cwd).toPath().resolve(location).normalize().toString());
+            if (partial) {
+                repository.setPromisor("origin");
+            }
+            repository.fetchAll(List.of("origin"), depth);
+            String master = repository.gitletRepository.getRefs().get("origin/master");
+            if (master != null) {
+                repository.reset(master);
+            }
+            return repository;
+        } catch (IOException | RuntimeException excp) {
+            // the directory was empty or didn't exist, so all of it is what the clone made
+            deleteClone(target.toPath(), created);
+            throw excp;
+        }
+    }
+
+
+    /**
+     * Delete everything in the failed clone DIR, and DIR too if the clone CREATED it
+     */
+    private static void deleteClone(Path dir, boolean created) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                if (created || !path.equals(dir)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException | UncheckedIOException excp) {
+            // what can't be deleted is left, the error that failed the clone matters more
+        }
+    }
+
+
+    public File getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    public void add(String filename) throws IOException {
+        gitletRepository.add(filename);
+    }
+
+    /**
+     * Returns the id of the new commit
+     */
+    public String commit(String message) {
+        return gitletRepository.commit(message);
+    }
+
+    public void rm(String filename) {
+        gitletRepository.rm(filename);
+    }
+
+    /**
+     * The history of the head, close the iterator when it isn't read to the end
+     */
+    public CommitIterator log() {
+        return gitletRepository.log();
+    }
+
+    /**
+     * A new history walk over this repository, see {@link RevWalk}
+     */
+    public RevWalk walk() {
+        return new RevWalk(gitletRepository);
+    }
+
+    /**
+     * Every commit, close the iterator when it isn't read to the end
+     */
+    public CommitIterator globalLog() {
+        return gitletRepository.globalLog();
+    }
+
+    /**
+     * Returns the ids of all commits whose message contains MESSAGE
+     */
+    public List<String> find(String message) {
+        return gitletRepository.find(message);
+    }
+
+    public StatusResult status() {
+        return gitletRepository.status();
+    }
+
+    public void checkoutBranch(String branchName) throws IOException {
+        gitletRepository.checkoutBranch(branchName);
+    }
+
+    public void checkoutFile(String filename) throws IOException {
+        gitletRepository.checkoutFile(filename);
+    }
+
+    public void checkoutFile(String commitId, String filename) throws IOException {
+        gitletRepository.checkoutFile(commitId, filename);
+    }
+
+    public void branch(String branchName) throws IOException {
+        gitletRepository.branch(branchName);
+    }
+
+    public void rmBranch(String branchName) {
+        gitletRepository.rmBranch(branchName);
+    }
+
+    /**
+     * Move all loose branches into packed-refs, returns the number of branches packed
+     */
+    public int packRefs() {
+        return gitletRepository.packRefs();
+    }
+
+    /**
+     * Delete unreachable commits and blobs older than GRACEPERIOD and pack the reachable blobs
+     */
+    public GcResult gc(Duration gracePeriod) throws IOException {
+        return gitletRepository.gc(gracePeriod);
+    }
+
+    /**
+     * Check that every object hashes to its id and every reference points to a stored object
+     */
+    public FsckResult fsck() {
+        return gitletRepository.fsck();
+    }
+
+    /**
+     * Start gc or pack-refs in the background if loose objects, packs or loose refs
+     * exceed the thresholds in .gitlet/config, see {@link Maintenance}
+     */
+    public void scheduleMaintenance() throws IOException {
+        new Maintenance(gitletRepository).schedule();
+    }
+
+    /**
+     * Run the maintenance that is needed now, returns null if gc didn't run
+     */
+    public GcResult runMaintenance() throws IOException {
+        return new Maintenance(gitletRepository).run();
+    }
+
+    public void reset(String commitId) throws IOException {
+        gitletRepository.reset(commitId);
+    }
+
+    public MergeResult merge(String branchName) throws IOException {
+        return gitletRepository.merge(branchName);
+    }
+
+    public List<Blame.Line> blame(String filename) {
+        return gitletRepository.blame(filename);
+    }
+
+    public String headId() {
+        return gitletRepository.getHeadSha1();
+    }
+
+    public void addRemote(String remoteName, String path) throws IOException {
+        remoteRepository.addRemote(remoteName, path);
+    }
+
+    public void rmRemote(String remoteName) {
+        remoteRepository.rmRemote(remoteName);
+    }
+
+    public void setPromisor(String remoteName) {
+        remoteRepository.setPromisor(remoteName);
+    }
+
+    public TransferResult push(String remoteName, String remoteBranchName) throws IOException {
+        return remoteRepository.push(remoteName, remoteBranchName);
+    }
+
+    public TransferResult fetch(String remoteName, String remoteBranchName, int depth) throws IOException {
+        return remoteRepository.fetch(remoteName, remoteBranchName, depth);
+    }
+
+    public FetchResult fetchAll(List<String> remoteNames, int depth) throws IOException {
+        return remoteRepository.fetchAll(remoteNames, depth);
+    }
+
+    public MergeResult pull(String remoteName, String remoteBranchName) throws IOException {
+        return remoteRepository.pull(remoteName, remoteBranchName);
+    }
+
+    /**
+     * Write BRANCHES to the bundle FILE, see {@link Bundle#create(File, List, List)}
+     */
+    public BundleResult createBundle(String file, List<String> branches, List<String> basis) throws IOException {
+        return new Bundle(gitletRepository).create(bundleFile(file), branches, basis);
+    }
+
+    public BundleResult verifyBundle(String file) throws IOException {
+        return new Bundle(gitletRepository).verify(bundleFile(file));
+    }
+
+    public BundleResult unbundle(String file) throws IOException {
+        return new Bundle(gitletRepository).unbundle(bundleFile(file));
+    }
+
+    private File bundleFile(String file) {
+        return workingDirectory.toPath().resolve(file).toFile();
+    }
+
+    /**
+     * Diff the head commit, a branch or two branches, see {@link RemoteRepository#diff(String...)}
+     */
+    public List<FilePatch> diff(String... branches) {
+        return remoteRepository.diff(branches);
+    }
+}
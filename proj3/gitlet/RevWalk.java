@@ -0,0 +1,311 @@
+package gitlet;
+
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy walk over the commit history of a repository.
+ * <p>
+ * Commits are loaded only as the iterator advances, each commit is visited once even
+ * when merges make it reachable along several paths, and filters run before the
+ * commit is handed out, so a consumer that stops early never loads the rest of history.
+ * The commits on the shallow boundary of a shallow repository are walked as roots.
+ * <pre>
+ *     new RevWalk(repository).start(head).sort(RevWalk.Order.DATE)
+ *             .filter(RevWalk.Filter.message("fix")).stream().limit(10)
+ * </pre>
+ *
+ * @author Delete020
+ * @since 10/19/26 11:02 AM
+ */
+public class RevWalk implements Iterable<CommitInfo> {
+
+    /**
+     * Order in which commits are returned
+     */
+    public enum Order {
+        /** Breadth-first from the start commits, parents in order (parent, then merged-in parent) */
+        BFS,
+        /** Newest commit first */
+        DATE,
+        /** A commit is always returned before its parents, ties broken by date */
+        TOPO
+    }
+
+
+    /**
+     * Decides whether a commit is returned by the walk. Filters never stop the walk
+     * from going through the parents of a commit they reject.
+     */
+    @FunctionalInterface
+    public interface Filter {
+        boolean include(String id, Commit commit, RevWalk walk);
+
+        /** Commits whose message contains TEXT */
+        static Filter message(String text) {
+            return (id, commit, walk) -> commit.getMessage().contains(text);
+        }
+
+        /** Commits made at or after TIME */
+        static Filter after(ZonedDateTime time) {
+            return (id, commit, walk) -> !commit.getTimestamp().isBefore(time);
+        }
+
+        /** Commits made at or before TIME */
+        static Filter before(ZonedDateTime time) {
+            return (id, commit, walk) -> !commit.getTimestamp().isAfter(time);
+        }
+
+        /** Commits that changed FILENAME relative to their first parent */
+        static Filter path(String filename) {
+            return (id, commit, walk) -> {
+                String blob = commit.getBlobs().get(filename);
+                if (commit.getParent() == null) {
+                    return blob != null;
+                }
+                return !Objects.equals(blob, walk.getCommit(commit.getParent()).getBlobs().get(filename));
+            };
+        }
+
+        default Filter and(Filter other) {
+            return (id, commit, walk) -> include(id, commit, walk) && other.include(id, commit, walk);
+        }
+    }
+
+
+    private final GitletRepository repository;
+    private final Set<String> shallow;
+    private final List<String> starts = new ArrayList<>();
+    private Order order = Order.BFS;
+    private boolean firstParent = false;
+    private Filter filter = null;
+    private Predicate<String> boundary = id -> false;
+
+
+    public RevWalk(GitletRepository repository) {
+        this.repository = repository;
+        this.shallow = repository.getShallow();
+    }
+
+
+    /**
+     * Add commits to start walking from
+     */
+    public RevWalk start(String... ids) {
+        for (String id : ids) {
+            if (id != null) {
+                starts.add(id);
+            }
+        }
+        return this;
+    }
+
+    public RevWalk sort(Order order) {
+        this.order = order;
+        return this;
+    }
+
+    /**
+     * Only follow the first parent of merge commits
+     */
+    public RevWalk firstParent(boolean firstParent) {
+        this.firstParent = firstParent;
+        return this;
+    }
+
+    /**
+     * Only return commits accepted by FILTER, multiple filters are combined
+     */
+    public RevWalk filter(Filter filter) {
+        this.filter = this.filter == null ? filter : this.filter.and(filter);
+        return this;
+    }
+
+    /**
+     * Commits matching BOUNDARY are neither loaded nor returned, and the walk does not
+     * continue past them. The predicate only sees the commit id.
+     */
+    public RevWalk boundary(Predicate<String> boundary) {
+        this.boundary = boundary;
+        return this;
+    }
+
+
+    /**
+     * Get a commit through the repository cache
+     */
+    public Commit getCommit(String id) {
+        return repository.getCommit(id);
+    }
+
+
+    @Override
+    public Iterator<CommitInfo> iterator() {
+        return order == Order.TOPO ? new TopoIterator() : new QueueIterator();
+    }
+
+    public Stream<CommitInfo> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+
+    /**
+     * Returns true if the commit ANCESTOR is reachable from the start commits
+     */
+    public boolean contains(String ancestor) {
+        return stream().anyMatch(commit -> commit.id().equals(ancestor));
+    }
+
+
+    private List<String> parents(String id, Commit commit) {
+        List<String> parents = new ArrayList<>(2);
+        if (shallow.contains(id)) {
+            // grafted root, its parents were never fetched
+            return parents;
+        }
+        if (commit.getParent() != null) {
+            parents.add(commit.getParent());
+        }
+        if (!firstParent && commit.getMergeFrom() != null) {
+            parents.add(commit.getMergeFrom());
+        }
+        return parents;
+    }
+
+    private boolean accept(String id, Commit commit) {
+        return filter == null || filter.include(id, commit, this);
+    }
+
+
+    private record Entry(String id, Commit commit) {
+    }
+
+
+    /**
+     * Walks in BFS or date order. Date order needs the timestamp of a commit as soon as
+     * it's discovered, BFS only loads a commit when it reaches the front of the queue.
+     */
+    private class QueueIterator implements Iterator<CommitInfo> {
+        private final Queue<Entry> queue = order == Order.DATE
+                ? new PriorityQueue<>(Comparator.comparing((Entry e) -> e.commit().getTimestamp()).reversed())
+                : new ArrayDeque<>();
+        private final Set<String> seen = new HashSet<>();
+        private CommitInfo next;
+
+        QueueIterator() {
+            starts.forEach(this::discover);
+        }
+
+        private void discover(String id) {
+            if (seen.add(id) && !boundary.test(id)) {
+                queue.add(new Entry(id, order == Order.DATE ? getCommit(id) : null));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !queue.isEmpty()) {
+                Entry entry = queue.poll();
+                Commit commit = entry.commit() == null ? getCommit(entry.id()) : entry.commit();
+                parents(entry.id(), commit).forEach(this::discover);
+                if (accept(entry.id(), commit)) {
+                    next = CommitInfo.of(entry.id(), commit);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public CommitInfo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CommitInfo result = next;
+            next = null;
+            return result;
+        }
+    }
+
+
+    /**
+     * Topological order needs the child counts of the whole reachable graph,
+     * so the graph is scanned on first use and commits are handed out lazily afterwards
+     */
+    private class TopoIterator implements Iterator<CommitInfo> {
+        private PriorityQueue<Entry> ready;
+        private Map<String, Integer> children;
+        private Map<String, Commit> commits;
+        private CommitInfo next;
+
+        private void scan() {
+            children = new HashMap<>();
+            commits = new HashMap<>();
+            Deque<String> todo = new ArrayDeque<>();
+            for (String id : starts) {
+                if (!boundary.test(id) && !commits.containsKey(id)) {
+                    commits.put(id, getCommit(id));
+                    todo.add(id);
+                }
+            }
+            while (!todo.isEmpty()) {
+                String id = todo.poll();
+                for (String parent : parents(id, commits.get(id))) {
+                    if (boundary.test(parent)) {
+                        continue;
+                    }
+                    children.merge(parent, 1, Integer::sum);
+                    if (!commits.containsKey(parent)) {
+                        commits.put(parent, getCommit(parent));
+                        todo.add(parent);
+                    }
+                }
+            }
+            ready = new PriorityQueue<>(Comparator.comparing((Entry e) -> e.commit().getTimestamp()).reversed());
+            for (Map.Entry<String, Commit> entry : commits.entrySet()) {
+                if (!children.containsKey(entry.getKey())) {
+                    ready.add(new Entry(entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ready == null) {
+                scan();
+            }
+            while (next == null && !ready.isEmpty()) {
+                Entry entry = ready.poll();
+                for (String parent : parents(entry.id(), entry.commit())) {
+                    Integer count = children.get(parent);
+                    if (count == null) {
+                        continue;
+                    }
+                    if (count == 1) {
+                        children.remove(parent);
+                        ready.add(new Entry(parent, commits.get(parent)));
+                    } else {
+                        children.put(parent, count - 1);
+                    }
+                }
+                if (accept(entry.id(), entry.commit())) {
+                    next = CommitInfo.of(entry.id(), entry.commit());
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public CommitInfo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CommitInfo result = next;
+            next = null;
+            return result;
+        }
+    }
+}
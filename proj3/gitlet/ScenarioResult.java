@@ -0,0 +1,27 @@
+package gitlet;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * The run of one tester script by {@link ScenarioRunner}
+ *
+ * @param name      the script's file name without .in
+ * @param error     null if the script passed, else why it stopped, as tester.py reports it:
+ *                  ERROR (...) for a failed check, FAILED (...) for a broken script
+ * @param line      line number of the failure, included lines as OUTER.INNER, null if passed
+ * @param output    output of the failing command, null unless a command failed
+ * @param directory the directory the script ran in, null unless kept
+ * @param latencies latency of each gitlet command the script ran, by command name
+ * @param time      wall time of the whole script
+ * @author Delete020
+ * @since 10/19/26 10:10 PM
+ */
+public record ScenarioResult(String name, String error, String line, String output, File directory,
+                             Map<String, LatencyHistogram> latencies, Duration time) {
+
+    public boolean passed() {
+        return error == null;
+    }
+}
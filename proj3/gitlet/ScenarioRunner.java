@@ -0,0 +1,579 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+
+/**
+ * Runs tester scripts, the .in files of proj3/testing, inside this JVM. tester.py starts a
+ * JVM for every {@code >} line, so a suite mostly measures JVM startup. Here a {@code >} line
+ * calls {@link Main#run(String, PrintStream, PrintStream, String...)} with the command split
+ * like a shell would, standard output and error go to one buffer as in tester.py, and the
+ * latency of every command is recorded under its command name.
+ * <p>
+ * Scripts keep their meaning: # I C T + - > = * E D, ${VAR} and ${N} substitutions,
+ * {@code <<<*} regular expressions and output compared up to an edit distance. T is accepted
+ * and ignored, a command running in this JVM can't be stopped from outside. Each script runs
+ * in its own temporary directory, with --jobs=N up to N scripts at once. The counters of
+ * --trace and GITLET_TRACE are process-wide, so a traced command waits for the commands of
+ * the other scripts to finish and runs alone.
+ * <pre>
+ * java gitlet.ScenarioRunner [--src=DIR] [--jobs=N] [--reps=R] [--tolerance=N] [--keep]
+ *     [--verbose] [--histogram] TEST.in...
+ * </pre>
+ *
+ * @author Delete020
+ * @since 10/19/26 10:10 PM
+ */
+public class ScenarioRunner {
+
+    private static final Pattern SUBSTITUTION = Pattern.compile("\\$\\{(.*?)}");
+    private static final Pattern COMMENT = Pattern.compile("\\s*#");
+    private static final Pattern BLANK = Pattern.compile("\\s+$");
+    private static final Pattern INCLUDE = Pattern.compile("I\\s+(\\S+)");
+    private static final Pattern CHDIR = Pattern.compile("C\\s*(\\S*)");
+    private static final Pattern TIMEOUT = Pattern.compile("T\\s*(\\S+)");
+    private static final Pattern COPY = Pattern.compile("\\+\\s*(\\S+)\\s+(\\S+)");
+    private static final Pattern DELETE = Pattern.compile("-\\s*(\\S+)");
+    private static final Pattern COMMAND = Pattern.compile(">\\s*(.*)");
+    private static final Pattern END = Pattern.compile("<<<(\\*?)");
+    private static final Pattern SAME = Pattern.compile("=\\s*(\\S+)\\s+(\\S+)");
+    private static final Pattern ABSENT = Pattern.compile("\\*\\s*(\\S+)");
+    private static final Pattern EXISTS = Pattern.compile("E\\s*(\\S+)");
+    private static final Pattern DEFINE = Pattern.compile("(?s)D\\s*([a-zA-Z_][a-zA-Z_0-9]*)\\s*\"(.*)\"\\s*$");
+
+    /** Held shared by every command, and exclusively by traced ones */
+    private final ReentrantReadWriteLock traceLock = new ReentrantReadWriteLock();
+    private final File srcDir;
+    private final int tolerance;
+    private final boolean keep;
+
+
+    /**
+     * A runner copying + and = files from SRCDIR, allowing TOLERANCE edits between expected
+     * and actual output, and keeping the script directories if KEEP
+     */
+    public ScenarioRunner(File srcDir, int tolerance, boolean keep) {
+        this.srcDir = srcDir.getAbsoluteFile();
+        this.tolerance = tolerance;
+        this.keep = keep;
+    }
+
+
+    /**
+     * Run SCRIPTS, up to JOBS at a time, returns their results in the order of SCRIPTS
+     */
+    public List<ScenarioResult> runAll(List<File> scripts, int jobs) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, jobs));
+        try {
+            List<Future<ScenarioResult>> futures = new ArrayList<>();
+            for (File script : scripts) {
+                futures.add(executor.submit(() -> run(script)));
+            }
+            List<ScenarioResult> results = new ArrayList<>();
+            for (Future<ScenarioResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted.", excp);
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof IOException) {
+                throw (IOException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Run SCRIPT in a new temporary directory
+     */
+    public ScenarioResult run(File script) throws IOException {
+        String name = script.getName().replaceFirst("\\.[^.]*$", "");
+        long start = System.nanoTime();
+        Path dir = Files.createTempDirectory(name + "_");
+        Scenario scenario = new Scenario(script, dir.toFile());
+        try {
+            scenario.execute();
+            return result(name, null, null, null, dir, scenario, start);
+        } catch (Failure failure) {
+            return result(name, failure.getMessage(), scenario.lines.number, failure.output, dir, scenario, start);
+        } finally {
+            if (!keep) {
+                delete(dir);
+            }
+        }
+    }
+
+
+    private ScenarioResult result(String name, String error, String line, String output, Path dir,
+                                  Scenario scenario, long start) {
+        return new ScenarioResult(name, error, line, output, keep ? dir.toFile() : null, scenario.latencies,
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+
+    /**
+     * A check that didn't hold, ERROR (...), or a script that can't run, FAILED (...)
+     */
+    private static class Failure extends Exception {
+        private final String output;
+
+        Failure(String message, String output) {
+            super(message);
+            this.output = output;
+        }
+
+        static Failure error(String reason, String output) {
+            return new Failure("ERROR (" + reason + ")", output);
+        }
+
+        static Failure failed(String reason) {
+            return new Failure("FAILED (" + reason + ")", null);
+        }
+    }
+
+
+    /**
+     * The lines of a script with its includes spliced in, numbered like tester.py does
+     */
+    private static class Lines {
+        private record Frame(List<String> lines, String prefix, int[] next) {
+        }
+
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private String number;
+
+        /**
+         * The next line with its line terminator, null at the end of the script
+         */
+        String next() {
+            while (!frames.isEmpty()) {
+                Frame frame = frames.peek();
+                if (frame.next[0] < frame.lines.size()) {
+                    int n = frame.next[0]++;
+                    number = frame.prefix + (n + 1);
+                    return frame.lines.get(n) + "\n";
+                }
+                frames.pop();
+            }
+            return null;
+        }
+
+        /**
+         * Read the lines of FILE next, before the rest of the current file
+         */
+        void include(File file) throws Failure {
+            push(file, number == null ? "" : number + ".");
+        }
+
+        private void push(File file, String prefix) throws Failure {
+            try {
+                frames.push(new Frame(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8), prefix, new int[1]));
+            } catch (IOException excp) {
+                throw Failure.failed("file " + file.getPath() + " not found");
+            }
+        }
+    }
+
+
+    /**
+     * One run of a script: its directories, definitions and the groups of the last output
+     */
+    private class Scenario {
+        private final File script;
+        private final File root;
+        private final Lines lines = new Lines();
+        private final Map<String, String> definitions = new HashMap<>();
+        private final Map<String, LatencyHistogram> latencies = new TreeMap<>();
+        private List<String> groups = new ArrayList<>();
+        private File dir;
+
+        Scenario(File script, File root) {
+            this.script = script;
+            this.root = root;
+            this.dir = root;
+        }
+
+        void execute() throws Failure {
+            lines.include(script);
+            String line;
+            while ((line = lines.next()) != null) {
+                if (!COMMENT.matcher(line).lookingAt()) {
+                    line = substitute(line);
+                }
+                Matcher m;
+                if (COMMENT.matcher(line).lookingAt() || BLANK.matcher(line).lookingAt()) {
+                    continue;
+                } else if ((m = INCLUDE.matcher(line)).lookingAt()) {
+                    lines.include(new File(script.getAbsoluteFile().getParentFile(), m.group(1)));
+                } else if ((m = CHDIR.matcher(line)).lookingAt()) {
+                    dir = m.group(1).isEmpty() ? root : new File(root, m.group(1));
+                    dir.mkdirs();
+                } else if (TIMEOUT.matcher(line).lookingAt()) {
+                    continue;
+                } else if ((m = COPY.matcher(line)).lookingAt()) {
+                    copy(m.group(1), m.group(2));
+                } else if ((m = DELETE.matcher(line)).lookingAt()) {
+                    new File(dir, m.group(1)).delete();
+                } else if ((m = COMMAND.matcher(line)).lookingAt()) {
+                    command(line, m.group(1));
+                } else if ((m = SAME.matcher(line)).lookingAt()) {
+                    if (!Objects.equals(contents(new File(dir, m.group(1))), contents(new File(srcDir, m.group(2))))) {
+                        throw Failure.error("file " + m.group(1) + " has incorrect content", null);
+                    }
+                } else if ((m = ABSENT.matcher(line)).lookingAt()) {
+                    if (new File(dir, m.group(1)).exists()) {
+                        throw Failure.error("file " + m.group(1) + " present", null);
+                    }
+                } else if ((m = EXISTS.matcher(line)).lookingAt()) {
+                    if (!new File(dir, m.group(1)).exists()) {
+                        throw Failure.error("file or directory " + m.group(1) + " not present", null);
+                    }
+                } else if ((m = DEFINE.matcher(line)).lookingAt()) {
+                    definitions.put(m.group(1), m.group(2));
+                } else {
+                    throw Failure.failed("bad test line at " + lines.number);
+                }
+            }
+        }
+
+        /**
+         * Run COMMAND, whose expected output follows LINE up to a <<< line
+         */
+        private void command(String line, String command) throws Failure {
+            List<String> expected = new ArrayList<>();
+            boolean regex;
+            while (true) {
+                String next = lines.next();
+                if (next == null) {
+                    throw Failure.failed("unterminated command: " + line);
+                }
+                next = next.stripTrailing();
+                Matcher end = END.matcher(next);
+                if (end.lookingAt()) {
+                    regex = !end.group(1).isEmpty();
+                    break;
+                }
+                expected.add(substitute(next));
+            }
+            String output = run(command);
+            if (!matches(expected, output, regex)) {
+                throw Failure.error("incorrect output", output);
+            }
+        }
+
+        /**
+         * Run a gitlet command in the current directory and return what it printed
+         */
+        private String run(String command) throws Failure {
+            List<String> args = words(command);
+            String name = args.stream().filter(arg -> !arg.startsWith("--trace")).findFirst().orElse("(none)");
+            boolean traced = System.getenv("GITLET_TRACE") != null
+                    || !args.isEmpty() && args.get(0).startsWith("--trace");
+            Lock lock = traced ? traceLock.writeLock() : traceLock.readLock();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+            lock.lock();
+            long start = System.nanoTime();
+            try {
+                Main.run(dir.getPath(), out, out, args.toArray(new String[0]));
+            } catch (Exception | AssertionError excp) {
+                excp.printStackTrace(out);
+                throw Failure.error("gitlet.Main threw " + excp.getClass().getName(), buffer.toString(StandardCharsets.UTF_8));
+            } finally {
+                latencies.computeIfAbsent(name, k -> new LatencyHistogram()).record(System.nanoTime() - start);
+                lock.unlock();
+            }
+            return buffer.toString(StandardCharsets.UTF_8);
+        }
+
+        private boolean matches(List<String> expected, String actual, boolean regex) throws Failure {
+            String want = normalize(String.join("\n", expected));
+            String got = normalize(actual);
+            groups = new ArrayList<>(List.of(got));
+            if (!regex) {
+                return editDistance(want.stripTrailing(), got.stripTrailing()) <= tolerance;
+            }
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(want.stripTrailing() + "\\z");
+            } catch (PatternSyntaxException excp) {
+                throw Failure.failed("bad pattern");
+            }
+            Matcher m = pattern.matcher(got);
+            if (!m.lookingAt()) {
+                m = pattern.matcher(got.stripTrailing());
+                if (!m.lookingAt()) {
+                    return false;
+                }
+            }
+            for (int i = 1; i <= m.groupCount(); i++) {
+                groups.add(m.group(i) == null ? "" : m.group(i));
+            }
+            return true;
+        }
+
+        private void copy(String name, String source) throws Failure {
+            File target = new File(dir, name);
+            try {
+                Files.copy(new File(srcDir, source).toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException excp) {
+                throw Failure.failed("file " + source + " could not be copied to " + name);
+            }
+        }
+
+        /**
+         * Replace ${VAR} and ${N} in LINE, repeatedly, as definitions may contain substitutions
+         */
+        private String substitute(String line) throws Failure {
+            for (int i = 0; i < 10; i++) {
+                Matcher m = SUBSTITUTION.matcher(line);
+                StringBuilder result = new StringBuilder();
+                while (m.find()) {
+                    m.appendReplacement(result, Matcher.quoteReplacement(value(m.group(1))));
+                }
+                m.appendTail(result);
+                if (result.toString().equals(line)) {
+                    break;
+                }
+                line = result.toString();
+            }
+            return line;
+        }
+
+        private String value(String key) throws Failure {
+            if (key.matches("\\d+")) {
+                int group = Integer.parseInt(key);
+                if (group >= groups.size()) {
+                    throw Failure.failed("nonexistent group: {" + key + "}");
+                }
+                return groups.get(group);
+            }
+            if (!definitions.containsKey(key)) {
+                throw Failure.failed("undefined substitution: ${" + key + "}");
+            }
+            return definitions.get(key);
+        }
+    }
+
+
+    /**
+     * Split COMMAND into words like sh does, honoring quotes and backslashes
+     */
+    static List<String> words(String command) throws Failure {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = null;
+        int length = command.length();
+        for (int i = 0; i < length; i++) {
+            char c = command.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+                continue;
+            }
+            if (word == null) {
+                word = new StringBuilder();
+            }
+            if (c == '\'') {
+                int end = command.indexOf('\'', i + 1);
+                if (end < 0) {
+                    throw Failure.failed("unterminated quote: " + command);
+                }
+                word.append(command, i + 1, end);
+                i = end;
+            } else if (c == '"') {
+                for (i++; i < length && command.charAt(i) != '"'; i++) {
+                    if (command.charAt(i) == '\\' && i + 1 < length && "\"\\$`".indexOf(command.charAt(i + 1)) >= 0) {
+                        i++;
+                    }
+                    word.append(command.charAt(i));
+                }
+                if (i >= length) {
+                    throw Failure.failed("unterminated quote: " + command);
+                }
+            } else if (c == '\\' && i + 1 < length) {
+                word.append(command.charAt(++i));
+            } else {
+                word.append(c);
+            }
+        }
+        if (word != null) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+
+    /**
+     * Drop trailing blanks of lines and shrink leading blanks to one space, as tester.py does
+     */
+    private static String normalize(String output) {
+        return output.replaceAll("[ \t]+\n", "\n").replaceAll("(?m)^[ \t]+", " ");
+    }
+
+
+    private static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                current[j] = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1),
+                        previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+
+    private static String contents(File file) {
+        try {
+            return Files.readString(file.toPath(), StandardCharsets.UTF_8).replace("\r", "");
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+
+    public static void main(String... args) throws IOException {
+        File src = new File("src");
+        int jobs = 1;
+        int reps = 1;
+        int tolerance = 3;
+        boolean keep = false;
+        boolean verbose = false;
+        boolean histogram = false;
+        List<File> scripts = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--src=")) {
+                src = new File(arg.substring("--src=".length()));
+            } else if (arg.startsWith("--jobs=")) {
+                jobs = Integer.parseInt(arg.substring("--jobs=".length()));
+            } else if (arg.startsWith("--reps=")) {
+                reps = Integer.parseInt(arg.substring("--reps=".length()));
+            } else if (arg.startsWith("--tolerance=")) {
+                tolerance = Integer.parseInt(arg.substring("--tolerance=".length()));
+            } else if (arg.equals("--keep")) {
+                keep = true;
+            } else if (arg.equals("--verbose")) {
+                verbose = true;
+            } else if (arg.equals("--histogram")) {
+                histogram = true;
+            } else if (arg.startsWith("--")) {
+                System.err.println("Usage: java gitlet.ScenarioRunner [--src=DIR] [--jobs=N] [--reps=R] "
+                        + "[--tolerance=N] [--keep] [--verbose] [--histogram] TEST.in...");
+                System.exit(1);
+            } else if (new File(arg).exists()) {
+                for (int i = 0; i < reps; i++) {
+                    scripts.add(new File(arg));
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        List<ScenarioResult> results = new ScenarioRunner(src, tolerance, keep).runAll(scripts, jobs);
+        long elapsed = System.nanoTime() - start;
+
+        int failed = 0;
+        Map<String, LatencyHistogram> latencies = new TreeMap<>();
+        for (ScenarioResult result : results) {
+            if (result.passed()) {
+                System.out.println(result.name() + ": OK");
+            } else {
+                failed++;
+                System.out.println(result.name() + ": " + result.error() + " on line " + result.line());
+                if (verbose && result.output() != null) {
+                    System.out.print(result.output().replaceAll("(?m)^", "- "));
+                }
+            }
+            if (result.directory() != null) {
+                System.out.println("Testing directory: " + result.directory());
+            }
+            result.latencies().forEach((command, latency) ->
+                    latencies.computeIfAbsent(command, k -> new LatencyHistogram()).add(latency));
+        }
+        System.out.println();
+        System.out.printf("Ran %d tests in %d ms. %s%n", results.size(), elapsed / 1_000_000,
+                failed == 0 ? "All passed." : (results.size() - failed) + " passed.");
+        printLatencies(latencies, histogram);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+
+    private static void printLatencies(Map<String, LatencyHistogram> latencies, boolean histogram) {
+        LatencyHistogram all = new LatencyHistogram();
+        latencies.values().forEach(all::add);
+        System.out.println();
+        System.out.printf("%-14s %8s %10s %8s %8s %8s %8s %8s%n",
+                "command", "calls", "total ms", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        latencies.forEach((command, latency) -> printLatency(command, latency));
+        printLatency("all", all);
+        if (!histogram) {
+            return;
+        }
+        latencies.forEach((command, latency) -> {
+            System.out.println();
+            System.out.println(command + ":");
+            for (int i = 0; i < latency.buckets(); i++) {
+                if (latency.count(i) > 0) {
+                    System.out.printf("  < %10.3f ms %8d%n", LatencyHistogram.upperBound(i) / 1e6, latency.count(i));
+                }
+            }
+        });
+    }
+
+
+    private static void printLatency(String command, LatencyHistogram latency) {
+        System.out.printf("%-14s %8d %10.1f %8.2f %8.2f %8.2f %8.2f %8.2f%n", command, latency.count(),
+                latency.total().toNanos() / 1e6, latency.mean().toNanos() / 1e6,
+                latency.percentile(0.5).toNanos() / 1e6, latency.percentile(0.9).toNanos() / 1e6,
+                latency.percentile(0.99).toNanos() / 1e6, latency.max().toNanos() / 1e6);
+    }
+}
@@ -0,0 +1,186 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnixDomainSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A remote repository served by {@code gitlet serve}, reached through a URL:
+ * <ul>
+ *     <li>gitlet://HOST[:PORT]/PATH - over TCP, the port defaults to {@link Protocol#DEFAULT_PORT}</li>
+ *     <li>gitlet+unix://SOCKET?PATH - over the Unix domain socket SOCKET</li>
+ * </ul>
+ * PATH is the .gitlet directory of the remote, relative to the directory the server runs in.
+ * <p>
+ * Requests are written without waiting for the answers they don't depend on: HELLO is only
+ * sent along with the first request, and every negotiation takes a single round trip however
+ * many objects it covers.
+ *
+ * @author Delete020
+ * @since 10/19/26 6:20 PM
+ */
+public class SocketTransport implements Transport {
+
+    private final Protocol.Connection connection;
+    private SortedMap<String, String> refs;
+
+
+    public SocketTransport(SocketAddress address, String path) throws IOException {
+        this.connection = Protocol.connect(address);
+        // not flushed, it goes out with the first request
+        connection.write(Protocol.HELLO, body -> body.writeUTF(path));
+    }
+
+
+    /**
+     * Returns true if LOCATION is a URL of a served repository rather than a directory
+     */
+    public static boolean isUrl(String location) {
+        return location.startsWith("gitlet://") || location.startsWith("gitlet+unix://");
+    }
+
+
+    /**
+     * Connect to the repository at URL
+     */
+    public static SocketTransport open(String url) throws IOException {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException excp) {
+            throw Utils.error("Remote directory not found.");
+        }
+        if ("gitlet+unix".equals(uri.getScheme()) && uri.getPath() != null && uri.getQuery() != null) {
+            return new SocketTransport(UnixDomainSocketAddress.of(uri.getPath()), uri.getQuery());
+        }
+        if (uri.getHost() == null || uri.getPath() == null || uri.getPath().length() < 2) {
+            throw Utils.error("Remote directory not found.");
+        }
+        int port = uri.getPort() < 0 ? Protocol.DEFAULT_PORT : uri.getPort();
+        return new SocketTransport(new InetSocketAddress(uri.getHost(), port), uri.getPath().substring(1));
+    }
+
+
+    @Override
+    public SortedMap<String, String> refs() throws IOException {
+        if (refs == null) {
+            connection.flush();
+            DataInputStream advertisement = connection.expect(Protocol.REFS);
+            refs = new TreeMap<>();
+            for (int count = advertisement.readInt(); count > 0; count--) {
+                refs.put(advertisement.readUTF(), Protocol.readId(advertisement));
+            }
+        }
+        return refs;
+    }
+
+
+    @Override
+    public TransferResult fetch(String branch, GitletRepository local, int depth, InFlight inFlight, boolean blobless)
+            throws IOException {
+        // the server stops its walk at the commits of our refs and their history
+        Set<String> haves = new LinkedHashSet<>(local.getRefs().all().values());
+        haves.add(local.getHeadSha1());
+        connection.write(Protocol.WANT, body -> {
+            body.writeUTF(branch);
+            body.writeInt(depth);
+            Protocol.writeIds(body, haves);
+        });
+        refs();
+
+        DataInputStream candidates = connection.expect(Protocol.CANDIDATES);
+        int skippedBlobs = candidates.readInt();
+        long skippedBytes = candidates.readLong();
+        List<String> shallow = Protocol.readIds(candidates);
+        List<String> need = new ArrayList<>();
+        InFlight.Batch batch = inFlight.batch();
+        try {
+            for (int count = candidates.readInt(); count > 0; count--) {
+                String sha1 = Protocol.readId(candidates);
+                long size = candidates.readLong();
+                if (blobless || local.getObjects().contains(sha1) || !batch.claim(sha1)) {
+                    skippedBlobs++;
+                    skippedBytes += size;
+                } else {
+                    need.add(sha1);
+                }
+            }
+            connection.write(Protocol.NEED, body -> Protocol.writeIds(body, need));
+            connection.flush();
+        } catch (IOException | RuntimeException excp) {
+            batch.fail(excp);
+            throw excp;
+        }
+        TransferResult received = connection.receive(local, batch);
+        local.addShallow(shallow);
+        return new TransferResult(received.commits(), received.blobs(), received.bytes(), skippedBlobs, skippedBytes);
+    }
+
+
+    @Override
+    public TransferResult fetchBlobs(Collection<String> blobs, GitletRepository local) throws IOException {
+        // a NEED without a WANT before it is answered with the blobs alone
+        refs();
+        connection.write(Protocol.NEED, body -> Protocol.writeIds(body, blobs));
+        connection.flush();
+        return connection.receive(local);
+    }
+
+
+    @Override
+    public TransferResult push(GitletRepository local, String branch, String expected, String head) throws IOException {
+        // the remote has EXPECTED and its history, ask about the rest in one go
+        List<String> remoteHeads = expected == null ? List.of() : List.of(expected);
+        ObjectTransfer.Negotiation negotiation = ObjectTransfer.negotiate(local, head, remoteHeads, 0);
+        Set<String> candidates = new LinkedHashSet<>(negotiation.blobs());
+        candidates.removeAll(negotiation.knownBlobs());
+        connection.write(Protocol.QUERY, body -> {
+            Protocol.writeIds(body, negotiation.commits());
+            Protocol.writeIds(body, candidates);
+        });
+        connection.flush();
+        DataInputStream need = connection.expect(Protocol.NEED);
+        List<String> commits = Protocol.readIds(need);
+        List<String> blobs = Protocol.readIds(need);
+        if (commits.stream().anyMatch(negotiation.shallow()::contains)) {
+            throw Utils.error("Cannot push: the remote lacks history this shallow repository doesn't have.");
+        }
+
+        connection.write(Protocol.PUSH, body -> {
+            body.writeUTF(branch);
+            Protocol.writeId(body, expected);
+            Protocol.writeId(body, head);
+        });
+        long bytes = connection.send(local, blobs, commits);
+        connection.flush();
+        connection.expect(Protocol.OK);
+
+        int skippedBlobs = 0;
+        long skippedBytes = 0;
+        Set<String> sent = Set.copyOf(blobs);
+        for (String sha1 : negotiation.blobs()) {
+            if (!sent.contains(sha1)) {
+                skippedBlobs++;
+                skippedBytes += local.getObjects().size(sha1);
+            }
+        }
+        return new TransferResult(commits.size(), blobs.size(), bytes, skippedBlobs, skippedBytes);
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+}
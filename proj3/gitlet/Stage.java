@@ -1,40 +1,46 @@
 package gitlet;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.nio.file.Files;
 import java.util.Map;
-import java.util.TreeMap;
-
-import static gitlet.GitletRepository.exitWithError;
 
 /**
  * @author Delete020
  * @since 5/30/22 9:14 PM
  */
 public class Stage implements Serializable {
+    /** The id the class had before it was pinned, so an existing stage still reads */
+    private static final long serialVersionUID = -6873836950271163285L;
+
+    /** Both always BlobMaps, see {@link Commit} */
     private Map<String, String> additionMap;
     private Map<String, String> removalMap;
 
     public Stage() {
-        additionMap = new TreeMap<>();
-        removalMap = new TreeMap<>();
+        additionMap = new BlobMap();
+        removalMap = new BlobMap();
     }
 
-    public Map<String, String> getAdditionMap() {
-        return additionMap;
+    public BlobMap getAdditionMap() {
+        return (BlobMap) additionMap;
     }
 
     public void setAdditionMap(Map<String, String> additionMap) {
-        this.additionMap = additionMap;
+        this.additionMap = additionMap instanceof BlobMap ? additionMap : BlobMap.copyOf(additionMap);
     }
 
-    public Map<String, String> getRemovalMap() {
-        return removalMap;
+    public BlobMap getRemovalMap() {
+        return (BlobMap) removalMap;
     }
 
     public void setRemovalMap(Map<String, String> removalMap) {
-        this.removalMap = removalMap;
+        this.removalMap = removalMap instanceof BlobMap ? removalMap : BlobMap.copyOf(removalMap);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        setAdditionMap(additionMap);
+        setRemovalMap(removalMap);
     }
 }
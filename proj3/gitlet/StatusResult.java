@@ -0,0 +1,34 @@
+package gitlet;
+
+import java.util.List;
+
+/**
+ * Result of the status command
+ *
+ * @param branches     all branch names in order
+ * @param currentBranch the branch HEAD points to, or null when HEAD is detached
+ * @param staged       files staged for addition
+ * @param removed      files staged for removal
+ * @param modified     tracked files changed in the working directory but not staged
+ * @param untracked    files in the working directory that are neither staged nor tracked
+ * @author Delete020
+ * @since 10/19/26 10:05 AM
+ */
+public record StatusResult(List<String> branches, String currentBranch, List<String> staged, List<String> removed,
+                           List<Modification> modified, List<String> untracked) {
+
+    /**
+     * A tracked file that is modified or deleted in the working directory
+     */
+    public record Modification(String filename, boolean deleted) implements Comparable<Modification> {
+        @Override
+        public int compareTo(Modification o) {
+            return filename.compareTo(o.filename);
+        }
+
+        @Override
+        public String toString() {
+            return filename + (deleted ? " (deleted)" : " (modified)");
+        }
+    }
+}
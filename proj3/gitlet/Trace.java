@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers of the primitives a command spends its time in: hashing, deserializing
+ * commits, writing and copying files, listing directories and diffing. Enabled for one command
+ * by {@code --trace} or the GITLET_TRACE environment variable, see {@link Main}.
+ * <p>
+ * A traced call site brackets its work:
+ * <pre>
+ * long start = Trace.start();
+ * ...
+ * Trace.stop(Trace.Phase.HASH, start, bytes);
+ * </pre>
+ * While tracing is off {@link #start()} doesn't read the clock and {@link #stop} returns at
+ * once, a field read and a compare per call. The counters are {@link LongAdder}s, so the
+ * threads of fetch and fsck don't contend on them. Nested phases are counted in both, a
+ * write that hashes its contents shows up under write and hash.
+ *
+ * @author Delete020
+ * @since 10/19/26 8:10 PM
+ */
+public final class Trace {
+
+    public enum Phase {
+        HASH("hash", "bytes"),
+        DESERIALIZE("deserialize", "bytes"),
+        WRITE("write", "bytes"),
+        COPY("copy", "bytes"),
+        LIST("list", "entries"),
+        DIFF("diff", "lines");
+
+        private final String label;
+        private final String unit;
+
+        Phase(String label, String unit) {
+            this.label = label;
+            this.unit = unit;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        /** What the amount of this phase counts */
+        public String unit() {
+            return unit;
+        }
+    }
+
+    /** Returned by {@link #start()} while tracing is off */
+    private static final long OFF = Long.MIN_VALUE;
+
+    private static boolean enabled = false;
+    private static long begin;
+    private static final LongAdder[] calls = adders();
+    private static final LongAdder[] amounts = adders();
+    private static final LongAdder[] nanos = adders();
+
+    private Trace() {
+    }
+
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[Phase.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+
+    /**
+     * Clear the counters and start tracing, before the command starts any thread
+     */
+    static void enable() {
+        for (Phase phase : Phase.values()) {
+            calls[phase.ordinal()].reset();
+            amounts[phase.ordinal()].reset();
+            nanos[phase.ordinal()].reset();
+        }
+        begin = System.nanoTime();
+        enabled = true;
+    }
+
+
+    /**
+     * Stop tracing and return what was counted since {@link #enable()}
+     */
+    static TraceResult disable() {
+        enabled = false;
+        List<TraceResult.Entry> entries = new ArrayList<>();
+        for (Phase phase : Phase.values()) {
+            int i = phase.ordinal();
+            entries.add(new TraceResult.Entry(phase, calls[i].sum(), amounts[i].sum(), Duration.ofNanos(nanos[i].sum())));
+        }
+        return new TraceResult(entries, Duration.ofNanos(System.nanoTime() - begin));
+    }
+
+
+    /**
+     * The start of a traced call, to pass to {@link #stop}
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : OFF;
+    }
+
+
+    /**
+     * Count a call of PHASE that began at START and handled AMOUNT of the phase's unit
+     */
+    public static void stop(Phase phase, long start, long amount) {
+        if (start == OFF) {
+            return;
+        }
+        int i = phase.ordinal();
+        nanos[i].add(System.nanoTime() - start);
+        calls[i].increment();
+        amounts[i].add(amount);
+    }
+
+
+    /**
+     * Count a call of PHASE that began at START and handled the contents of FILE,
+     * whose size is only looked up while tracing
+     */
+    public static void stop(Phase phase, long start, File file) {
+        if (start != OFF) {
+            stop(phase, start, file.length());
+        }
+    }
+
+
+    public static void stop(Phase phase, long start, Path file) {
+        if (start != OFF) {
+            stop(phase, start, file.toFile().length());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package gitlet;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * What a traced command spent its time in
+ *
+ * @param phases every phase in {@link Trace.Phase} order, including those never called
+ * @param time   wall time of the whole command
+ * @author Delete020
+ * @since 10/19/26 8:10 PM
+ */
+public record TraceResult(List<Entry> phases, Duration time) {
+
+    /**
+     * The calls of one phase
+     *
+     * @param phase  the phase
+     * @param calls  number of calls
+     * @param amount bytes, entries or lines handled, see {@link Trace.Phase#unit()}
+     * @param time   time spent in the calls, summed over threads
+     */
+    public record Entry(Trace.Phase phase, long calls, long amount, Duration time) {
+    }
+}
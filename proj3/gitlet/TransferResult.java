@@ -0,0 +1,17 @@
+package gitlet;
+
+/**
+ * What push or fetch moved between two repositories, and what negotiation let it skip
+ *
+ * @param commits      commits copied
+ * @param blobs        blobs copied
+ * @param bytes        bytes of the blobs copied
+ * @param skippedBlobs blobs of the copied commits the destination already had
+ * @param skippedBytes bytes of the skipped blobs
+ * @author Delete020
+ * @since 10/19/26 5:45 PM
+ */
+public record TransferResult(int commits, int blobs, long bytes, int skippedBlobs, long skippedBytes) {
+
+    public static final TransferResult EMPTY = new TransferResult(0, 0, 0, 0, 0);
+}
@@ -0,0 +1,52 @@
+package gitlet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.SortedMap;
+
+/**
+ * A connection to a remote repository, either a directory on this machine
+ * ({@link LocalTransport}) or a repository served by {@code gitlet serve} ({@link SocketTransport}).
+ *
+ * @author Delete020
+ * @since 10/19/26 6:20 PM
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * The branches and remote-tracking refs of the remote, as they were when the transport was opened
+     */
+    SortedMap<String, String> refs() throws IOException;
+
+
+    /**
+     * Copy the head of BRANCH of the remote into LOCAL, with the history and blobs LOCAL lacks
+     */
+    default TransferResult fetch(String branch, GitletRepository local) throws IOException {
+        return fetch(branch, local, 0, new InFlight(), false);
+    }
+
+
+    /**
+     * Fetch BRANCH into LOCAL, only the commits less than DEPTH parents away from its head
+     * unless DEPTH is 0. Blobs another concurrent fetch into LOCAL already claimed in
+     * IN_FLIGHT are skipped, its commits wait for them, and all blobs if BLOBLESS, for a
+     * partial clone.
+     */
+    TransferResult fetch(String branch, GitletRepository local, int depth, InFlight inFlight, boolean blobless)
+            throws IOException;
+
+
+    /**
+     * Copy the blobs BLOBS of the remote into LOCAL, for a partial clone reading blobs it was promised
+     */
+    TransferResult fetchBlobs(Collection<String> blobs, GitletRepository local) throws IOException;
+
+
+    /**
+     * Copy the commit HEAD of LOCAL into the remote, with the history and blobs the remote lacks,
+     * then fast-forward BRANCH of the remote from EXPECTED to HEAD
+     */
+    TransferResult push(GitletRepository local, String branch, String expected, String head) throws IOException;
+}
@@ -0,0 +1,244 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@code gitlet serve}: serves the repositories under a directory over TCP or a Unix domain
+ * socket, speaking {@link Protocol}. Every connection is handled on its own thread, and each
+ * request only takes the locks the same local command would.
+ *
+ * @author Delete020
+ * @since 10/19/26 6:20 PM
+ */
+public class TransportServer {
+
+    private static final String GITLET_NAME = ".gitlet";
+
+    private final File baseDir;
+
+
+    public TransportServer(String baseDir) {
+        this.baseDir = new File(baseDir);
+    }
+
+
+    /**
+     * Accept connections on ADDRESS until the process is killed. Prints the address
+     * actually bound to OUT, so port 0 picks a free port.
+     */
+    public void serve(String address, PrintStream out) throws IOException {
+        SocketAddress socketAddress = Protocol.parseAddress(address);
+        ServerSocketChannel server = socketAddress instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        ExecutorService pool = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "gitlet-serve");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (server) {
+            try {
+                server.bind(socketAddress);
+            } catch (IOException excp) {
+                throw Utils.error("Could not listen on %s.", address);
+            }
+            if (socketAddress instanceof UnixDomainSocketAddress unix) {
+                unix.getPath().toFile().deleteOnExit();
+            }
+            out.println("Listening on " + describe(server.getLocalAddress()));
+            out.flush();
+            while (true) {
+                SocketChannel channel = server.accept();
+                pool.execute(() -> handle(channel));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+
+    private static String describe(SocketAddress address) {
+        if (address instanceof InetSocketAddress inet) {
+            return inet.getHostString() + ":" + inet.getPort();
+        }
+        return "unix:" + ((UnixDomainSocketAddress) address).getPath();
+    }
+
+
+    /**
+     * The repository a connection said HELLO to, and the refs it was shown
+     */
+    private static class Session {
+        private final GitletRepository repository;
+        private final SortedMap<String, String> refs;
+        /** Commits negotiated by WANT, sent on NEED */
+        private List<String> commits = List.of();
+
+        Session(GitletRepository repository) {
+            this.repository = repository;
+            this.refs = repository.getRefs().all();
+        }
+    }
+
+
+    /**
+     * Answer the requests of one connection in order until the client hangs up.
+     * An error is sent to the client and ends the connection.
+     */
+    private void handle(SocketChannel channel) {
+        try (Protocol.Connection connection = new Protocol.Connection(channel)) {
+            Session session = null;
+            try {
+                for (Protocol.Frame frame = connection.read(); frame != null; frame = connection.read()) {
+                    if (session == null && frame.type() != Protocol.HELLO) {
+                        throw Utils.error("Protocol error: HELLO expected.");
+                    }
+                    switch (frame.type()) {
+                        case Protocol.HELLO -> session = hello(connection, frame.body());
+                        case Protocol.WANT -> want(connection, session, frame.body());
+                        case Protocol.NEED -> need(connection, session, frame.body());
+                        case Protocol.QUERY -> query(connection, session, frame.body());
+                        case Protocol.PUSH -> push(connection, session, frame.body());
+                        default -> throw Utils.error("Protocol error: unexpected frame %d.", frame.type());
+                    }
+                    connection.flush();
+                }
+            } catch (GitletException excp) {
+                connection.writeError(excp.getMessage());
+            }
+        } catch (IOException excp) {
+            // the client went away, nothing to answer
+        }
+    }
+
+
+    /**
+     * HELLO path: open the repository and advertise its refs
+     */
+    private Session hello(Protocol.Connection connection, DataInputStream body) throws IOException {
+        String path = body.readUTF();
+        File base = baseDir.getCanonicalFile();
+        File gitlet = new File(base, path).getCanonicalFile();
+        // only repositories under the served directory
+        if (!gitlet.toPath().startsWith(base.toPath()) || !gitlet.getName().equals(GITLET_NAME)
+                || !gitlet.isDirectory()) {
+            throw Utils.error("Remote directory not found.");
+        }
+        Session session = new Session(new GitletRepository(gitlet.getParent()));
+        connection.write(Protocol.REFS, out -> {
+            out.writeInt(session.refs.size());
+            for (Map.Entry<String, String> ref : session.refs.entrySet()) {
+                out.writeUTF(ref.getKey());
+                Protocol.writeId(out, ref.getValue());
+            }
+        });
+        return session;
+    }
+
+
+    /**
+     * WANT branch depth haves: negotiate, answer with the shallow boundary and the blobs
+     * the client may lack with their sizes
+     */
+    private void want(Protocol.Connection connection, Session session, DataInputStream body) throws IOException {
+        String branch = body.readUTF();
+        int depth = body.readInt();
+        List<String> haves = Protocol.readIds(body);
+        // resolved against the advertised refs, so the client sees the same commit
+        String want = session.refs.get(branch);
+        if (want == null) {
+            throw Utils.error("That remote does not have that branch.");
+        }
+
+        GitletRepository repository = session.repository;
+        ObjectTransfer.Negotiation negotiation = ObjectTransfer.negotiate(repository, want, haves, depth);
+        session.commits = negotiation.commits();
+
+        ObjectStore objects = repository.getObjects();
+        List<String> candidates = new ArrayList<>();
+        int knownBlobs = 0;
+        long knownBytes = 0;
+        for (String sha1 : negotiation.blobs()) {
+            if (negotiation.knownBlobs().contains(sha1)) {
+                knownBlobs++;
+                knownBytes += objects.size(sha1);
+            } else {
+                candidates.add(sha1);
+            }
+        }
+        int skippedBlobs = knownBlobs;
+        long skippedBytes = knownBytes;
+        connection.write(Protocol.CANDIDATES, out -> {
+            out.writeInt(skippedBlobs);
+            out.writeLong(skippedBytes);
+            Protocol.writeIds(out, negotiation.shallow());
+            out.writeInt(candidates.size());
+            for (String sha1 : candidates) {
+                Protocol.writeId(out, sha1);
+                out.writeLong(objects.size(sha1));
+            }
+        });
+    }
+
+
+    /**
+     * NEED blobs: send them, then the commits negotiated by WANT
+     */
+    private void need(Protocol.Connection connection, Session session, DataInputStream body) throws IOException {
+        List<String> blobs = Protocol.readIds(body);
+        connection.send(session.repository, blobs, session.commits);
+        session.commits = List.of();
+    }
+
+
+    /**
+     * QUERY commits blobs: answer with those this repository lacks
+     */
+    private void query(Protocol.Connection connection, Session session, DataInputStream body) throws IOException {
+        List<String> commits = Protocol.readIds(body);
+        List<String> blobs = Protocol.readIds(body);
+        GitletRepository repository = session.repository;
+        commits.removeIf(repository::hasCommit);
+        blobs.removeIf(repository.getObjects()::contains);
+        connection.write(Protocol.NEED, out -> {
+            Protocol.writeIds(out, commits);
+            Protocol.writeIds(out, blobs);
+        });
+    }
+
+
+    /**
+     * PUSH branch expected head, then the objects: store them and fast-forward the branch
+     */
+    private void push(Protocol.Connection connection, Session session, DataInputStream body) throws IOException {
+        String branch = body.readUTF();
+        String expected = Protocol.readId(body);
+        String head = Protocol.readId(body);
+        GitletRepository repository = session.repository;
+        connection.receive(repository);
+        if (!repository.hasCommit(head)) {
+            throw Utils.error("Protocol error: missing commit %s.", head);
+        }
+        // the remote branch only moves if nobody pushed to it in the meantime
+        if (!head.equals(expected)) {
+            repository.fastForward(branch, expected, head);
+        }
+        connection.write(Protocol.OK, out -> {
+        });
+    }
+}
@@ -4,6 +4,35 @@ import ucb.junit.textui;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Formatter;
+import java.util.HexFormat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
 /** The suite of all JUnit tests for the gitlet package.
  *  @author
  */
@@ -20,6 +49,444 @@ public class UnitTest {
     public void placeholderTest() {
     }
 
+    /** tryExclusive by the thread that holds a lock through exclusive()
+     *  counts it again, and the lock stays held until the outer release. */
+    @Test
+    public void tryExclusiveIsReentrant() throws Exception {
+        File dir = Files.createTempDirectory("gitlet-locks").toFile();
+        LockManager locks = new LockManager(dir);
+        try (LockManager.Lock outer = locks.exclusive("index")) {
+            try (LockManager.Lock inner = locks.tryExclusive("index")) {
+                assertNotNull(inner);
+            }
+            assertFalse(tryFromOtherThread(locks));
+        }
+        assertTrue(tryFromOtherThread(locks));
+    }
+
+    /** log and global-log keep the index shared-locked while their
+     *  commits are read, until exhausted or closed. */
+    @Test
+    public void logHoldsSharedLockWhileIterating() throws Exception {
+        File dir = Files.createTempDirectory("gitlet-log").toFile();
+        gitlet(dir, "init");
+        commitFile(dir, "a.txt", "a", "one");
+        GitletRepository repository = new GitletRepository(dir.getPath());
+        LockManager locks = repository.getLocks();
+
+        CommitIterator log = repository.log();
+        log.next();
+        assertFalse(tryFromOtherThread(locks));
+        while (log.hasNext()) {
+            log.next();
+        }
+        assertTrue(tryFromOtherThread(locks));
+
+        try (CommitIterator globalLog = repository.globalLog()) {
+            globalLog.next();
+            assertFalse(tryFromOtherThread(locks));
+        }
+        assertTrue(tryFromOtherThread(locks));
+    }
+
+    /** Auto gc with only loose objects over gc.auto packs just the
+     *  loose blobs, and young unreachable objects it can't remove don't
+     *  start it again. */
+    @Test
+    public void autoGcPacksLooseOnlyAndDoesNotRetrigger() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-gc").toFile();
+        Repository repository = Repository.init(dir.getPath());
+        Utils.writeContents(new File(dir, "a.txt"), "a\n");
+        repository.add("a.txt");
+        repository.commit("a");
+        repository.gc(GarbageCollector.DEFAULT_GRACE_PERIOD);
+
+        Utils.writeContents(new File(dir, "b.txt"), "b\n");
+        repository.add("b.txt");
+        repository.commit("b");
+        File sample = Utils.join(dir, ".gitlet", "objects", "17");
+        sample.mkdirs();
+        for (int i = 0; i < 3; i++) {
+            Utils.writeContents(new File(sample, "0".repeat(37) + i), "junk");
+        }
+        Utils.writeContents(Utils.join(dir, ".gitlet", "config"),
+                            "gc.auto=1\ngc.autoDetach=false\n");
+
+        GcResult result = repository.runMaintenance();
+        assertNotNull(result);
+        assertEquals(1, result.packedBlobs());
+        File packDir = Utils.join(dir, ".gitlet", "objects", "pack");
+        assertEquals(2, packDir.list((d, name) -> name.endsWith(".idx")).length);
+        assertNull(repository.runMaintenance());
+    }
+
+    /** clone, push, fetch, fetch --all and --depth against a server
+     *  running in this JVM on a free port. */
+    @Test
+    public void socketRoundTrip() throws IOException {
+        File base = Files.createTempDirectory("gitlet-serve").toFile();
+        File server = new File(base, "server");
+        server.mkdirs();
+        gitlet(server, "init");
+        commitFile(server, "a.txt", "a", "one");
+        commitFile(server, "b.txt", "b", "two");
+        String url = "gitlet://localhost:" + serve(base) + "/server/.gitlet";
+
+        assertEquals("", gitlet(base, "clone", url, "client"));
+        File client = new File(base, "client");
+        assertEquals("b\n", Utils.readContentsAsString(new File(client, "b.txt")));
+
+        assertEquals("", gitlet(base, "clone", url, "shallow", "--depth", "1"));
+        File shallow = new File(base, "shallow");
+        assertEquals(1, count(gitlet(shallow, "log"), "==="));
+
+        commitFile(client, "c.txt", "c", "three");
+        assertEquals("", gitlet(client, "push", "origin", "master"));
+        assertEquals(head(client), new GitletRepository(server.getPath()).getRefs().get("master"));
+
+        commitFile(server, "d.txt", "d", "four");
+        assertEquals("", gitlet(client, "fetch", "origin", "master"));
+        assertEquals(head(server), refOf(client, "origin/master"));
+
+        gitlet(server, "branch", "other");
+        gitlet(server, "checkout", "other");
+        commitFile(server, "e.txt", "e", "five");
+        String output = gitlet(client, "fetch", "--all");
+        assertTrue(output, output.contains("origin/other"));
+        assertEquals(head(server), refOf(client, "origin/other"));
+
+        assertEquals("", gitlet(shallow, "fetch", "origin", "master", "--depth", "1"));
+        assertEquals(refOf(client, "origin/master"), refOf(shallow, "origin/master"));
+    }
+
+    /** The server refuses a push whose head doesn't have the branch's
+     *  commit in its history, even from a client that skips the check. */
+    @Test
+    public void serverRefusesForcePush() throws IOException {
+        File base = Files.createTempDirectory("gitlet-serve").toFile();
+        File server = new File(base, "server");
+        server.mkdirs();
+        gitlet(server, "init");
+        commitFile(server, "a.txt", "a", "one");
+        String one = head(server);
+        commitFile(server, "a.txt", "b", "two");
+        String two = head(server);
+        String url = "gitlet://localhost:" + serve(base) + "/server/.gitlet";
+        gitlet(base, "clone", url, "client");
+        File client = new File(base, "client");
+        gitlet(client, "reset", one);
+        commitFile(client, "a.txt", "c", "three");
+
+        try (Transport remote = SocketTransport.open(url)) {
+            String expected = remote.refs().get("master");
+            assertEquals(two, expected);
+            remote.push(new GitletRepository(client.getPath()), "master",
+                        expected, head(client));
+            fail("the server fast-forwarded a rewritten branch");
+        } catch (GitletException excp) {
+            assertEquals("Please pull down remote changes before pushing.",
+                         excp.getMessage());
+        }
+        assertEquals(two, head(server));
+    }
+
+    /** Start serving the repositories under BASE, returns the port. */
+    private static int serve(File base) throws IOException {
+        PipedInputStream pipe = new PipedInputStream();
+        PrintStream out = new PrintStream(new PipedOutputStream(pipe), true);
+        Thread thread = new Thread(() -> {
+            try {
+                new TransportServer(base.getPath()).serve("localhost:0", out);
+            } catch (IOException excp) {
+                out.println(excp.getMessage());
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        String line = new BufferedReader(new InputStreamReader(pipe)).readLine();
+        assertTrue(line, line.startsWith("Listening on "));
+        return Integer.parseInt(line.substring(line.lastIndexOf(':') + 1));
+    }
+
+    /** Run gitlet ARGS in DIR, returns what it printed. */
+    private static String gitlet(File dir, String... args) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Main.run(dir.getPath(), new PrintStream(out, true), args);
+        return out.toString();
+    }
+
+    /** Write CONTENT to NAME in DIR and commit it with MESSAGE. */
+    private static void commitFile(File dir, String name, String content,
+                                   String message) throws IOException {
+        Utils.writeContents(new File(dir, name), content + "\n");
+        gitlet(dir, "add", name);
+        gitlet(dir, "commit", message);
+    }
+
+    private static String head(File dir) {
+        return new GitletRepository(dir.getPath()).getHeadSha1();
+    }
+
+    private static String refOf(File dir, String name) {
+        return new GitletRepository(dir.getPath()).getRefs().get(name);
+    }
+
+    private static int count(String text, String part) {
+        return text.split(Pattern.quote(part), -1).length - 1;
+    }
+
+    /** A batch that skipped a blob another batch claimed fails if that
+     *  batch fails, and the blob can be claimed again. */
+    @Test
+    public void failedClaimsFailTheirDependents() {
+        InFlight inFlight = new InFlight();
+        InFlight.Batch first = inFlight.batch();
+        InFlight.Batch second = inFlight.batch();
+        assertTrue(first.claim("x"));
+        assertFalse(second.claim("x"));
+        second.complete();
+        first.fail(new IOException("lost"));
+        try {
+            second.await();
+            fail("await should fail with the batch it waits for");
+        } catch (GitletException excp) {
+            assertTrue(excp.getMessage(), excp.getMessage().contains("lost"));
+        }
+        InFlight.Batch third = inFlight.batch();
+        assertTrue(third.claim("x"));
+        third.complete();
+        InFlight.Batch fourth = inFlight.batch();
+        assertFalse(fourth.claim("x"));
+        fourth.await();
+    }
+
+    /** Commit.parse reads a commit, in either blob map form, and
+     *  rejects any other class and deep nesting before building it. */
+    @Test
+    public void parseAcceptsOnlyCommits() {
+        Commit commit = new Commit("a", null);
+        commit.setBlobs(new TreeMap<>(Map.of("a.txt", Utils.sha1("a"))));
+        assertEquals(commit.getBlobs(),
+                     Commit.parse(Utils.serialize(commit)).getBlobs());
+        assertNotParsed(new HashMap<>(Map.of("a", "b")));
+        assertNotParsed(new ArrayList<>(List.of("a")));
+        TreeMap<String, Object> nested = new TreeMap<>();
+        for (int i = 0; i < 10; i++) {
+            nested = new TreeMap<>(Map.of("a", nested));
+        }
+        assertNotParsed(nested);
+    }
+
+    /** Asserts that Commit.parse rejects the serialized form of OBJECT. */
+    private static void assertNotParsed(Serializable object) {
+        try {
+            Commit.parse(Utils.serialize(object));
+            fail("parsed " + object.getClass().getName());
+        } catch (GitletException excp) {
+            assertEquals("Not a commit.", excp.getMessage());
+        }
+    }
+
+    /** A commit written by the TreeMap version of gitlet: "two files",
+     *  parent 0123...4567, a.txt and dir/b.txt. */
+    private static final String TREEMAP_COMMIT =
+        "rO0ABXNyAA1naXRsZXQuQ29tbWl0mvFpcV59FvECAAVMAAVibG9ic3QAD0xq"
+        + "YXZhL3V0aWwvTWFwO0wACW1lcmdlRnJvbXQAEkxqYXZhL2xhbmcvU3RyaW5n"
+        + "O0wAB21lc3NhZ2VxAH4AAkwABnBhcmVudHEAfgACTAAJdGltZXN0YW1wdAAZ"
+        + "TGphdmEvdGltZS9ab25lZERhdGVUaW1lO3hwc3IAEWphdmEudXRpbC5UcmVl"
+        + "TWFwDMH2Pi0lauYDAAFMAApjb21wYXJhdG9ydAAWTGphdmEvdXRpbC9Db21w"
+        + "YXJhdG9yO3hwcHcEAAAAAnQABWEudHh0dAAoM2Y3ODY4NTBlMzg3NTUwZmRh"
+        + "YjgzNmVkN2U2ZGM4ODFkZTIzMDAxYnQACWRpci9iLnR4dHQAKDg5ZTZjOThk"
+        + "OTI4ODc5MTNjYWRmMDZiMmFkYjk3ZjI2Y2RlNDg0OWJ4cHQACXR3byBmaWxl"
+        + "c3QAKDAxMjM0NTY3ODlhYmNkZWYwMTIzNDU2Nzg5YWJjZGVmMDEyMzQ1Njdz"
+        + "cgANamF2YS50aW1lLlNlcpVdhLobIkiyDAAAeHB3GgYAAAfmBRwP0iAHAA1B"
+        + "c2lhL1NoYW5naGFpeA==";
+
+    /** A stage written by the TreeMap version of gitlet: a.txt added,
+     *  dir/b.txt removed. */
+    private static final String TREEMAP_STAGE =
+        "rO0ABXNyAAxnaXRsZXQuU3RhZ2Wgmzm2fyIEawIAAkwAC2FkZGl0aW9uTWFw"
+        + "dAAPTGphdmEvdXRpbC9NYXA7TAAKcmVtb3ZhbE1hcHEAfgABeHBzcgARamF2"
+        + "YS51dGlsLlRyZWVNYXAMwfY+LSVq5gMAAUwACmNvbXBhcmF0b3J0ABZMamF2"
+        + "YS91dGlsL0NvbXBhcmF0b3I7eHBwdwQAAAABdAAFYS50eHR0ACgzZjc4Njg1"
+        + "MGUzODc1NTBmZGFiODM2ZWQ3ZTZkYzg4MWRlMjMwMDFieHNxAH4AA3B3BAAA"
+        + "AAF0AAlkaXIvYi50eHR0ACg4OWU2Yzk4ZDkyODg3OTEzY2FkZjA2YjJhZGI5"
+        + "N2YyNmNkZTQ4NDlieA==";
+
+    /** Commits and stages serialized before BlobMap still read, their
+     *  TreeMaps turned into equal BlobMaps. */
+    @Test
+    public void readsTreeMapCommitsAndStages() throws IOException {
+        TreeMap<String, String> blobs = new TreeMap<>();
+        blobs.put("a.txt", Utils.sha1("a\n"));
+        blobs.put("dir/b.txt", Utils.sha1("b\n"));
+
+        Commit commit = readBase64(TREEMAP_COMMIT, Commit.class);
+        assertEquals("two files", commit.getMessage());
+        assertEquals("0123456789abcdef0123456789abcdef01234567",
+                     commit.getParent());
+        assertNull(commit.getMergeFrom());
+        assertEquals(BlobMap.copyOf(blobs), commit.getBlobs());
+        assertEquals(blobs, commit.getBlobs());
+        assertEquals(commit.getBlobs(),
+                     Commit.parse(Base64.getDecoder()
+                                  .decode(TREEMAP_COMMIT)).getBlobs());
+
+        Stage stage = readBase64(TREEMAP_STAGE, Stage.class);
+        assertEquals(Map.of("a.txt", Utils.sha1("a\n")),
+                     stage.getAdditionMap());
+        assertEquals(Map.of("dir/b.txt", Utils.sha1("b\n")),
+                     stage.getRemovalMap());
+    }
+
+    /** Deserialize the BASE64 form of an object of class TYPE. */
+    private static <T extends Serializable> T readBase64(String base64,
+                                                         Class<T> type)
+        throws IOException {
+        File file = File.createTempFile("gitlet-object", null);
+        file.deleteOnExit();
+        Files.write(file.toPath(), Base64.getDecoder().decode(base64));
+        return Utils.readObject(file, type);
+    }
+
+    /** update matches putting the additions into a TreeMap and taking
+     *  the removals out, for paths in any overlap of the three maps. */
+    @Test
+    public void blobMapUpdateMatchesTreeMap() {
+        String[] paths = {"a", "b", "c", "d", "e", "f", "g", "h"};
+        Random random = new Random(20);
+        for (int round = 0; round < 500; round++) {
+            TreeMap<String, String> base = new TreeMap<>();
+            TreeMap<String, String> additions = new TreeMap<>();
+            TreeMap<String, String> removals = new TreeMap<>();
+            for (String path : paths) {
+                int in = random.nextInt(8);
+                if ((in & 1) != 0) {
+                    base.put(path, Utils.sha1(path, "base"));
+                }
+                if ((in & 2) != 0) {
+                    additions.put(path, Utils.sha1(path, "added"));
+                }
+                if ((in & 4) != 0) {
+                    removals.put(path, Utils.sha1(path, "base"));
+                }
+            }
+            TreeMap<String, String> expected = new TreeMap<>(base);
+            expected.putAll(additions);
+            expected.keySet().removeAll(removals.keySet());
+
+            BlobMap result = BlobMap.copyOf(base).update(
+                BlobMap.copyOf(additions), BlobMap.copyOf(removals));
+            assertEquals(expected, result);
+            assertEquals(new ArrayList<>(expected.keySet()),
+                         new ArrayList<>(result.keySet()));
+        }
+        BlobMap empty = new BlobMap();
+        assertTrue(empty.update(empty, empty).isEmpty());
+    }
+
+    /** Hashing.sha1 gives the ids the Formatter-based Utils.sha1 gave:
+     *  non-ASCII names, non-ASCII past the 8 KB ASCII scratch buffer,
+     *  and byte arrays mixed with Strings. */
+    @Test
+    public void sha1MatchesPlainDigest() throws IOException {
+        byte[] contents = "contents\n".getBytes(StandardCharsets.UTF_8);
+        String[] names = {
+            "", "a.txt", "h\u00e9llo/\u30d5\u30a1\u30a4\u30eb.txt",
+            "\ud83d\ude00.txt", "a".repeat(8 * 1024),
+            "a".repeat(8 * 1024) + "\u00e9",
+            "a".repeat(8 * 1024 + 100) + "\u00e9" + "b".repeat(9000),
+            "b".repeat(3 * 8 * 1024 + 5),
+        };
+        for (String name : names) {
+            assertEquals(plainSha1(name, contents),
+                         Hashing.sha1(name, contents).name());
+            assertEquals(plainSha1(name), Utils.sha1(name));
+        }
+        assertEquals(plainSha1(contents, "\u00e9", contents, "a", names[6]),
+                     Utils.sha1(contents, "\u00e9", contents, "a",
+                                names[6]));
+
+        File file = File.createTempFile("gitlet-hash", null);
+        file.deleteOnExit();
+        Files.write(file.toPath(), contents);
+        assertEquals(plainSha1(names[2], contents),
+                     Hashing.blobId(names[2], file.toPath()).name());
+    }
+
+    /** The SHA-1 of VALS, byte arrays and Strings as UTF-8, in hex, the
+     *  way Utils.sha1 computed it before Hashing. */
+    private static String plainSha1(Object... vals) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            for (Object val : vals) {
+                if (val instanceof byte[]) {
+                    md.update((byte[]) val);
+                } else {
+                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            Formatter result = new Formatter();
+            for (byte b : md.digest()) {
+                result.format("%02x", b);
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** ObjectId round-trips through hex, raw bytes and streams, and
+     *  orders like its hex names. */
+    @Test
+    public void objectIdRoundTripsAndOrdersLikeHex() throws IOException {
+        Random random = new Random(46);
+        List<ObjectId> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            byte[] raw = new byte[ObjectId.RAW_LENGTH];
+            random.nextBytes(raw);
+            if (i % 4 == 0) {
+                Arrays.fill(raw, 0, 16, (byte) (i % 8 == 0 ? 0x80 : 0x7f));
+            }
+            ObjectId id = ObjectId.fromRaw(raw);
+            String hex = HexFormat.of().formatHex(raw);
+            assertEquals(hex, id.name());
+            assertTrue(ObjectId.isId(hex));
+            assertEquals(id, ObjectId.fromHex(hex));
+            assertEquals(id, ObjectId.fromHex(hex.toUpperCase()));
+            assertArrayEquals(raw, id.toRaw());
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            id.write(new DataOutputStream(bytes));
+            assertArrayEquals(raw, bytes.toByteArray());
+            assertEquals(id, ObjectId.read(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))));
+            ids.add(id);
+        }
+        for (ObjectId a : ids) {
+            for (ObjectId b : ids) {
+                assertEquals(Integer.signum(a.name().compareTo(b.name())),
+                             Integer.signum(a.compareTo(b)));
+            }
+        }
+        assertFalse(ObjectId.isId("A".repeat(ObjectId.HEX_LENGTH)));
+        assertFalse(ObjectId.isId("0".repeat(ObjectId.HEX_LENGTH - 1)));
+    }
+
+    /** Returns true if another thread gets NAME of LOCKS at once. */
+    private static boolean tryFromOtherThread(LockManager locks)
+        throws InterruptedException {
+        AtomicBoolean acquired = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            try (LockManager.Lock lock = locks.tryExclusive("index")) {
+                acquired.set(lock != null);
+            }
+        });
+        thread.start();
+        thread.join();
+        return acquired.get();
+    }
+
 }
 
 
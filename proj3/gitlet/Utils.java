@@ -14,10 +14,7 @@ import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
 
@@ -32,27 +29,9 @@ class Utils {
     static final int UID_LENGTH = 40;
 
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
-     *  be any mixture of byte arrays and Strings. */
+     *  be any mixture of byte arrays and Strings, see {@link Hashing#sha1}. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
-            }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
-        }
+        return Hashing.sha1(vals).name();
     }
 
     /** Returns the SHA-1 hash of the concatenation of the strings in
@@ -114,6 +93,8 @@ class Utils {
      *  either a String or a byte array.  Throws IllegalArgumentException
      *  in case of problems. */
     static void writeContents(File file, Object... contents) {
+        long start = Trace.start();
+        long bytes = 0;
         try {
             if (file.isDirectory()) {
                 throw
@@ -122,13 +103,14 @@ class Utils {
             BufferedOutputStream str =
                 new BufferedOutputStream(Files.newOutputStream(file.toPath()));
             for (Object obj : contents) {
-                if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
-                } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
-                }
+                byte[] data = obj instanceof byte[]
+                    ? (byte[]) obj
+                    : ((String) obj).getBytes(StandardCharsets.UTF_8);
+                str.write(data);
+                bytes += data.length;
             }
             str.close();
+            Trace.stop(Trace.Phase.WRITE, start, bytes);
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -138,11 +120,13 @@ class Utils {
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
+        long start = Trace.start();
         try {
             ObjectInputStream in =
                 new ObjectInputStream(new FileInputStream(file));
             T result = expectedClass.cast(in.readObject());
             in.close();
+            Trace.stop(Trace.Phase.DESERIALIZE, start, file);
             return result;
         } catch (IOException | ClassCastException
                  | ClassNotFoundException excp) {
@@ -170,7 +154,9 @@ class Utils {
      *  lexicographic order as Java Strings.  Returns null if DIR does
      *  not denote a directory. */
     static List<String> plainFilenamesIn(File dir) {
+        long start = Trace.start();
         String[] files = dir.list(PLAIN_FILES);
+        Trace.stop(Trace.Phase.LIST, start, files == null ? 0 : files.length);
         if (files == null) {
             return null;
         } else {